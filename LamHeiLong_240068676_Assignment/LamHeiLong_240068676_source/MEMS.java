@@ -1,8 +1,19 @@
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.PrintStream;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Scanner;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Supplier;
 
 /**
  * MEMS - Musical Ensembles Management System
@@ -17,59 +28,244 @@ import java.util.Scanner;
  * 
  * Command Routing: Uses a list of CommandEntry objects for flexible command matching
  * without switch statements. To add a new command, just add an entry to the list.
+ * Anything typed after the command word is passed to the command as arguments (e.g. "u 5"),
+ * and then the command does not prompt (or retry) for input.
  * 
  * Supported commands:
  * c  = create ensemble
+ * cl = create an ensemble as a copy of another (cl E1 as E2, Season 2027) - new musician IDs, one undo step
  * s  = set current ensemble
  * a  = add musician
- * m  = modify musician's instrument
- * d  = delete musician
- * se = show ensemble
- * sa = display all ensembles
+ * m  = modify musician's instrument (m M1 2 = in whatever ensemble M1 is, no switching needed)
+ * d  = delete musician (d M1 = from whatever ensemble M1 is in)
+ * se = show ensemble (se as of <history index|time> = as it was then, se json = as JSON)
+ * sa = display all ensembles (in ensemble ID order, or sa as of <history index|time>, sa json = one JSON object per line)
+ * sr = display ensembles by ID prefix or ID range
+ * sm = show musician counts per instrument (one or all ensembles)
+ * w  = find which ensemble a musician is in (w M1)
  * cn = change ensemble's name
- * u  = undo
- * r  = redo
- * l  = list undo/redo
+ * t  = transfer musicians from the current ensemble to another (t M1,M2 to E2)
+ * bm = change the instrument of all matching musicians (bm role=saxophonist to drummer)
+ * bd = delete all matching musicians (bd id=TMP-, filters: role=<instrument> id=<prefix> name=<pattern>)
+ * u  = undo (u N = undo N commands at once)
+ * r  = redo (r N = redo N commands at once)
+ * sp = set a named savepoint (sp <name>)
+ * rb = roll back to a savepoint (rb to <name>)
+ * l  = list undo/redo (history where musician=M1, ensemble=E7 on=today, type=rename ... = search the history)
  * x  = exit system
+ * 
+ * Startup options:
+ * --store <dir>     keep ensembles in a local file store and load them on first access
+ * --backend <name>  storage behind --store: files (one file per ensemble, default), log (one append-only
+ *                   log with batched writes), or memory (no --store needed, nothing survives a restart);
+ *                   files or log without --store is a usage error (exit status 2)
+ * --cache <weight>  how many musicians (plus one per ensemble) the hot cache may hold (default 100000)
+ * --primary <file>  write every change to a replication log that followers can tail
+ * --follow <file>   run as a read-only follower of the primary writing that log (only se, sa, sr, sm, s, l, lag, x)
+ * --journal <on|off>      keep a history journal for "as of" queries and "history where" (default off)
+ * --checkpoint-every <K>  with --journal on: history entries between checkpoints (default 50)
+ * --journal-keep <N>      with --journal on: checkpoints kept, so about N * K entries can be queried (default 20)
+ * --musician-prefix <P>   prefix of generated musician IDs (default M)
+ * --ensemble-prefix <P>   prefix of generated ensemble IDs (default E)
+ * --coalesce <s,cn,a|none> commands whose history entries merge with the next one (default none, so every
+ *                   command keeps its own undo step): a chain of switches, renames of one ensemble, or an add
+ *                   undone by deleting that musician
+ * 
+ * Typing * instead of a musician or ensemble ID (e.g. "*, John Doe") generates a free ID.
+ * With --store the ID sequences are kept in the store directory and continue after a restart.
+ * 
+ * To use MEMS from another program without the console, see MemsEngine
+ * (or ShardedEngine, which spreads ensembles over several single-writer systems,
+ * or TenantRegistry, which keeps many isolated datasets in one program).
  */
 public class MEMS
 {
 	// Simplified data storage - no registry pattern needed
-	private Map<String, Ensemble> ensembles;        // All ensembles by ID
+	private Map<String, Ensemble> ensembles;        // All ensembles by ID, kept sorted by ID
 	private Map<String, Musician> musicians;        // All musicians by ID
 	private String currentEnsembleId;               // Current ensemble ID (null if none)
 	private FactoryRegistry factoryRegistry;        // Manages factories
 	private HistoryManager historyManager;          // Handles undo/redo
-	private Scanner scanner;                        // For user input
+	private LineReader reader;                      // For user input (lines and comma fields)
+	private PrintStream out;                        // Where commands print (the console, or nowhere for MemsEngine)
 	private List<CommandEntry> availableCommands;   // List of all available commands
-		
+	private ChangeNotifier changeNotifier;          // Tells listeners about every change
+	private ChangeEventRingBuffer changeEvents;     // Change-data-capture stream for in-process subscribers
+	private HistoryJournal historyJournal;          // Recent history moves with their changes, for "as of" queries (null = off)
+	private ReplicaFollower replicaFollower;        // Set when running as a read-only follower
+	private EnsembleCaretaker ensembleCaretaker;    // Ensemble mementos of this system's history
+	private MusicianCaretaker musicianCaretaker;    // Musician mementos of this system's history
+	private RenderCache renderCache;                // Rendered se/sa output of unchanged ensembles
+	private IdAllocator musicianIdAllocator;        // Generated musician IDs ("*" instead of an ID)
+	private IdAllocator ensembleIdAllocator;        // Generated ensemble IDs
+	private MusicianIndex musicianIndex;            // Musician ID -> ensemble ID, kept up to date by change events
+	
+	// Change-event ring size of a system, and of a tenant system (each slot is a preallocated ChangeEvent)
+	private static final int CHANGE_EVENT_SLOTS = 4096;
+	private static final int TENANT_CHANGE_EVENT_SLOTS = 64;
+	
+	// Commands whose history entries coalesce unless --coalesce says otherwise - none, so "u" always takes
+	// back exactly one command; merging undo steps is opt-in
+	private static final String DEFAULT_COALESCING = "none";
+	
 	// Static instance for command access (supports OCP by avoiding parameter passing)
 	private static MEMS instance;
 	
+	// A system bound to the calling thread wins over the static instance
+	// (ShardedEngine runs one MEMS per shard thread, each with its own maps and history)
+	private static final ThreadLocal<MEMS> bound = new ThreadLocal<>();
+	
 	// Static accessors for commands to get dependencies without constructor injection
 	// This allows all factories to use the same signature: createCommand()
-	public static Map<String, Ensemble> getEnsembles() { return instance.ensembles; }
-	public static Map<String, Musician> getMusicians() { return instance.musicians; }
-	public static String getCurrentEnsembleId() { return instance.currentEnsembleId; }
-	public static void setCurrentEnsembleId(String id) { instance.currentEnsembleId = id; }
-	public static FactoryRegistry getFactoryRegistry() { return instance.factoryRegistry; }
-	public static HistoryManager getHistoryManager() { return instance.historyManager; }
-	public static Scanner getScanner() { return instance.scanner; }
-	
-	// Constructor - initializes all components
+	public static Map<String, Ensemble> getEnsembles() { return current().ensembles; }
+	public static Map<String, Musician> getMusicians() { return current().musicians; }
+	public static String getCurrentEnsembleId() { return current().currentEnsembleId; }
+	public static void setCurrentEnsembleId(String id) { current().currentEnsembleId = id; }
+	public static FactoryRegistry getFactoryRegistry() { return current().factoryRegistry; }
+	public static HistoryManager getHistoryManager() { return current().historyManager; }
+	public static LineReader getReader() { return current().reader; }
+	public static PrintStream getOut() { return current().out; }
+	public static ChangeNotifier getChangeNotifier() { return current().changeNotifier; }
+	public static ChangeEventRingBuffer getChangeEvents() { return current().changeEvents; }
+	public static HistoryJournal getHistoryJournal() { return current().historyJournal; }   // null unless switched on
+	public static ReplicaFollower getReplicaFollower() { return current().replicaFollower; }
+	public static EnsembleCaretaker getEnsembleCaretaker() { return current().ensembleCaretaker; }
+	public static MusicianCaretaker getMusicianCaretaker() { return current().musicianCaretaker; }
+	public static RenderCache getRenderCache() { return current().renderCache; }
+	public static IdAllocator getMusicianIdAllocator() { return current().musicianIdAllocator; }
+	public static IdAllocator getEnsembleIdAllocator() { return current().ensembleIdAllocator; }
+	
+	// Make this system the one the static accessors return on the calling thread
+	public void bindToCurrentThread() { bound.set(this); }
+	
+	// Run 'work' with this system bound to the calling thread, then put back what was bound before
+	// (for pooled threads that work for different systems one after another)
+	public void runBound(Runnable work)
+	{
+		callBound(() ->
+		{
+			work.run();
+			return null;
+		});
+	}
+	
+	// Same, returning what 'work' returns (MemsEngine runs every call this way)
+	public <T> T callBound(Supplier<T> work)
+	{
+		MEMS previous = bound.get();
+		bound.set(this);
+		try
+		{
+			return work.get();
+		}
+		finally
+		{
+			if (previous == null)
+			{
+				bound.remove();
+			}
+			else
+			{
+				bound.set(previous);
+			}
+		}
+	}
+	
+	// The history journal, for the commands that query it - an error if it was not switched on
+	public static HistoryJournal requireHistoryJournal()
+	{
+		HistoryJournal journal = current().historyJournal;
+		if (journal == null)
+		{
+			throw new IllegalArgumentException("The history journal is off (start MEMS with --journal on to query past states)");
+		}
+		return journal;
+	}
+	
+	private static MEMS current()
+	{
+		MEMS system = bound.get();
+		return (system != null) ? system : instance;
+	}
+	
+	// Is a musician ID already used? Also checks ensembles that are not loaded when a file store is used
+	public static boolean isMusicianIdTaken(String musicianId)
+	{
+		MEMS system = current();
+		if (system.ensembles instanceof LazyEnsembleRegistry)
+		{
+			return ((LazyEnsembleRegistry) system.ensembles).containsMusician(musicianId);
+		}
+		return system.musicians.containsKey(musicianId);
+	}
+	
+	// Which ensemble holds a musician (null if none) - from the musician index, so no roster is scanned
+	// (with a file store the registry fills the index with the stored musicians at startup)
+	public static String findMusicianOwner(String musicianId)
+	{
+		return current().musicianIndex.ownerOf(musicianId);
+	}
+	
+	// Constructor - console on standard input / standard output
+	// Reads the stdin file descriptor through its channel, so piped input skips System.in's extra copy,
+	// and writes stdout through a buffered OutputSink instead of System.out's flush per line
 	public MEMS()
 	{
+		this(new FileInputStream(FileDescriptor.in).getChannel(), OutputSink.buffered(new FileOutputStream(FileDescriptor.out)));
+	}
+	
+	// Constructor - reading commands from 'in' and printing to 'out'
+	public MEMS(InputStream in, PrintStream out)
+	{
+		this(Channels.newChannel(in), out);
+	}
+	
+	// Constructor - initializes all components, reading commands from 'in' and printing to 'out'
+	public MEMS(ReadableByteChannel in, PrintStream out)
+	{
+		this(in, out, CHANGE_EVENT_SLOTS);
 		instance = this;  // Set static instance for command access
-		this.ensembles = new HashMap<>();
+	}
+	
+	// A system with no console that never becomes the static instance (see MemsEngine) - the static
+	// accessors reach it only on a thread it is bound to
+	public static MEMS detached(PrintStream out)
+	{
+		return new MEMS(Channels.newChannel(InputStream.nullInputStream()), out, CHANGE_EVENT_SLOTS);
+	}
+	
+	// A system for one tenant (see TenantRegistry): it never becomes the static instance, so the static
+	// accessors reach it only on a thread it is bound to. Its change-event ring is small, as tenants are many.
+	public static MEMS forTenant(PrintStream out)
+	{
+		return new MEMS(Channels.newChannel(InputStream.nullInputStream()), out, TENANT_CHANGE_EVENT_SLOTS);
+	}
+	
+	// Common setup - 'changeEventSlots' is the size of the change-data-capture ring
+	private MEMS(ReadableByteChannel in, PrintStream out, int changeEventSlots)
+	{
+		this.ensembles = new ConcurrentSkipListMap<>();  // Sorted, so listing and range queries need no sorting
 		this.musicians = new HashMap<>();
 		this.currentEnsembleId = null;  // No ensemble selected initially
 		this.factoryRegistry = new FactoryRegistry();
-		this.historyManager = new HistoryManager();
-		this.scanner = new Scanner(System.in);
+		this.changeNotifier = new ChangeNotifier();
+		this.changeEvents = new ChangeEventRingBuffer(changeEventSlots, out);
+		changeNotifier.addListener(new ChangeEventPublisher(changeEvents));
+		this.musicianIndex = new MusicianIndex();
+		changeNotifier.addListener(musicianIndex);
+		this.historyManager = new HistoryManager(changeNotifier);
+		this.ensembleCaretaker = new EnsembleCaretaker();
+		this.musicianCaretaker = new MusicianCaretaker();
+		this.renderCache = new RenderCache(factoryRegistry);
+		useIdSequences(new IdSequence(), new IdSequence(), "M", "E");
+		this.reader = new LineReader(in);
+		this.out = out;
+		reader.setBeforeRead(out::flush);   // Everything printed so far is shown before waiting for input
 		this.availableCommands = new ArrayList<>();
 		
 		// Initialize the command list
 		initializeCommands();
+		setCoalescing(DEFAULT_COALESCING);
 	}
 	
 	// Initialize all available commands
@@ -79,6 +275,8 @@ public class MEMS
 		// Commands that modify state (undoable) - go into history
 		availableCommands.add(new CommandEntry(
 			new CreateEnsembleCommandFactory(), true, false, "create", "create ensemble", "c"));
+		availableCommands.add(new CommandEntry(
+			new CloneEnsembleCommandFactory(), true, false, "clone", "create an ensemble as a copy of another", "cl", "clone"));
 		availableCommands.add(new CommandEntry(
 			new AddMusicianCommandFactory(), true, true, "add", "add musician", "a"));
 		availableCommands.add(new CommandEntry(
@@ -88,27 +286,163 @@ public class MEMS
 		availableCommands.add(new CommandEntry(
 			new ChangeEnsembleNameCommandFactory(), true, true, "rename", "change ensemble's name", "cn"));
 		availableCommands.add(new CommandEntry(
-			new SwitchEnsembleCommandFactory(), true, false, "switch", "set current ensemble", "s"));
+			new TransferMusiciansCommandFactory(), true, true, "transfer", "transfer musicians to another ensemble", "t", "transfer"));
+		availableCommands.add(new CommandEntry(
+			new BulkModifyMusiciansCommandFactory(), true, true, "bulkmodify", "change the instrument of all matching musicians", "bm"));
+		availableCommands.add(new CommandEntry(
+			new BulkDeleteMusiciansCommandFactory(), true, true, "bulkdelete", "delete all matching musicians", "bd"));
+		availableCommands.add(new CommandEntry(
+			new SwitchEnsembleCommandFactory(), true, false, "switch", "set current ensemble", "s").readOnly());
 		
 		// Undo/Redo commands (special - delegate to HistoryManager)
 		availableCommands.add(new CommandEntry(
 			new UndoCommandFactory(), false, false, "undo", "undo", "u"));
 		availableCommands.add(new CommandEntry(
 			new RedoCommandFactory(), false, false, "redo", "redo", "r"));
+		availableCommands.add(new CommandEntry(
+			new SavepointCommandFactory(), false, false, "savepoint", "set savepoint", "sp", "savepoint"));
+		availableCommands.add(new CommandEntry(
+			new RollbackCommandFactory(), false, false, "rollback", "roll back to savepoint", "rb", "rollback"));
 		
 		// Commands that don't modify state (non-undoable, but still use Command pattern)
 		availableCommands.add(new CommandEntry(
-			new ShowEnsembleCommandFactory(), false, true, "show", "show ensemble", "se"));
+			new ShowEnsembleCommandFactory(), false, true, "show", "show ensemble", "se").readOnly());
+		availableCommands.add(new CommandEntry(
+			new ListEnsemblesCommandFactory(), false, false, "list", "display all ensembles", "sa").readOnly());
+		availableCommands.add(new CommandEntry(
+			new ListEnsembleRangeCommandFactory(), false, false, "range", "display ensembles by ID prefix or range", "sr").readOnly());
 		availableCommands.add(new CommandEntry(
-			new ListEnsemblesCommandFactory(), false, false, "list", "display all ensembles", "sa"));
+			new SummaryCommandFactory(), false, false, "summary", "show ensemble summary", "sm", "summary").readOnly());
 		availableCommands.add(new CommandEntry(
-			new ListHistoryCommandFactory(), false, false, "history", "list undo/redo", "l"));
+			new WhereIsCommandFactory(), false, false, "whereis", "find a musician's ensemble", "w", "whereis").readOnly());
+		availableCommands.add(new CommandEntry(
+			new ListHistoryCommandFactory(), false, false, "history", "list undo/redo", "l", "history").readOnly());
 		
 		// Utility commands
 		availableCommands.add(new CommandEntry(
-			new ExitCommandFactory(), false, false, "quit", "exit system", "x"));
+			new ExitCommandFactory(), false, false, "quit", "exit system", "x").readOnly());
 	}
-
+	
+	// Ensembles with IDs from 'from' to 'to' (both inclusive), in ID order
+	// Walks the sorted index - O(log n + k), no full scan
+	public static List<Ensemble> getEnsembleRange(String from, String to)
+	{
+		MEMS system = current();
+		if (system.ensembles instanceof LazyEnsembleRegistry)
+		{
+			return ((LazyEnsembleRegistry) system.ensembles).range(from, to);
+		}
+		NavigableMap<String, Ensemble> sorted = (NavigableMap<String, Ensemble>) system.ensembles;
+		return new ArrayList<>(sorted.subMap(from, true, to, true).values());
+	}
+	
+	// All ensemble IDs in ID order, without loading any roster
+	public static NavigableSet<String> getEnsembleIds()
+	{
+		MEMS system = current();
+		if (system.ensembles instanceof LazyEnsembleRegistry)
+		{
+			return ((LazyEnsembleRegistry) system.ensembles).ids();
+		}
+		return ((NavigableMap<String, Ensemble>) system.ensembles).navigableKeySet();
+	}
+	
+	// Keep ensembles in a file store instead of memory - only the hot ones stay loaded
+	// Dirty ensembles are written back on eviction and when the program exits
+	public void useEnsembleStore(File directory, long cacheWeight)
+	{
+		useEnsembleStore(new EnsembleFileStore(directory, factoryRegistry), cacheWeight);
+	}
+	
+	// Same with any storage backend (EnsembleFileStore, LogStructuredEnsembleStore, MemoryEnsembleStore, ...)
+	public void useEnsembleStore(EnsembleStore store, long cacheWeight)
+	{
+		final LazyEnsembleRegistry registry = new LazyEnsembleRegistry(store, musicians, musicianIndex, cacheWeight);
+		this.ensembles = registry;
+		historyManager.pinEnsemblesIn(registry);
+		Runtime.getRuntime().addShutdownHook(new Thread(registry::flush));
+		
+		// Generated IDs continue after a restart instead of starting again at 1
+		File directory = store.getDirectory();
+		if (directory != null)
+		{
+			useIdSequences(new IdSequence(new File(directory, "musicians.seq")), new IdSequence(new File(directory, "ensembles.seq")),
+				musicianIdAllocator.getPrefix(), ensembleIdAllocator.getPrefix());
+		}
+	}
+	
+	// Prefixes of generated IDs (default "M" and "E")
+	public void setIdPrefixes(String musicianPrefix, String ensemblePrefix)
+	{
+		this.musicianIdAllocator = musicianIdAllocator.withPrefix(musicianPrefix);
+		this.ensembleIdAllocator = ensembleIdAllocator.withPrefix(ensemblePrefix);
+	}
+	
+	// Allocators for this system's session over the given sequences
+	private void useIdSequences(IdSequence musicianSequence, IdSequence ensembleSequence, String musicianPrefix, String ensemblePrefix)
+	{
+		this.musicianIdAllocator = new IdAllocator(musicianPrefix, musicianSequence, IdAllocator.DEFAULT_BLOCK_SIZE,
+			id -> isMusicianIdTaken(id));
+		this.ensembleIdAllocator = new IdAllocator(ensemblePrefix, ensembleSequence, IdAllocator.DEFAULT_BLOCK_SIZE,
+			id -> ensembles.containsKey(id));
+	}
+	
+	// Choose the commands whose history entries coalesce: command words separated by commas (e.g. "s,cn,a"), or "none"
+	public void setCoalescing(String commandWords)
+	{
+		Map<String, Class<? extends Command>> coalescible = new HashMap<>();
+		for (CommandEntry entry : availableCommands)
+		{
+			Command command = entry.getCommandFactory().createCommand();
+			if (command instanceof Coalescible)
+			{
+				historyManager.setCoalescing(command.getClass(), false);
+				coalescible.put(entry.getPrimaryName(), command.getClass());
+			}
+		}
+		if (commandWords.trim().equalsIgnoreCase("none"))
+		{
+			return;
+		}
+		for (String word : commandWords.split(","))
+		{
+			CommandEntry entry = findCommand(word.trim());
+			if (entry == null || !coalescible.containsKey(entry.getPrimaryName())) {
+				throw new IllegalArgumentException("'" + word.trim() + "' is not a command that can coalesce (use s, cn or a)");
+			}
+			historyManager.setCoalescing(coalescible.get(entry.getPrimaryName()), true);
+		}
+	}
+	
+	// Journal every history move from now on, for "se/sa as of" and "history where" - a checkpoint every
+	// 'checkpointInterval' entries, the newest 'keptCheckpoints' of them kept (older history is forgotten)
+	public void enableHistoryJournal(int checkpointInterval, int keptCheckpoints)
+	{
+		if (historyJournal != null)
+		{
+			throw new IllegalStateException("The history journal is already on");
+		}
+		this.historyJournal = new HistoryJournal(factoryRegistry, checkpointInterval, keptCheckpoints);
+		changeNotifier.addListener(historyJournal);
+	}
+	
+	// Write every change to a replication log for followers, with a heartbeat so they can measure their lag
+	public void enableReplicationLog(File logFile)
+	{
+		ReplicationLog log = new ReplicationLog(logFile);
+		changeNotifier.addListener(log);
+		log.startHeartbeat();
+	}
+	
+	// Run as a read-only follower: mirror the primary's log and refuse commands that change state
+	public void followReplicationLog(File logFile)
+	{
+		this.replicaFollower = new ReplicaFollower(logFile, ensembles, musicians, historyManager, factoryRegistry, musicianIndex, out);
+		addNewCommand(new CommandEntry(
+			new ReplicationLagCommandFactory(), false, false, "lag", "show replication lag", "lag").readOnly());
+		replicaFollower.start(this);
+	}
+	
 	// To add a new command, just call this method!
 	public void addNewCommand(CommandEntry newCommand)
 	{
@@ -118,117 +452,161 @@ public class MEMS
 	// Main loop - displays menu once, then processes commands until user exits
 	public void run()
 	{
-		System.out.println("=".repeat(70));
-		System.out.println("    Music Ensembles Management System (MEMS)");
-		System.out.println("=".repeat(70));
+		out.println("=".repeat(70));
+		out.println("    Music Ensembles Management System (MEMS)");
+		out.println("=".repeat(70));
 		
-		while (true)
+		try
 		{
-			displayPrompt();
-			String command = scanner.nextLine().trim();
-			System.out.println();
-			if (!processCommand(command))
+			while (true)
 			{
-				System.out.println("Goodbye!");
-				break;
+				displayPrompt();
+				String command = reader.nextTrimmedLine();
+				out.println();
+				if (!processCommand(command))
+				{
+					out.println("Goodbye!");
+					break;
+				}
 			}
 		}
-		scanner.close();
+		catch (EndOfInputException e)
+		{
+			// Input ran out (e.g. the end of a piped command file) - same as exit
+			out.println();
+			out.println("Goodbye!");
+		}
+		finally
+		{
+			out.flush();
+		}
+		reader.close();
 	}
 	
 	// Display current ensemble context and prompt
 	private void displayPrompt()
 	{
-		System.out.println();
+		out.println();
 		showHelpMenu();
 		if (currentEnsembleId != null)
 		{
 			Ensemble ensemble = ensembles.get(currentEnsembleId);
 			if (ensemble != null)  // Ensemble might be deleted/undone
 			{
-				System.out.println("The current ensemble is " + ensemble.getEnsembleID() + " " + ensemble.getName() + ".");
+				out.println("The current ensemble is " + ensemble.getEnsembleID() + " " + ensemble.getName() + ".");
 			}
 		}
-		System.out.print("Please enter command [ c | s | a | m | d | se | sa | cn | u | r | l | x ] :- ");
+		out.print("Please enter command [ c | cl | s | a | m | d | se | sa | sr | sm | w | cn | t | bm | bd | u | r | sp | rb | l | x ] :- ");
 	}
 	
 	// Show help - displays all available commands
 	public static void showHelpMenu()
 	{
-		System.out.println("============================================");
-		System.out.println("Available commands:");
-		for (CommandEntry entry : instance.availableCommands)
+		PrintStream out = current().out;
+		out.println("============================================");
+		out.println("Available commands:");
+		for (CommandEntry entry : current().availableCommands)
 		{
 			String aliases = entry.getAliasesFormatted();
 			String desc = entry.getDescription();
-			System.out.println(aliases + " = " + desc + ", ");
+			out.println(aliases + " = " + desc + ", ");
 		}
-		System.out.println("============================================");
-		System.out.println();
+		out.println("============================================");
+		out.println();
 	}
 	
 	private boolean processCommand(String commandInput)
 	{
+		// Split "u 5" into the command word and its arguments
+		String[] words = commandInput.split("\\s+", 2);
+		String arguments = (words.length > 1) ? words[1] : "";
+		
 		// Find matching command in the list
-		CommandEntry matchedEntry = findCommand(commandInput);
+		CommandEntry matchedEntry = findCommand(words[0]);
 		
 		if (matchedEntry == null) {
-			System.out.println("Invalid command!");
+			out.println("Invalid command!");
+			return true;
+		}
+		
+		// A follower only serves read commands - changes come from the primary
+		if (replicaFollower != null && !matchedEntry.isReadOnly()) {
+			out.println("Error: This is a read-only follower. Please make changes on the primary.");
 			return true;
 		}
 		
 		// Check if current ensemble is required
-		if (matchedEntry.requiresEnsemble() && currentEnsembleId == null) {
-			System.out.println("Error: This command requires an ensemble to be set!");
-			System.out.println("Use 'switch' to select an ensemble first.");
+		// (with arguments the command checks for itself - e.g. "d M1" finds the musician's own ensemble)
+		if (matchedEntry.requiresEnsemble() && currentEnsembleId == null && arguments.isEmpty()) {
+			out.println("Error: This command requires an ensemble to be set!");
+			out.println("Use 'switch' to select an ensemble first.");
 			return true;
 		}
 		
 		// ALL commands use Command pattern
-		// Retry loop - automatically retries on error
+		// Retry loop - automatically retries on error (not for inline arguments - the user retypes the line)
+		boolean retry = arguments.isEmpty();
 		boolean success = false;
 		while (!success) {
 			try {
 				// Create the command using factory
 				Command command = matchedEntry.getCommandFactory().createCommand();
 				
-				// Read input
-				command.readInput(scanner);
+				// Read input, or take it from the command line
+				if (arguments.isEmpty()) {
+					command.readInput(reader);
+				} else {
+					command.setArguments(arguments);
+				}
 				
 				// Execute - add to history if undoable
-				if (matchedEntry.isUndoable()) {
+				// (a follower's history mirrors the primary, so it runs everything directly under its lock)
+				if (replicaFollower != null) {
+					synchronized (replicaFollower) {
+						command.execute();
+					}
+				} else if (matchedEntry.isUndoable()) {
 					historyManager.executeCommand(command);
 				} else {
 					command.execute();
 				}
 				
 				success = true;  // If we get here, command succeeded
+			} catch (EndOfInputException e) {
+				throw e;  // No more input to retry with - let run() end the session
 			} catch (ArrayIndexOutOfBoundsException e) {
-				System.out.println("Error: Invalid input format. Please try again.\n");
+				out.println("Error: Invalid input format." + (retry ? " Please try again.\n" : ""));
 				// Auto-retry - loop continues
 			} catch (NumberFormatException e) {
-				System.out.println("Error: Invalid number format. Please try again.\n");
+				out.println("Error: Invalid number format." + (retry ? " Please try again.\n" : ""));
 				// Auto-retry - loop continues
 			} catch (NullPointerException e) {
-				System.out.println("Error: Invalid selection or missing data.");
+				out.println("Error: Invalid selection or missing data.");
 				if (e.getMessage() != null && !e.getMessage().isEmpty()) {
-					System.out.println("Details: ");
+					out.println("Details: ");
 					e.printStackTrace();
 				}
-				System.out.println("Please try again.\n");
+				if (retry) {
+					out.println("Please try again.\n");
+				}
 				// Auto-retry - loop continues
 			} catch (Exception e) {
-				System.out.print("Error: ");
+				out.print("Error: ");
 				if (e.getMessage() != null && !e.getMessage().isEmpty()) {
-					System.out.println(e.getMessage());
+					out.println(e.getMessage());
 				} else {
-					System.out.println(e.getClass().getSimpleName() + " occurred");
-					System.out.println("Stack trace:");
+					out.println(e.getClass().getSimpleName() + " occurred");
+					out.println("Stack trace:");
 					e.printStackTrace();
 				}
-				System.out.println("Please try again.\n");
+				if (retry) {
+					out.println("Please try again.\n");
+				}
 				// Auto-retry - loop continues
 			}
+			if (!retry) {
+				break;
+			}
 		}
 		
 		return true;
@@ -245,9 +623,125 @@ public class MEMS
 		return null;  // No match found
 	}
 	
+	// Class of the command typed as 'word' (e.g. "a" or "add"), or null if there is no such command
+	public static Class<? extends Command> findCommandType(String word)
+	{
+		CommandEntry entry = current().findCommand(word);
+		return (entry == null) ? null : entry.getCommandFactory().createCommand().getClass();
+	}
+	
+	// Storage backend named by --backend
+	private static EnsembleStore openStore(String backend, File directory, FactoryRegistry factoryRegistry)
+	{
+		if (backend.equals("files"))
+		{
+			return new EnsembleFileStore(directory, factoryRegistry);
+		}
+		if (backend.equals("log"))
+		{
+			return new LogStructuredEnsembleStore(directory, factoryRegistry);
+		}
+		throw new IllegalArgumentException("Unknown backend '" + backend + "' (files, log or memory)");
+	}
+	
 	public static void main(String[] args)
 	{
 		MEMS system = new MEMS();
+		
+		// Optional startup settings
+		String storeDir = null;
+		String backend = null;      // files unless given
+		long cacheWeight = 100000;
+		String primaryLog = null;
+		String followLog = null;
+		String journal = "off";
+		String checkpointInterval = null;   // 50 unless given
+		String keptCheckpoints = null;      // 20 unless given
+		String musicianPrefix = "M";
+		String ensemblePrefix = "E";
+		String coalescing = DEFAULT_COALESCING;
+		for (int i = 0; i + 1 < args.length; i += 2)
+		{
+			if (args[i].equals("--store"))
+			{
+				storeDir = args[i + 1];
+			}
+			else if (args[i].equals("--backend"))
+			{
+				backend = args[i + 1];
+			}
+			else if (args[i].equals("--cache"))
+			{
+				cacheWeight = Long.parseLong(args[i + 1]);
+			}
+			else if (args[i].equals("--primary"))
+			{
+				primaryLog = args[i + 1];
+			}
+			else if (args[i].equals("--follow"))
+			{
+				followLog = args[i + 1];
+			}
+			else if (args[i].equals("--journal"))
+			{
+				journal = args[i + 1];
+			}
+			else if (args[i].equals("--checkpoint-every"))
+			{
+				checkpointInterval = args[i + 1];
+			}
+			else if (args[i].equals("--journal-keep"))
+			{
+				keptCheckpoints = args[i + 1];
+			}
+			else if (args[i].equals("--musician-prefix"))
+			{
+				musicianPrefix = args[i + 1];
+			}
+			else if (args[i].equals("--ensemble-prefix"))
+			{
+				ensemblePrefix = args[i + 1];
+			}
+			else if (args[i].equals("--coalesce"))
+			{
+				coalescing = args[i + 1];
+			}
+		}
+		// A disk backend without a directory would quietly run in memory, and nothing would be saved
+		if (backend != null && !backend.equals("memory") && storeDir == null)
+		{
+			System.out.println("Usage error: --backend " + backend + " needs --store <dir> (only --backend memory runs without one)");
+			System.exit(2);
+		}
+		if (!journal.equals("on") && (checkpointInterval != null || keptCheckpoints != null))
+		{
+			System.out.println("Usage error: --checkpoint-every and --journal-keep need --journal on");
+			System.exit(2);
+		}
+		if (journal.equals("on"))
+		{
+			system.enableHistoryJournal((checkpointInterval == null) ? 50 : Integer.parseInt(checkpointInterval),
+				(keptCheckpoints == null) ? 20 : Integer.parseInt(keptCheckpoints));
+		}
+		if ("memory".equals(backend))
+		{
+			system.useEnsembleStore(new MemoryEnsembleStore(system.factoryRegistry), cacheWeight);
+		}
+		else if (storeDir != null)
+		{
+			system.useEnsembleStore(openStore((backend == null) ? "files" : backend, new File(storeDir), system.factoryRegistry), cacheWeight);
+		}
+		system.setIdPrefixes(musicianPrefix, ensemblePrefix);
+		system.setCoalescing(coalescing);
+		if (primaryLog != null)
+		{
+			system.enableReplicationLog(new File(primaryLog));
+		}
+		else if (followLog != null)
+		{
+			system.followReplicationLog(new File(followLog));
+		}
+		
 		system.run();
 	}
 }
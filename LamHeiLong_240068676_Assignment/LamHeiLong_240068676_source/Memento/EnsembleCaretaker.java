@@ -1,56 +1,264 @@
-import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Stack;
-import java.util.List;
-import java.util.ArrayList;
 
-public class EnsembleCaretaker 
+public class EnsembleCaretaker
 {
-    private static Stack<EnsembleMemento> mementoStack = new Stack<EnsembleMemento>();
+    // Each MEMS has its own caretaker; the static methods work on the current system's one
+    private Stack<EnsembleMemento> mementoStack = new Stack<EnsembleMemento>();
+    
+    // While a batch is open, restores are applied straight away but reported later, once per ensemble:
+    // ensemble ID -> how the musicians and name the batch touched looked before it touched them
+    private Map<String, PendingRestore> pending = null;
+    private boolean reporting;   // True while report() tells the listeners what a batch restored
+    
+    private static class PendingRestore
+    {
+        Ensemble ensemble;
+        String name;                           // Name before the batch
+        Map<String, Before> musicians = new LinkedHashMap<>();   // Musician ID -> before its first restore
+        
+        PendingRestore(Ensemble ensemble)
+        {
+            this.ensemble = ensemble;
+            this.name = ensemble.getName();
+        }
+    }
+    
+    // A musician as it was before the batch (musician null = not in the ensemble)
+    private static class Before
+    {
+        Musician musician;
+        int role;      // Roles are changed in place, so the object alone does not say what it was
+        
+        Before(Musician musician)
+        {
+            this.musician = musician;
+            this.role = (musician == null) ? 0 : musician.getRole();
+        }
+    }
+    
     // Memento pattern methods - for undo/redo functionality
-	// Save current state
-	public static synchronized void createMemento(String Id, List<Musician> musicians, String eName)
+	// Save what a command changed - the memento holds only that change, never a copy of the roster
+	public static void createMemento(EnsembleMemento memento)
 	{
- 		mementoStack.push(new EnsembleMemento(Id, musicians.iterator(), eName));
+		MEMS.getEnsembleCaretaker().mementoStack.push(memento);
 	}
 	
-	// Restore previous state
-	public static synchronized void restoreMemento()
+	// Restore previous state by taking back the latest change
+	// Inside a batch the change is reported in endBatch() (or settle()), together with the rest of the batch
+	public static void restoreMemento()
     {
-        // Clear current musicians and restore from memento
-        // This replaces the current state with the saved state
-        // Note: We assume Ensemble has methods to clear and add musicians
+        EnsembleCaretaker caretaker = MEMS.getEnsembleCaretaker();
+        boolean ownBatch = (caretaker.pending == null);
+        if (ownBatch)
+        {
+            beginBatch();
+        }
         
         //Get the latest memento
-        EnsembleMemento memento = mementoStack.pop();
-
+        EnsembleMemento memento = caretaker.mementoStack.pop();
+        
         //Get the Ensemble related to the latest memento
         Map<String, Ensemble> ensembles = MEMS.getEnsembles();
-        Ensemble ensembleToRestore = ensembles.get(memento.getEID()); 
-
-        //collect all current musicians into a list to avoid ConcurrentModificationException
-        List<Musician> currentMusicians = new ArrayList<>();
-        Iterator<Musician> it = ensembleToRestore.getMusicians();
-        while (it.hasNext())
+        Ensemble ensembleToRestore = ensembles.get(memento.getEID());
+        
+        PendingRestore restore = caretaker.pending.get(memento.getEID());
+        if (restore == null)
         {
-            currentMusicians.add(it.next());
+            restore = new PendingRestore(ensembleToRestore);
+            caretaker.pending.put(memento.getEID(), restore);
         }
+        apply(restore, memento);
+        
+        // Restore the current ensemble
+        MEMS.setCurrentEnsembleId(memento.getEID());
         
-        // Now remove them (won't throw ConcurrentModificationException)
-        for (Musician m : currentMusicians)
+        if (ownBatch)
+        {
+            endBatch();
+        }
+    }
+    
+    // Is the caretaker telling the listeners what a batch restored? HistoryJournal skips these reports,
+    // as it hears of every change on its own while it is taken back (so a multi-step undo keeps one entry per step)
+    public static boolean isReporting()
+    {
+        return MEMS.getEnsembleCaretaker().reporting;
+    }
+    
+    // Forget the latest memento without restoring it (its command's history entry was merged into another)
+    public static void discardLatest()
+    {
+        MEMS.getEnsembleCaretaker().mementoStack.pop();
+    }
+    
+    // Start collecting restores, to report each ensemble's changes once
+    public static void beginBatch()
+    {
+        EnsembleCaretaker caretaker = MEMS.getEnsembleCaretaker();
+        if (caretaker.pending == null)
+        {
+            caretaker.pending = new LinkedHashMap<>();
+        }
+    }
+    
+    // Report what the restores since beginBatch() changed, one ensemble at a time
+    public static void endBatch()
+    {
+        EnsembleCaretaker caretaker = MEMS.getEnsembleCaretaker();
+        Map<String, PendingRestore> restores = caretaker.pending;
+        caretaker.pending = null;
+        if (restores == null)
         {
-            ensembleToRestore.dropMusician(m);
+            return;
+        }
+        for (PendingRestore restore : restores.values())
+        {
+            report(restore);
+        }
+    }
+    
+    // Report the restores of one ensemble now (call before changing or removing the ensemble directly inside a batch)
+    public static void settle(String ensembleId)
+    {
+        Map<String, PendingRestore> pending = MEMS.getEnsembleCaretaker().pending;
+        PendingRestore restore = (pending == null) ? null : pending.remove(ensembleId);
+        if (restore != null)
+        {
+            report(restore);
+        }
+    }
+    
+    // Take back one change, keeping the global musicians map in step
+    // Remembers how each musician looked before the batch first touched it, for report(),
+    // and tells the history journal (if on) about this one change straight away
+    private static void apply(PendingRestore restore, EnsembleMemento memento)
+    {
+        Ensemble ensembleToRestore = restore.ensemble;
+        Map<String, Musician> musicians = MEMS.getMusicians();
+        HistoryJournal journal = MEMS.getHistoryJournal();
+        String musicianId = memento.getMusicianId();
+        Musician current = (musicianId == null) ? null : ensembleToRestore.findMusician(musicianId);
+        if (musicianId != null && !restore.musicians.containsKey(musicianId))
+        {
+            restore.musicians.put(musicianId, new Before(current));
         }
         
-        // Restore musicians from memento
-        for (Musician m : memento.getMusicians())
+        switch (memento.getChange())
         {
-            ensembleToRestore.addMusician(m);
-            System.out.println("Restored musician: " + m.getName());
+            case ADDED:
+                // Musician IDs are unique across ensembles, so the ID can leave the global map too
+                if (current != null)
+                {
+                    ensembleToRestore.dropMusician(current);
+                    musicians.remove(musicianId);
+                    if (journal != null)
+                    {
+                        journal.musicianRemoved(ensembleToRestore, current);
+                    }
+                }
+                break;
+            case REMOVED:
+                Musician returning = memento.getMusician();
+                if (memento.getPosition() >= ensembleToRestore.getSize())
+                {
+                    ensembleToRestore.addMusician(returning);
+                }
+                else
+                {
+                    ensembleToRestore.insertMusicians(new Musician[] { returning }, new int[] { memento.getPosition() });
+                }
+                musicians.put(musicianId, returning);
+                if (journal != null)
+                {
+                    journal.musicianAdded(ensembleToRestore, returning);
+                }
+                break;
+            case ROLE:
+                if (current != null)
+                {
+                    int role = current.getRole();
+                    ensembleToRestore.changeMusicianRole(current, memento.getRole());
+                    if (journal != null)
+                    {
+                        journal.roleChanged(ensembleToRestore, current, role);
+                    }
+                }
+                break;
+            case NAME:
+                String name = ensembleToRestore.getName();
+                ensembleToRestore.setName(memento.getName());
+                if (journal != null)
+                {
+                    journal.ensembleRenamed(ensembleToRestore, name);
+                }
+                break;
         }
-        ensembleToRestore.setName(memento.getName());
-
-        // Restore the current ensemble
-        MEMS.setCurrentEnsembleId(memento.getEID());
-    } 
+    }
+    
+    // Tell the listeners what a batch changed in one ensemble - only the differences between before and now,
+    // so e.g. an add and a delete of the same musician taken back together report nothing
+    private static void report(PendingRestore restore)
+    {
+        EnsembleCaretaker caretaker = MEMS.getEnsembleCaretaker();
+        caretaker.reporting = true;
+        try
+        {
+            notifyDifferences(restore);
+        }
+        finally
+        {
+            caretaker.reporting = false;
+        }
+    }
+    
+    private static void notifyDifferences(PendingRestore restore)
+    {
+        Ensemble ensemble = restore.ensemble;
+        ChangeNotifier notifier = MEMS.getChangeNotifier();
+        int changed = 0;
+        for (Map.Entry<String, Before> entry : restore.musicians.entrySet())
+        {
+            Before before = entry.getValue();
+            Musician now = ensemble.findMusician(entry.getKey());
+            if (before.musician == null)
+            {
+                if (now != null)
+                {
+                    notifier.musicianAdded(ensemble, now);
+                    changed++;
+                }
+            }
+            else if (now == null)
+            {
+                notifier.musicianRemoved(ensemble, before.musician);
+                changed++;
+            }
+            else if (now != before.musician)
+            {
+                // Another musician object with the same ID (e.g. re-added by a redo) - it may differ in anything
+                notifier.musicianRemoved(ensemble, before.musician);
+                notifier.musicianAdded(ensemble, now);
+                changed++;
+            }
+            else if (now.getRole() != before.role)
+            {
+                notifier.roleChanged(ensemble, now, before.role);
+                changed++;
+            }
+        }
+        boolean renamed = !restore.name.equals(ensemble.getName());
+        if (renamed)
+        {
+            notifier.ensembleRenamed(ensemble, restore.name);
+        }
+        
+        // One line per ensemble, however many steps and musicians the batch took back
+        if (changed > 0 || renamed)
+        {
+            MEMS.getOut().println("Restored ensemble " + ensemble.getEnsembleID() + " (" + ensemble.getName() + "): "
+                    + changed + " musician(s) changed" + (renamed ? ", name was " + restore.name : ""));
+        }
+    }
 }
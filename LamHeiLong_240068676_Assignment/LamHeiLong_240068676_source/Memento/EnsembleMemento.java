@@ -1,41 +1,70 @@
-import java.util.Iterator;
-import java.util.List;
-import java.util.Vector;
-
 /**
- * EnsembleMemento - stores a snapshot of an ensemble's state
+ * EnsembleMemento - stores what one command changed in an ensemble
  * Part of the Memento pattern for undo/redo functionality
- * 
- * This class saves the ensemble's musicians list and name so we can
- * restore it later if the user wants to undo changes.
+ *
+ * This class saves just enough to take the change back, so a memento costs the same
+ * whatever the size of the roster:
+ * - ADDED:   a musician joined (undo drops it again)
+ * - REMOVED: a musician left - the musician itself and its roster position (undo puts it back there)
+ * - ROLE:    a musician's instrument changed - its old role
+ * - NAME:    the ensemble was renamed - its old name
  */
 public class EnsembleMemento
 {
+	public enum Change { ADDED, REMOVED, ROLE, NAME }
+	
 	private String eID;					//saved ensemble ID
-	private List<Musician> musicians;  // Saved list of musicians
-	private String name;                // Saved ensemble name
+	private Change change;              // What the command did
+	private String musicianId;          // ADDED / REMOVED / ROLE: the musician concerned
+	private Musician musician;          // REMOVED: the musician that left (put back as it was)
+	private int position;               // REMOVED: its roster position (joining order, from 0)
+	private int role;                   // ROLE: the role before the change
+	private String name;                // NAME: the name before the change
 	
-	// Constructor - saves the current state
-	// Makes a DEEP COPY of musicians so changes don't affect the saved state
-	public EnsembleMemento(String Id, Iterator<Musician> musicians, String name)
+	private EnsembleMemento(String Id, Change change, String musicianId)
 	{
-		// Create a new list and copy each musician
-		// This is important! If we just copy the list reference, changes would affect our saved state
-		this.musicians = new Vector<>();
-		while (musicians.hasNext())
-		{
-			Musician m = musicians.next();
-			Musician copy = new Musician(m.getMID());
-			copy.setName(m.getName());
-			copy.setRole(m.getRole());
-			this.musicians.add(copy); // Add the copied musician to our saved list
-		}
-		this.name = name;
 		this.eID = Id;
+		this.change = change;
+		this.musicianId = musicianId;
+	}
+	
+	// A musician joined the ensemble
+	public static EnsembleMemento added(String Id, String musicianId)
+	{
+		return new EnsembleMemento(Id, Change.ADDED, musicianId);
+	}
+	
+	// A musician left the ensemble from roster position 'position'
+	public static EnsembleMemento removed(String Id, Musician musician, int position)
+	{
+		EnsembleMemento memento = new EnsembleMemento(Id, Change.REMOVED, musician.getMID());
+		memento.musician = musician;
+		memento.position = position;
+		return memento;
+	}
+	
+	// A musician had role 'oldRole' before the change
+	public static EnsembleMemento roleChanged(String Id, String musicianId, int oldRole)
+	{
+		EnsembleMemento memento = new EnsembleMemento(Id, Change.ROLE, musicianId);
+		memento.role = oldRole;
+		return memento;
+	}
+	
+	// The ensemble was called 'oldName' before the change
+	public static EnsembleMemento renamed(String Id, String oldName)
+	{
+		EnsembleMemento memento = new EnsembleMemento(Id, Change.NAME, null);
+		memento.name = oldName;
+		return memento;
 	}
 	
 	// Getter methods to retrieve saved state
-	public List<Musician> getMusicians() { return musicians; }
+	public Change getChange() { return change; }
+	public String getMusicianId() { return musicianId; }
+	public Musician getMusician() { return musician; }
+	public int getPosition() { return position; }
+	public int getRole() { return role; }
 	public String getName() { return name; }
 	public String getEID() {return eID;}
 }
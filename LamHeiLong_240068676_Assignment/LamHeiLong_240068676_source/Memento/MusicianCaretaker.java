@@ -2,19 +2,22 @@ import java.util.Stack;
 
 public class MusicianCaretaker 
 {
-    private static Stack<MusicianMemento> mementoStack = new Stack<MusicianMemento>();
+    // Each MEMS has its own caretaker; the static methods work on the current system's one
+    private Stack<MusicianMemento> mementoStack = new Stack<MusicianMemento>();
+    
     // Memento pattern methods - for undo/redo functionality
 	// Save current state
 	public static void createMemento(Musician musician, String roleName)
 	{
-		mementoStack.push(new MusicianMemento(musician, roleName));
+		MEMS.getMusicianCaretaker().mementoStack.push(new MusicianMemento(musician, roleName));
 	}
-
+    
     // Because the command needs to show the modified musician info in description
     // The memento will be restored by the command's undo method
     // Pop the last saved state, the memento will be restore by the caller
     public static MusicianMemento popMemento()
     {
+        Stack<MusicianMemento> mementoStack = MEMS.getMusicianCaretaker().mementoStack;
         if (!mementoStack.isEmpty()) {
             return mementoStack.pop();
         }
@@ -0,0 +1,15 @@
+@echo off
+REM Allocation check - compiles MEMS and fails (exit code 1) if a, d, m or cn allocates more than its limit
+REM Example: allocheck.bat --commands 50000
+
+echo Compiling MEMS...
+javac -d bin domain/*.java factory/*.java command/*.java registry/*.java Memento/*.java io/*.java engine/*.java tools/*.java MEMS.java
+
+if %ERRORLEVEL% EQU 0 (
+    echo.
+    java -cp bin AllocationCheck %*
+) else (
+    echo.
+    echo Compilation failed!
+    exit /b 1
+)
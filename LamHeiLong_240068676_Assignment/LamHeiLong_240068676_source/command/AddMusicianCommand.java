@@ -1,20 +1,40 @@
-import java.util.ArrayList;
-import java.util.Iterator;
-import java.util.List;
 import java.util.Map;
-import java.util.Scanner;
 
-public class AddMusicianCommand implements Command
+/**
+ * AddMusicianCommand - adds a musician to the current ensemble
+ * Deleting the same musician straight afterwards cancels it out, and both history entries are dropped.
+ */
+public class AddMusicianCommand implements Command, Coalescible
 {
 	private Musician musician;
 	private String ensembleId;
 	private String roleName;
+	private boolean deletedAgain;   // Absorbed a delete of the same musician (a net no-op)
 	
 	public AddMusicianCommand()
 	{
 	}
 	
-	public void readInput(Scanner scanner)
+	// Constructor for programmatic use (MemsEngine) - same checks as readInput, no prompts
+	public AddMusicianCommand(String ensembleId, String musicianId, String musicianName, int role)
+	{
+		Ensemble ensemble = MEMS.getEnsembles().get(ensembleId);
+		if (ensemble == null) {
+			throw new IllegalArgumentException("Ensemble ID '" + ensembleId + "' does not exist!");
+		}
+		if (musicianId == null || musicianId.trim().isEmpty() || musicianName == null || musicianName.trim().isEmpty()) {
+			throw new IllegalArgumentException("Please provide both musician ID and name");
+		}
+		if (MEMS.isMusicianIdTaken(musicianId)) {
+			throw new IllegalArgumentException("Musician ID '" + musicianId + "' already exists! Please use a different ID.");
+		}
+		MusicianFactory musicianFactory = MEMS.getFactoryRegistry().getMusicianFactory(ensemble.getFactoryType());
+		this.ensembleId = ensembleId;
+		this.musician = musicianFactory.createMusician(musicianId.trim(), musicianName.trim(), role);
+		this.roleName = musicianFactory.getRoleName(role);
+	}
+	
+	public void readInput(LineReader reader)
 	{
 		Map<String, Ensemble> ensembles = MEMS.getEnsembles();
 		FactoryRegistry factoryRegistry = MEMS.getFactoryRegistry();
@@ -26,18 +46,22 @@ public class AddMusicianCommand implements Command
 			throw new IllegalArgumentException("No current ensemble set. Please create or switch to an ensemble first.");
 		}
 		
-		System.out.print("Please input musician information (id, name):- ");
-		String input = scanner.nextLine().trim();
-		String[] parts = input.split(",", 2);
+		MEMS.getOut().print("Please input musician information (id or *, name):- ");
+		String[] parts = reader.nextFields(2);
 		if (parts.length < 2) {
 			throw new IllegalArgumentException("Please provide both musician ID and name separated by a comma (e.g., M001, John Doe)");
 		}
-		String musicianId = parts[0].trim();
-		String musicianName = parts[1].trim();
+		String musicianId = parts[0];
+		String musicianName = parts[1];
+		
+		// "*" = let the system pick a free ID
+		if (IdAllocator.AUTO.equals(musicianId)) {
+			musicianId = MEMS.getMusicianIdAllocator().next();
+			MEMS.getOut().println("Musician ID " + musicianId + " is assigned.");
+		}
 		
 		// Check if musician ID already exists
-		Map<String, Musician> musicians = MEMS.getMusicians();
-		if (musicians.containsKey(musicianId)) {
+		if (MEMS.isMusicianIdTaken(musicianId)) {
 			throw new IllegalArgumentException("Musician ID '" + musicianId + "' already exists! Please use a different ID.");
 		}
 		
@@ -56,8 +80,8 @@ public class AddMusicianCommand implements Command
 		MusicianFactory musicianFactory = factoryRegistry.getMusicianFactory(ensembleType);
 		
 		// Use factory method for OCP compliance - no hardcoded prompts
-		System.out.print(musicianFactory.getRolePrompt());
-		String roleInput = scanner.nextLine().trim();
+		MEMS.getOut().print(musicianFactory.getRolePrompt());
+		String roleInput = reader.nextTrimmedLine();
 		if (roleInput.isEmpty()) {
 			throw new IllegalArgumentException("Instrument selection cannot be empty");
 		}
@@ -77,49 +101,52 @@ public class AddMusicianCommand implements Command
 			throw new IllegalStateException("Ensemble " + ensembleId + " no longer exists!");
 		}
 		
-		List<Musician> musicianList = new ArrayList<>();
-		Iterator<Musician> musiciansBeforeUndo = ensemble.getMusicians();
-		while (musiciansBeforeUndo.hasNext()) {
-			musicianList.add(musiciansBeforeUndo.next());
-		}
-		EnsembleCaretaker.createMemento(ensemble.getEnsembleID(), musicianList, ensemble.getName());
-
-		ensemble.addMusician(musician);
-		musicians.put(musician.getMID(), musician);
-		System.out.println("Musician is added.");
+		// Add a fresh copy each time - on redo, the object added last time may have been changed by later commands
+		Musician added = new Musician(musician.getMID());
+		added.setName(musician.getName());
+		added.setRole(musician.getRole());
+		ensemble.addMusician(added);
+		musicians.put(added.getMID(), added);
+		EnsembleCaretaker.createMemento(EnsembleMemento.added(ensembleId, added.getMID()));
+		MEMS.getChangeNotifier().musicianAdded(ensemble, added);
+		MEMS.getOut().println("Musician is added.");
 		return true;
 	}
 	
 	public boolean undo()
 	{
-		Map<String, Ensemble> ensembles = MEMS.getEnsembles();
-		Map<String, Musician> musicians = MEMS.getMusicians();
-		
-		// Get the ensemble before restoring
-		Ensemble ensemble = ensembles.get(ensembleId);
-		
-		// Restore the ensemble state (removes the added musician from ensemble)
+		// Take the add back (removes the musician from the ensemble and the musicians map)
 		EnsembleCaretaker.restoreMemento();
-		
-		// Also remove the musician from the global musicians map
-		if (ensemble != null) {
-			// Remove any musicians from global map that are not in the restored ensemble
-			Iterator<Musician> it = ensemble.getMusicians();
-			List<String> restoredMusicianIds = new ArrayList<>();
-			while (it.hasNext()) {
-				restoredMusicianIds.add(it.next().getMID());
-			}
-			// Remove the musician that was added (not in the restored list)
-			if (!restoredMusicianIds.contains(musician.getMID())) {
-				musicians.remove(musician.getMID());
-			}
-		}
-		
 		return true;
 	}
 	
 	public String getDescription()
 	{
-		return String.format("Add musician, %s, %s, %s", musician.getMID(), musician.getName(), roleName);
+		return "Add musician, " + musician.getMID() + ", " + musician.getName() + ", " + roleName;
+	}
+	
+	// A delete of the musician just added leaves the roster as it was before the add
+	public boolean absorb(Command next)
+	{
+		if (!(next instanceof DeleteMusicianCommand)) {
+			return false;
+		}
+		DeleteMusicianCommand delete = (DeleteMusicianCommand) next;
+		if (!ensembleId.equals(delete.getEnsembleId()) || !musician.getMID().equals(delete.getMusicianId())) {
+			return false;
+		}
+		EnsembleCaretaker.discardLatest();
+		this.deletedAgain = true;
+		return true;
+	}
+	
+	public boolean isNoOp()
+	{
+		return deletedAgain;
+	}
+	
+	public void discard()
+	{
+		EnsembleCaretaker.discardLatest();
 	}
 }
@@ -0,0 +1,106 @@
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * BulkDeleteMusiciansCommand - deletes every musician of an ensemble that matches a MusicianFilter
+ * Part of the Command pattern for undo/redo support
+ *
+ * One pass over the roster, one history entry. Instead of a roster memento it keeps only
+ * the deleted musicians, so undo costs O(deleted) whatever the roster size.
+ * Undo puts the musicians back at the end of the roster, in their old order.
+ */
+public class BulkDeleteMusiciansCommand implements Command
+{
+	private String ensembleId;
+	private MusicianFilter filter;
+	private Musician[] deleted;   // Musicians deleted by the last execute, in roster order
+	
+	public BulkDeleteMusiciansCommand()
+	{
+	}
+	
+	// Constructor for programmatic use (MemsEngine)
+	public BulkDeleteMusiciansCommand(String ensembleId, String filter)
+	{
+		this.filter = MusicianFilter.parse(filter, BulkModifyMusiciansCommand.factoryOf(ensembleId));
+		this.ensembleId = ensembleId;
+	}
+	
+	public void readInput(LineReader reader)
+	{
+		this.ensembleId = MEMS.getCurrentEnsembleId();
+		MusicianFactory musicianFactory = BulkModifyMusiciansCommand.factoryOf(ensembleId);
+		MEMS.getOut().print("Please input filter (role=<instrument> id=<prefix> name=<pattern>):- ");
+		this.filter = MusicianFilter.parse(reader.nextTrimmedLine(), musicianFactory);
+	}
+	
+	// "bd id=TMP-" - in the current ensemble
+	public void setArguments(String arguments)
+	{
+		this.ensembleId = MEMS.getCurrentEnsembleId();
+		this.filter = MusicianFilter.parse(arguments, BulkModifyMusiciansCommand.factoryOf(ensembleId));
+	}
+	
+	// Also used for redo - the filter is applied again to the roster as it is then
+	public boolean execute()
+	{
+		Ensemble ensemble = MEMS.getEnsembles().get(ensembleId);
+		if (ensemble == null) {
+			throw new IllegalStateException("Ensemble " + ensembleId + " no longer exists!");
+		}
+		
+		List<Musician> matching = new ArrayList<>();
+		Iterator<Musician> it = ensemble.getMusicians();
+		while (it.hasNext())
+		{
+			Musician m = it.next();
+			if (filter.matches(m))
+			{
+				matching.add(m);
+			}
+		}
+		if (matching.isEmpty())
+		{
+			MEMS.getOut().println("No musicians match " + filter + ". No changes made.");
+			return false;
+		}
+		
+		this.deleted = matching.toArray(new Musician[0]);
+		Map<String, Musician> musicians = MEMS.getMusicians();
+		ChangeNotifier notifier = MEMS.getChangeNotifier();
+		for (Musician m : deleted)
+		{
+			musicians.remove(m.getMID());
+			ensemble.dropMusician(m);
+			notifier.musicianRemoved(ensemble, m);
+		}
+		MEMS.getOut().println(deleted.length + " musician(s) deleted.");
+		return true;
+	}
+	
+	public boolean undo()
+	{
+		// A multi-step undo may still hold a restore of this ensemble - apply it first
+		EnsembleCaretaker.settle(ensembleId);
+		
+		Ensemble ensemble = MEMS.getEnsembles().get(ensembleId);
+		Map<String, Musician> musicians = MEMS.getMusicians();
+		ChangeNotifier notifier = MEMS.getChangeNotifier();
+		for (Musician m : deleted)
+		{
+			ensemble.addMusician(m);
+			musicians.put(m.getMID(), m);
+			notifier.musicianAdded(ensemble, m);
+		}
+		MEMS.setCurrentEnsembleId(ensembleId);
+		return true;
+	}
+	
+	public String getDescription()
+	{
+		String count = (deleted == null) ? "" : ", " + deleted.length + " musician(s)";
+		return String.format("Bulk delete musicians, %s, %s%s", ensembleId, filter, count);
+	}
+}
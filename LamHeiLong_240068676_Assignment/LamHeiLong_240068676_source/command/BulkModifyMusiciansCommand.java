@@ -0,0 +1,146 @@
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * BulkModifyMusiciansCommand - gives every musician of an ensemble that matches a MusicianFilter a new instrument
+ * Part of the Command pattern for undo/redo support
+ *
+ * One pass over the roster, one history entry. Instead of a roster memento it keeps only
+ * (musician ID, old role) per changed musician, so execute and undo cost O(roster) and O(changed).
+ * Musicians that already play the new instrument are left alone.
+ */
+public class BulkModifyMusiciansCommand implements Command
+{
+	private String ensembleId;
+	private MusicianFilter filter;
+	private int newRole;
+	private String newRoleName;    // Instrument name of newRole, for the description
+	private String[] changedIds;   // Musicians changed by the last execute
+	private int[] oldRoles;        // Their roles before it
+	
+	public BulkModifyMusiciansCommand()
+	{
+	}
+	
+	// Constructor for programmatic use (MemsEngine)
+	public BulkModifyMusiciansCommand(String ensembleId, String filter, int newRole)
+	{
+		MusicianFactory musicianFactory = factoryOf(ensembleId);
+		if (!musicianFactory.isValidRole(newRole)) {
+			throw new IllegalArgumentException("Invalid instrument selection: " + newRole);
+		}
+		this.ensembleId = ensembleId;
+		this.filter = MusicianFilter.parse(filter, musicianFactory);
+		this.newRole = newRole;
+	}
+	
+	public void readInput(LineReader reader)
+	{
+		this.ensembleId = MEMS.getCurrentEnsembleId();
+		MusicianFactory musicianFactory = factoryOf(ensembleId);
+		MEMS.getOut().print("Please input filter (role=<instrument> id=<prefix> name=<pattern>):- ");
+		this.filter = MusicianFilter.parse(reader.nextTrimmedLine(), musicianFactory);
+		MEMS.getOut().print(musicianFactory.getRolePrompt());
+		String roleInput = reader.nextTrimmedLine();
+		if (roleInput.isEmpty()) {
+			throw new IllegalArgumentException("Instrument selection cannot be empty");
+		}
+		this.newRole = MusicianFilter.parseRole(roleInput, musicianFactory);
+	}
+	
+	// "bm role=saxophonist to drummer" - in the current ensemble
+	public void setArguments(String arguments)
+	{
+		int to = arguments.lastIndexOf(" to ");
+		if (to < 0) {
+			throw new IllegalArgumentException("Usage: bm <filter> to <instrument>");
+		}
+		this.ensembleId = MEMS.getCurrentEnsembleId();
+		MusicianFactory musicianFactory = factoryOf(ensembleId);
+		this.filter = MusicianFilter.parse(arguments.substring(0, to), musicianFactory);
+		this.newRole = MusicianFilter.parseRole(arguments.substring(to + 4), musicianFactory);
+	}
+	
+	// Also used for redo - the filter is applied again to the roster as it is then
+	public boolean execute()
+	{
+		Ensemble ensemble = MEMS.getEnsembles().get(ensembleId);
+		if (ensemble == null) {
+			throw new IllegalStateException("Ensemble " + ensembleId + " no longer exists!");
+		}
+		
+		List<Musician> changed = new ArrayList<>();
+		Iterator<Musician> it = ensemble.getMusicians();
+		while (it.hasNext())
+		{
+			Musician m = it.next();
+			if (m.getRole() != newRole && filter.matches(m))
+			{
+				changed.add(m);
+			}
+		}
+		if (changed.isEmpty())
+		{
+			MEMS.getOut().println("No musicians match " + filter + ". No changes made.");
+			return false;
+		}
+		
+		this.newRoleName = roleName(ensemble, newRole);
+		this.changedIds = new String[changed.size()];
+		this.oldRoles = new int[changed.size()];
+		ChangeNotifier notifier = MEMS.getChangeNotifier();
+		for (int i = 0; i < changedIds.length; i++)
+		{
+			Musician m = changed.get(i);
+			changedIds[i] = m.getMID();
+			oldRoles[i] = m.getRole();
+			ensemble.changeMusicianRole(m, newRole);
+			notifier.roleChanged(ensemble, m, oldRoles[i]);
+		}
+		MEMS.getOut().println(changedIds.length + " musician(s) changed to " + newRoleName + ".");
+		return true;
+	}
+	
+	public boolean undo()
+	{
+		// A multi-step undo may still hold a restore of this ensemble - apply it first
+		EnsembleCaretaker.settle(ensembleId);
+		
+		Ensemble ensemble = MEMS.getEnsembles().get(ensembleId);
+		ChangeNotifier notifier = MEMS.getChangeNotifier();
+		for (int i = changedIds.length - 1; i >= 0; i--)
+		{
+			Musician m = ensemble.findMusician(changedIds[i]);
+			ensemble.changeMusicianRole(m, oldRoles[i]);
+			notifier.roleChanged(ensemble, m, newRole);
+		}
+		MEMS.setCurrentEnsembleId(ensembleId);
+		return true;
+	}
+	
+	public String getDescription()
+	{
+		String count = (changedIds == null) ? "" : ", " + changedIds.length + " musician(s)";
+		return String.format("Bulk modify instrument, %s, %s -> %s%s", ensembleId, filter,
+			(newRoleName == null) ? String.valueOf(newRole) : newRoleName, count);
+	}
+	
+	// Musician factory of an existing ensemble
+	static MusicianFactory factoryOf(String ensembleId)
+	{
+		if (ensembleId == null) {
+			throw new IllegalArgumentException("No current ensemble set. Please create or switch to an ensemble first.");
+		}
+		Ensemble ensemble = MEMS.getEnsembles().get(ensembleId);
+		if (ensemble == null) {
+			throw new IllegalArgumentException("Ensemble ID '" + ensembleId + "' does not exist!");
+		}
+		return MEMS.getFactoryRegistry().getMusicianFactory(ensemble.getFactoryType());
+	}
+	
+	private static String roleName(Ensemble ensemble, int role)
+	{
+		return MEMS.getFactoryRegistry().getMusicianFactory(ensemble.getFactoryType()).getRoleName(role);
+	}
+}
@@ -1,26 +1,37 @@
-import java.util.ArrayList;
-import java.util.Iterator;
-import java.util.List;
 import java.util.Map;
-import java.util.Scanner;
 
-public class ChangeEnsembleNameCommand implements Command
+/**
+ * ChangeEnsembleNameCommand - changes the name of the current ensemble
+ * Repeated renames of one ensemble coalesce into one entry holding the first pre-image.
+ */
+public class ChangeEnsembleNameCommand implements Command, Coalescible
 {
 	private String ensembleId;
 	private String newName;
+	private String oldName;   // Name before the last execute
 	
 	public ChangeEnsembleNameCommand()
 	{
 	}
 	
-	public void readInput(Scanner scanner)
+	// Constructor for programmatic use (MemsEngine)
+	public ChangeEnsembleNameCommand(String ensembleId, String newName)
+	{
+		if (newName == null || newName.trim().isEmpty()) {
+			throw new IllegalArgumentException("Ensemble name cannot be empty");
+		}
+		this.ensembleId = ensembleId;
+		this.newName = newName.trim();
+	}
+	
+	public void readInput(LineReader reader)
 	{
 		this.ensembleId = MEMS.getCurrentEnsembleId();
 		if (this.ensembleId == null) {
 			throw new IllegalArgumentException("No current ensemble set. Please create or switch to an ensemble first.");
 		}
-		System.out.print("Please input new name of the current ensemble:- ");
-		this.newName = scanner.nextLine().trim();
+		MEMS.getOut().print("Please input new name of the current ensemble:- ");
+		this.newName = reader.nextTrimmedLine();
 		if (this.newName.isEmpty()) {
 			throw new IllegalArgumentException("Ensemble name cannot be empty");
 		}
@@ -35,41 +46,49 @@ public class ChangeEnsembleNameCommand implements Command
 			throw new IllegalStateException("Ensemble " + ensembleId + " no longer exists!");
 		}
 		
-		List<Musician> musicianList = new ArrayList<>();
-		Iterator<Musician> musiciansBeforeUndo = ensemble.getMusicians();
-		while (musiciansBeforeUndo.hasNext()) {
-			musicianList.add(musiciansBeforeUndo.next());
-		}
-		EnsembleCaretaker.createMemento(ensemble.getEnsembleID(), musicianList, ensemble.getName());
+		this.oldName = ensemble.getName();
+		EnsembleCaretaker.createMemento(EnsembleMemento.renamed(ensembleId, oldName));
 		ensemble.setName(newName);
-		System.out.println("Ensemble's name is updated.");
+		MEMS.getChangeNotifier().ensembleRenamed(ensemble, oldName);
+		MEMS.getOut().println("Ensemble's name is updated.");
 		return true;
 	}
 	
 	public boolean undo()
 	{
-		Map<String, Ensemble> ensembles = MEMS.getEnsembles();
-		Map<String, Musician> musicians = MEMS.getMusicians();
-		
-		// Restore the ensemble state (this restores name and musicians list)
+		// Take the rename back (restores the old name)
 		EnsembleCaretaker.restoreMemento();
-		
-		// After restoring, sync the global musicians map with the ensemble's musicians
-		Ensemble ensemble = ensembles.get(ensembleId);
-		if (ensemble != null) {
-			Iterator<Musician> it = ensemble.getMusicians();
-			while (it.hasNext()) {
-				Musician m = it.next();
-				// Ensure all musicians in the ensemble are in the global map
-				musicians.put(m.getMID(), m);
-			}
-		}
-		
 		return true;
 	}
 	
 	public String getDescription()
 	{
-		return String.format("Change ensemble's name, %s, %s", ensembleId, newName);
+		return "Change ensemble's name, " + ensembleId + ", " + newName;
+	}
+	
+	// Another rename of the same ensemble: keep this entry's memento, drop the newer one
+	public boolean absorb(Command next)
+	{
+		if (!(next instanceof ChangeEnsembleNameCommand)) {
+			return false;
+		}
+		ChangeEnsembleNameCommand rename = (ChangeEnsembleNameCommand) next;
+		if (!ensembleId.equals(rename.ensembleId)) {
+			return false;
+		}
+		EnsembleCaretaker.discardLatest();
+		this.newName = rename.newName;
+		return true;
+	}
+	
+	// Renamed back to the name it started with
+	public boolean isNoOp()
+	{
+		return newName.equals(oldName);
+	}
+	
+	public void discard()
+	{
+		EnsembleCaretaker.discardLatest();
 	}
 }
@@ -0,0 +1,193 @@
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * CloneEnsembleCommand - creates a new ensemble with the same type and roster as an existing one
+ * Part of the Command pattern for undo/redo support
+ *
+ * The new ensemble is made by the source's EnsembleFactory, and every musician is copied with the same
+ * name and instrument under a newly generated musician ID (musician IDs are unique across ensembles).
+ * One history entry and no roster memento: undo removes the clone, redo adds it again with the same IDs,
+ * so later commands that refer to those musicians stay valid.
+ */
+public class CloneEnsembleCommand implements Command
+{
+	private String sourceId;           // Ensemble copied (for the description)
+	private String type;               // FactoryRegistry key of the source
+	private String ensembleId;         // ID of the clone
+	private String name;               // Name of the clone
+	private String[] names;            // Roster of the source at clone time: names ...
+	private int[] roles;               // ... and instruments
+	private String[] musicianIds;      // IDs of the copies (generated by the first execute, or given)
+	private String currentEnsembleId;  // Current ensemble before the clone (restored by undo)
+	
+	public CloneEnsembleCommand()
+	{
+	}
+	
+	// Constructor for programmatic use (MemsEngine) - '*' as ensemble ID generates one
+	public CloneEnsembleCommand(String sourceId, String ensembleId, String name)
+	{
+		setSource(sourceId);
+		setTarget(ensembleId, name);
+	}
+	
+	// Constructor for a source that lives elsewhere (ShardedEngine) - copies the roster of 'source'
+	// under the given musician IDs, which the caller has already reserved
+	public CloneEnsembleCommand(EnsembleView source, String ensembleId, String name, List<String> musicianIds)
+	{
+		List<MusicianView> roster = source.getMusicians();
+		if (musicianIds.size() != roster.size()) {
+			throw new IllegalArgumentException("Need one musician ID per musician of " + source.getId());
+		}
+		this.sourceId = source.getId();
+		this.type = source.getType();
+		this.names = new String[roster.size()];
+		this.roles = new int[roster.size()];
+		for (int i = 0; i < names.length; i++)
+		{
+			names[i] = roster.get(i).getName();
+			roles[i] = roster.get(i).getRole();
+		}
+		this.musicianIds = musicianIds.toArray(new String[0]);
+		setTarget(ensembleId, name);
+	}
+	
+	public void readInput(LineReader reader)
+	{
+		MEMS.getOut().print("Please input ensemble ID to clone:- ");
+		setSource(reader.nextTrimmedLine());
+		MEMS.getOut().print("New ensemble ID (or *):- ");
+		String id = reader.nextTrimmedLine();
+		MEMS.getOut().print("New ensemble name:- ");
+		setTarget(id, reader.nextTrimmedLine());
+	}
+	
+	// "E1 as E2, Season 2027" (or "E1 as *, Season 2027")
+	public void setArguments(String arguments)
+	{
+		int as = arguments.indexOf(" as ");
+		int comma = arguments.indexOf(',', Math.max(as, 0));
+		if (as < 0 || comma < 0) {
+			throw new IllegalArgumentException("Usage: clone <ensemble ID> as <new ensemble ID or *>, <new name>");
+		}
+		setSource(arguments.substring(0, as).trim());
+		setTarget(arguments.substring(as + 4, comma).trim(), arguments.substring(comma + 1).trim());
+	}
+	
+	public boolean execute()
+	{
+		Map<String, Ensemble> ensembles = MEMS.getEnsembles();
+		if (ensembles.containsKey(ensembleId)) {
+			throw new IllegalStateException("Ensemble ID '" + ensembleId + "' already exists!");
+		}
+		
+		// IDs are generated once; a redo brings back the same musicians
+		// (checked like the add command does, so ensembles not loaded from a file store count too)
+		if (musicianIds == null)
+		{
+			musicianIds = new String[names.length];
+			IdAllocator allocator = MEMS.getMusicianIdAllocator();
+			for (int i = 0; i < musicianIds.length; i++)
+			{
+				musicianIds[i] = allocator.next();
+			}
+		}
+		for (String id : musicianIds)
+		{
+			if (MEMS.isMusicianIdTaken(id)) {
+				throw new IllegalStateException("Musician ID '" + id + "' already exists!");
+			}
+		}
+		
+		this.currentEnsembleId = MEMS.getCurrentEnsembleId();
+		Ensemble clone = MEMS.getFactoryRegistry().getEnsembleFactory(type).createEnsemble(ensembleId);
+		clone.setName(name);
+		ensembles.put(ensembleId, clone);
+		ChangeNotifier notifier = MEMS.getChangeNotifier();
+		notifier.ensembleCreated(clone);
+		Map<String, Musician> musicians = MEMS.getMusicians();
+		for (int i = 0; i < musicianIds.length; i++)
+		{
+			Musician m = new Musician(musicianIds[i]);
+			m.setName(names[i]);
+			m.setRole(roles[i]);
+			clone.addMusician(m);
+			musicians.put(m.getMID(), m);
+			notifier.musicianAdded(clone, m);
+		}
+		MEMS.setCurrentEnsembleId(ensembleId);
+		MEMS.getOut().println("Ensemble " + ensembleId + " is cloned from " + sourceId + " with " + musicianIds.length + " musician(s).");
+		MEMS.getOut().println("Current ensemble is changed to " + ensembleId + ".");
+		return true;
+	}
+	
+	public boolean undo()
+	{
+		// Remove the clone (after any restore still pending for it in a multi-step undo)
+		EnsembleCaretaker.settle(ensembleId);
+		Map<String, Ensemble> ensembles = MEMS.getEnsembles();
+		Ensemble clone = ensembles.remove(ensembleId);
+		ChangeNotifier notifier = MEMS.getChangeNotifier();
+		if (clone != null)
+		{
+			Map<String, Musician> musicians = MEMS.getMusicians();
+			Iterator<Musician> it = clone.getMusicians();
+			while (it.hasNext())
+			{
+				Musician m = it.next();
+				musicians.remove(m.getMID(), m);
+				notifier.musicianRemoved(clone, m);
+			}
+		}
+		notifier.ensembleRemoved(ensembleId);
+		MEMS.setCurrentEnsembleId(currentEnsembleId);
+		return true;
+	}
+	
+	public String getDescription()
+	{
+		return String.format("Clone ensemble, %s -> %s, %s, %d musician(s)", sourceId, ensembleId, name, names.length);
+	}
+	
+	// Take type and roster from an existing ensemble
+	private void setSource(String id)
+	{
+		Ensemble source = MEMS.getEnsembles().get(id);
+		if (source == null) {
+			throw new IllegalArgumentException("Ensemble ID '" + id + "' does not exist!");
+		}
+		this.sourceId = id;
+		this.type = source.getFactoryType();
+		this.names = new String[source.getSize()];
+		this.roles = new int[source.getSize()];
+		Iterator<Musician> it = source.getMusicians();
+		for (int i = 0; it.hasNext(); i++)
+		{
+			Musician m = it.next();
+			names[i] = m.getName();
+			roles[i] = m.getRole();
+		}
+	}
+	
+	// Check the new ID ('*' = generate one) and name
+	private void setTarget(String id, String newName)
+	{
+		if (id == null || id.isEmpty()) {
+			throw new IllegalArgumentException("Ensemble ID cannot be empty");
+		}
+		if (IdAllocator.AUTO.equals(id)) {
+			id = MEMS.getEnsembleIdAllocator().next();
+			MEMS.getOut().println("Ensemble ID " + id + " is assigned.");
+		}
+		if (MEMS.getEnsembles().containsKey(id)) {
+			throw new IllegalArgumentException("Ensemble ID '" + id + "' already exists! Please use a different ID.");
+		}
+		if (newName == null || newName.trim().isEmpty()) {
+			throw new IllegalArgumentException("Ensemble name cannot be empty");
+		}
+		this.ensembleId = id;
+		this.name = newName.trim();
+	}
+}
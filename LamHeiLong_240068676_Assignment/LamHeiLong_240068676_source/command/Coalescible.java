@@ -0,0 +1,25 @@
+/**
+ * Coalescible - a command whose history entry can take in the command executed right after it
+ * HistoryManager offers each newly executed command to the entry before it, if coalescing is on for
+ * that entry's type (HistoryManager.setCoalescing), so e.g. s E1, s E2, s E3 becomes one undo step.
+ * 
+ * An entry that comes out as a net no-op (e.g. add M1 then delete M1) is dropped altogether.
+ * Commands are never merged across a savepoint, so every savepoint can still be rolled back to.
+ */
+public interface Coalescible
+{
+	// Take over the effect of 'next' (already executed) so that undoing this entry undoes both
+	// Returns false and changes nothing if 'next' can't be merged; on true, also release what 'next' saved for its undo
+	public boolean absorb(Command next);
+	
+	// Does this entry, as merged so far, leave everything as it found it?
+	public default boolean isNoOp()
+	{
+		return false;
+	}
+	
+	// Release whatever this command saved for its undo (called when it is dropped as a no-op)
+	public default void discard()
+	{
+	}
+}
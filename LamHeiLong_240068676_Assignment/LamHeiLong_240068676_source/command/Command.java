@@ -1,5 +1,3 @@
-import java.util.Scanner;
-
 /**
  * Command interface - part of the Command pattern
  * All commands (like add musician, delete musician, etc.) implement this interface
@@ -9,11 +7,19 @@ import java.util.Scanner;
  * - Support undo/redo by storing command history
  * - Separate what we do from how we do it
  * - Commands handle their own user input (Open-Closed Principle)
+ * - Power users can type the input on the command line instead (setArguments)
  */
 public interface Command
 {
-	public void readInput(Scanner scanner);  // Read user input for this command
-	public boolean execute();                // Do the operation
-	public boolean undo();                   // Reverse the operation
-	public String getDescription();          // Get a description for display
+	public void readInput(LineReader reader);  // Read user input for this command
+	public boolean execute();                  // Do the operation
+	public boolean undo();                     // Reverse the operation
+	public String getDescription();            // Get a description for display
+	
+	// Take arguments typed after the command word (e.g. "u 5") instead of prompting for them
+	// Commands that take no arguments refuse them
+	public default void setArguments(String arguments)
+	{
+		throw new IllegalArgumentException("This command does not take arguments");
+	}
 }
@@ -14,6 +14,7 @@ public class CommandEntry
 	private String description;          // What this command does
 	private boolean requiresEnsemble;    // Does this command need a current ensemble?
 	private boolean isUndoable;          // Should this command be added to history?
+	private boolean isReadOnly;          // Allowed on a read-only follower?
 	private CommandFactory commandFactory;  // Factory to create the command
 	
 	// Constructor - all commands use Command pattern now
@@ -49,9 +50,17 @@ public class CommandEntry
 		return String.join("/", aliases);
 	}
 	
+	// Mark this command as safe on a read-only follower (returns this so it can be chained)
+	public CommandEntry readOnly()
+	{
+		this.isReadOnly = true;
+		return this;
+	}
+	
 	// Getters
 	public boolean requiresEnsemble() { return requiresEnsemble; }
 	public boolean isUndoable() { return isUndoable; }
+	public boolean isReadOnly() { return isReadOnly; }
 	public CommandFactory getCommandFactory() { return commandFactory; }
 	public String getPrimaryName() { return primaryName; }
 	public String getDescription() { return description; }
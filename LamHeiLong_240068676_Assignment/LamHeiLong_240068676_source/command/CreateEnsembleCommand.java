@@ -1,6 +1,5 @@
 import java.util.HashMap;
 import java.util.Map;
-import java.util.Scanner;
 
 /**
  * CreateEnsembleCommand - creates a new ensemble and sets it as current
@@ -23,33 +22,63 @@ public class CreateEnsembleCommand implements Command
 	{
 	}
 	
+	// Constructor for programmatic use (MemsEngine) - type is a FactoryRegistry key such as "o" or "jazz"
+	public CreateEnsembleCommand(String type, String ensembleId, String name)
+	{
+		if (type == null) {
+			throw new IllegalArgumentException("Unknown ensemble type");
+		}
+		this.factory = MEMS.getFactoryRegistry().getEnsembleFactory(type.trim());
+		if (this.factory == null) {
+			throw new IllegalArgumentException("Unknown ensemble type");
+		}
+		this.ensembleType = factory.getEnsembleType();
+		if (ensembleId == null || ensembleId.trim().isEmpty()) {
+			throw new IllegalArgumentException("Ensemble ID cannot be empty");
+		}
+		if (MEMS.getEnsembles().containsKey(ensembleId.trim())) {
+			throw new IllegalArgumentException("Ensemble ID '" + ensembleId.trim() + "' already exists! Please use a different ID.");
+		}
+		if (name == null || name.trim().isEmpty()) {
+			throw new IllegalArgumentException("Ensemble name cannot be empty");
+		}
+		this.ensembleId = ensembleId.trim();
+		this.name = name.trim();
+	}
+	
 	// Read user input for this command
-	public void readInput(Scanner scanner)
+	public void readInput(LineReader reader)
 	{
 		FactoryRegistry factoryRegistry = MEMS.getFactoryRegistry();
 		
-		System.out.print("Enter music type (o = orchestra | j = jazz band) :- ");
-		String type = scanner.nextLine().trim();
+		MEMS.getOut().print("Enter music type (o = orchestra | j = jazz band) :- ");
+		String type = reader.nextTrimmedLine();
 		this.factory = factoryRegistry.getEnsembleFactory(type);
 		if (this.factory == null) {
 			throw new IllegalArgumentException("Invalid ensemble type. Please enter 'o' for orchestra or 'j' for jazz band.");
 		}
 		this.ensembleType = factory.getEnsembleType();
 		
-		System.out.print("Ensemble ID:- ");
-		this.ensembleId = scanner.nextLine().trim();
+		MEMS.getOut().print("Ensemble ID (or *):- ");
+		this.ensembleId = reader.nextTrimmedLine();
 		if (this.ensembleId.isEmpty()) {
 			throw new IllegalArgumentException("Ensemble ID cannot be empty");
 		}
 		
+		// "*" = let the system pick a free ID
+		if (IdAllocator.AUTO.equals(this.ensembleId)) {
+			this.ensembleId = MEMS.getEnsembleIdAllocator().next();
+			MEMS.getOut().println("Ensemble ID " + this.ensembleId + " is assigned.");
+		}
+		
 		// Check if ID already exists
 		Map<String, Ensemble> ensembles = MEMS.getEnsembles();
 		if (ensembles.containsKey(this.ensembleId)) {
 			throw new IllegalArgumentException("Ensemble ID '" + this.ensembleId + "' already exists! Please use a different ID.");
 		}
 		
-		System.out.print("Ensemble Name:- ");
-		this.name = scanner.nextLine().trim();
+		MEMS.getOut().print("Ensemble Name:- ");
+		this.name = reader.nextTrimmedLine();
 		if (this.name.isEmpty()) {
 			throw new IllegalArgumentException("Ensemble name cannot be empty");
 		}
@@ -66,9 +95,10 @@ public class CreateEnsembleCommand implements Command
 		this.ensemble = factory.createEnsemble(ensembleId);
 		ensemble.setName(name);
 		ensembles.put(ensembleId, ensemble);
+		MEMS.getChangeNotifier().ensembleCreated(ensemble);
 		MEMS.setCurrentEnsembleId(ensembleId);
-		System.out.println(Character.toUpperCase(ensembleType.charAt(0)) + ensembleType.substring(1) + " ensemble is created.");
-		System.out.println("Current ensemble is changed to " + ensembleId + ".");
+		MEMS.getOut().println(Character.toUpperCase(ensembleType.charAt(0)) + ensembleType.substring(1) + " ensemble is created.");
+		MEMS.getOut().println("Current ensemble is changed to " + ensembleId + ".");
 		return true;
 	}
 	
@@ -77,8 +107,10 @@ public class CreateEnsembleCommand implements Command
 	{
 		Map<String, Ensemble> ensembles = MEMS.getEnsembles();
 		
-		// Remove the created ensemble
+		// Remove the created ensemble (after any restore still pending for it in a multi-step undo)
+		EnsembleCaretaker.settle(ensembleId);
 		ensembles.remove(ensembleId);
+		MEMS.getChangeNotifier().ensembleRemoved(ensembleId);
 		
 		// Restore previous current ensemble
 		MEMS.setCurrentEnsembleId(currentEnsembleId);
@@ -1,31 +1,47 @@
-import java.util.ArrayList;
-import java.util.Iterator;
-import java.util.List;
 import java.util.Map;
-import java.util.Scanner;
 
 public class DeleteMusicianCommand implements Command
 {
     private String musicianId;
     private String ensembleId;
-
+    
     public DeleteMusicianCommand()
     {
     }
     
-    public void readInput(Scanner scanner)
+    // Constructor for programmatic use (MemsEngine) - the musician is checked when executed, as with the console
+    public DeleteMusicianCommand(String ensembleId, String musicianId)
+    {
+        if (musicianId == null || musicianId.trim().isEmpty()) {
+            throw new IllegalArgumentException("Musician ID cannot be empty");
+        }
+        this.ensembleId = ensembleId;
+        this.musicianId = musicianId.trim();
+    }
+    
+    public void readInput(LineReader reader)
     {
         this.ensembleId = MEMS.getCurrentEnsembleId();
         if (this.ensembleId == null) {
             throw new IllegalArgumentException("No current ensemble set. Please create or switch to an ensemble first.");
         }
-        System.out.print("Please input musician ID:- ");
-        this.musicianId = scanner.nextLine().trim();
+        MEMS.getOut().print("Please input musician ID:- ");
+        this.musicianId = reader.nextTrimmedLine();
         if (this.musicianId.isEmpty()) {
             throw new IllegalArgumentException("Musician ID cannot be empty");
         }
     }
     
+    // "d M1" - deletes the musician from whichever ensemble holds it, no switching needed
+    public void setArguments(String arguments)
+    {
+        this.musicianId = arguments.trim();
+        this.ensembleId = MEMS.findMusicianOwner(musicianId);
+        if (this.ensembleId == null) {
+            throw new IllegalArgumentException("Musician ID '" + musicianId + "' does not exist!");
+        }
+    }
+    
     public boolean execute()
     {
         Map<String, Ensemble> ensembles = MEMS.getEnsembles();
@@ -35,68 +51,42 @@ public class DeleteMusicianCommand implements Command
         if (ensemble == null) {
             throw new IllegalStateException("Ensemble " + ensembleId + " no longer exists!");
         }
-
+        
         if (!musicians.containsKey(musicianId)) 
         {
             throw new IllegalArgumentException("Musician ID '" + musicianId + "' does not exist!");
         }
-
-        Iterator<Musician> it = ensemble.getMusicians();
-
-        while (it.hasNext()) {
-            Musician m = it.next();
-            if (m.getMID().equals(musicianId)) 
-            {
-                // Save state BEFORE deletion - create memento before any modifications
-                List<Musician> musicianList = new ArrayList<>();
-                Iterator<Musician> musiciansBeforeExecute = ensemble.getMusicians();
-                while (musiciansBeforeExecute.hasNext()) 
-                {
-                    musicianList.add(musiciansBeforeExecute.next());
-                }
-
-                EnsembleCaretaker.createMemento(ensemble.getEnsembleID(), musicianList, ensemble.getName());
-                
-                // Now perform the deletion
-                Musician musician = musicians.get(musicianId);
-                if (musician != null)
-                {
-                    musicians.remove(musicianId);
-                    ensemble.dropMusician(musician);
-                    System.out.println("Musician is deleted.");
-                    return true;
-                }
-                break;
-            }
+        
+        Musician m = ensemble.findMusician(musicianId);
+        if (m == null) {
+            throw new IllegalArgumentException("Musician ID '" + musicianId + "' does not exist in the current ensemble!");
         }
-
-        throw new IllegalArgumentException("Musician ID '" + musicianId + "' does not exist in the current ensemble!");
+        
+        // Note the roster position BEFORE deletion, so undo can put the musician back in its place
+        int position = ensemble.positionOf(musicianId);
+        
+        // Now perform the deletion - drop the roster's own object so the role counts stay right
+        musicians.remove(musicianId);
+        ensemble.dropMusician(m);
+        EnsembleCaretaker.createMemento(EnsembleMemento.removed(ensembleId, m, position));
+        MEMS.getChangeNotifier().musicianRemoved(ensemble, m);
+        MEMS.getOut().println("Musician is deleted.");
+        return true;
     }
     
     public boolean undo()
     {
-        Map<String, Ensemble> ensembles = MEMS.getEnsembles();
-        Map<String, Musician> musicians = MEMS.getMusicians();
-        
-        // Restore the ensemble state (this adds musicians back to ensemble)
+        // Take the delete back (puts the musician back in the ensemble and the musicians map)
         EnsembleCaretaker.restoreMemento();
-        
-        // After restoring, get the ensemble and re-add all musicians to the global musicians map
-        Ensemble ensemble = ensembles.get(ensembleId);
-        if (ensemble != null) {
-            Iterator<Musician> it = ensemble.getMusicians();
-            while (it.hasNext()) {
-                Musician m = it.next();
-                // Add musician back to global map
-                musicians.put(m.getMID(), m);
-            }
-        }
-        
         return true;
     }
     
     public String getDescription()
     {
-        return String.format("Delete musician, %s", musicianId);
+        return "Delete musician, " + musicianId;
     }
+    
+    // For AddMusicianCommand.absorb
+    String getEnsembleId() { return ensembleId; }
+    String getMusicianId() { return musicianId; }
 }
@@ -1,5 +1,3 @@
-import java.util.Scanner;
-
 /**
  * ExitCommand - exits the program
  * This is a non-undoable command
@@ -10,14 +8,15 @@ public class ExitCommand implements Command
 	{
 	}
 	
-	public void readInput(Scanner scanner)
+	public void readInput(LineReader reader)
 	{
 		// No input needed for exit
 	}
 	
 	public boolean execute()
 	{
-		System.out.println("Goodbye!");
+		MEMS.getOut().println("Goodbye!");
+		MEMS.getOut().flush();   // System.exit skips the flush the main loop would do
 		System.exit(0);
 		return true;
 	}
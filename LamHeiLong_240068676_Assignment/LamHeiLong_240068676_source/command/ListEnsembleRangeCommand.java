@@ -0,0 +1,90 @@
+import java.util.List;
+
+/**
+ * ListEnsembleRangeCommand - displays the ensembles whose IDs start with a prefix or fall in a range
+ * This is a non-undoable command (doesn't go in history)
+ * 
+ * Input is either a prefix (e.g. "2026-") or a range "from..to" or "from to" (both ends inclusive),
+ * typed at the prompt or straight after the command word (e.g. "sr E100 E199").
+ * Uses the sorted ensemble index, so only the matching ensembles are visited.
+ */
+public class ListEnsembleRangeCommand implements Command
+{
+	private String from;    // First ID in the range
+	private String to;      // Last ID in the range
+	
+	public ListEnsembleRangeCommand()
+	{
+	}
+	
+	public void readInput(LineReader reader)
+	{
+		MEMS.getOut().print("Please input ensemble ID prefix, or a range as from..to:- ");
+		setArguments(reader.nextTrimmedLine());
+	}
+	
+	// "sr 2026-" (prefix), "sr E100..E199" or "sr E100 E199" (range)
+	public void setArguments(String arguments)
+	{
+		String input = arguments.trim();
+		if (input.isEmpty()) {
+			throw new IllegalArgumentException("Please provide an ensemble ID prefix or a range (e.g., E100..E199)");
+		}
+		int dots = input.indexOf("..");
+		String[] words = input.split("\\s+");
+		if (dots >= 0)
+		{
+			this.from = input.substring(0, dots).trim();
+			this.to = input.substring(dots + 2).trim();
+			if (from.isEmpty() || to.isEmpty()) {
+				throw new IllegalArgumentException("Please provide both ends of the range (e.g., E100..E199)");
+			}
+		}
+		else if (words.length == 2)
+		{
+			this.from = words[0];
+			this.to = words[1];
+		}
+		else if (words.length == 1)
+		{
+			// Every ID starting with the prefix sorts between the prefix and prefix + highest char
+			this.from = input;
+			this.to = input + Character.MAX_VALUE;
+		}
+		else
+		{
+			throw new IllegalArgumentException("Usage: sr <prefix> | sr <from>..<to> | sr <from> <to>");
+		}
+	}
+	
+	public boolean execute()
+	{
+		if (from.compareTo(to) > 0)
+		{
+			throw new IllegalArgumentException("Range start '" + from + "' is after range end '" + to + "'");
+		}
+		
+		List<Ensemble> matches = MEMS.getEnsembleRange(from, to);
+		if (matches.isEmpty())
+		{
+			MEMS.getOut().println("No ensembles found.");
+		}
+		else
+		{
+			// A blank line after each ensemble, all printed with one write
+			MEMS.getOut().print(MEMS.getRenderCache().renderAll(matches, RenderCache.Format.TEXT, System.lineSeparator()));
+		}
+		return true;
+	}
+	
+	public boolean undo()
+	{
+		// Non-undoable command
+		return false;
+	}
+	
+	public String getDescription()
+	{
+		return "List ensembles by ID range";
+	}
+}
@@ -1,40 +1,121 @@
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
-import java.util.Scanner;
+import java.util.TreeSet;
 
 /**
- * ListEnsemblesCommand - displays all ensembles in the system
+ * ListEnsemblesCommand - displays all ensembles in the system, in ensemble ID order
  * This is a non-undoable command (doesn't go in history)
+ * 
+ * "sa as of <history index|time>" lists the ensembles as they were then, rebuilt by the HistoryJournal
+ * "sa json" (or "sa json as of ...") prints one JSON object per line instead of text
+ *
+ * Walks the ensemble ID index and loads, renders and prints CHUNK ensembles at a time, so a file store
+ * never has more than one chunk of rosters loaded for the listing.
  */
 public class ListEnsemblesCommand implements Command
 {
+	private static final int CHUNK = 256;   // Ensembles rendered and printed together
+	
+	private int asOf = -1;   // History index to list (-1 = now)
+	private RenderCache.Format format = RenderCache.Format.TEXT;
+	
 	public ListEnsemblesCommand()
 	{
 	}
 	
-	public void readInput(Scanner scanner)
+	public void readInput(LineReader reader)
 	{
 		// No input needed
 	}
 	
+	// "json" and/or "as of <history index|time>"
+	public void setArguments(String arguments)
+	{
+		if (arguments.equals("json") || arguments.startsWith("json ")) {
+			this.format = RenderCache.Format.JSON;
+			arguments = arguments.substring(4).trim();
+			if (arguments.isEmpty()) {
+				return;
+			}
+		}
+		if (MEMS.getReplicaFollower() != null) {
+			throw new IllegalArgumentException("'as of' queries are only available on the primary");
+		}
+		this.asOf = MEMS.requireHistoryJournal().parseAsOf(arguments);
+	}
+	
 	public boolean execute()
 	{
 		Map<String, Ensemble> ensembles = MEMS.getEnsembles();
-		
-		if (ensembles.isEmpty())
+		List<Ensemble> chunk = new ArrayList<>(CHUNK);
+		int listed = 0;
+		if (asOf < 0)
 		{
-			System.out.println("No ensembles found.");
+			for (String id : MEMS.getEnsembleIds())
+			{
+				listed += add(chunk, ensembles.get(id));
+			}
 		}
 		else
 		{
-			for (Ensemble e : ensembles.values())
+			HistoryJournal journal = MEMS.requireHistoryJournal();
+			MEMS.getOut().println("As of " + journal.describeIndex(asOf) + ":");
+			
+			// The journal's copies of the ensembles it has changes of (a bounded set, some may be gone now),
+			// merged in ID order into the walk over the live IDs - the others have not changed since
+			Map<String, Ensemble> then = journal.ensemblesAsOf(asOf);
+			TreeSet<String> journaled = new TreeSet<>(then.keySet());
+			for (String id : MEMS.getEnsembleIds())
 			{
-				e.showEnsemble();
-				System.out.println();
+				while (!journaled.isEmpty() && journaled.first().compareTo(id) < 0)
+				{
+					listed += add(chunk, then.get(journaled.pollFirst()));
+				}
+				journaled.remove(id);
+				listed += add(chunk, journal.isJournaled(id) ? then.get(id) : ensembles.get(id));
 			}
+			for (String id : journaled)
+			{
+				listed += add(chunk, then.get(id));
+			}
+		}
+		print(chunk);
+		
+		if (listed == 0)
+		{
+			MEMS.getOut().println("No ensembles found.");
 		}
 		return true;
 	}
 	
+	// Add one ensemble to the chunk (null = not there, skipped) and print the chunk once it is full,
+	// so only CHUNK rosters are held at a time - returns the number of ensembles added
+	private int add(List<Ensemble> chunk, Ensemble ensemble)
+	{
+		if (ensemble == null)
+		{
+			return 0;
+		}
+		chunk.add(ensemble);
+		if (chunk.size() == CHUNK)
+		{
+			print(chunk);
+		}
+		return 1;
+	}
+	
+	// Formatted in parallel, printed with one write in ensemble ID order
+	// (text already ends with a line break, so the separator adds the blank line; JSON needs its line break)
+	private void print(List<Ensemble> chunk)
+	{
+		if (!chunk.isEmpty())
+		{
+			MEMS.getOut().print(MEMS.getRenderCache().renderAll(chunk, format, System.lineSeparator()));
+			chunk.clear();
+		}
+	}
+	
 	public boolean undo()
 	{
 		// Non-undoable command
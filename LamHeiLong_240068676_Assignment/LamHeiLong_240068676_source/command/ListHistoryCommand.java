@@ -1,59 +1,100 @@
 import java.util.List;
-import java.util.Scanner;
 
 /**
  * ListHistoryCommand - displays undo and redo command history
  * This is a non-undoable command (view-only, doesn't modify state)
+ * 
+ * "history where <query>" searches every history move instead (see HistoryQuery), oldest first.
  */
 public class ListHistoryCommand implements Command
 {
+	private HistoryQuery query;   // null = list undo/redo
+	
 	public ListHistoryCommand()
 	{
 	}
 	
-	public void readInput(Scanner scanner)
+	public void readInput(LineReader reader)
 	{
 		// No input needed for this command
 	}
 	
+	// "history where musician=M1042" / "l where ensemble=E7 on=today"
+	public void setArguments(String arguments)
+	{
+		String text = arguments.trim();
+		if (!text.regionMatches(true, 0, "where ", 0, 6)) {
+			throw new IllegalArgumentException("Usage: history where <ensemble=|musician=|type=|kind=|since=|until=|on=>...");
+		}
+		this.query = HistoryQuery.parse(text.substring(6));
+	}
+	
 	public boolean execute()
 	{
+		if (query != null)
+		{
+			return search();
+		}
+		
 		HistoryManager historyManager = MEMS.getHistoryManager();
 		
 		// Display undo list
-		System.out.println("Undo List");
+		MEMS.getOut().println("Undo List");
 		List<String> undoList = historyManager.getUndoList();
 		if (undoList.isEmpty())
 		{
-			System.out.println("-- End of undo list --");
+			MEMS.getOut().println("-- End of undo list --");
 		}
 		else
 		{
 			for (String description : undoList)
 			{
-				System.out.println(description);
+				MEMS.getOut().println(description);
 			}
-			System.out.println("-- End of undo list --");
+			MEMS.getOut().println("-- End of undo list --");
 		}
 		
-		System.out.println();
+		MEMS.getOut().println();
 		
 		// Display redo list
-		System.out.println("Redo List");
+		MEMS.getOut().println("Redo List");
 		List<String> redoList = historyManager.getRedoList();
 		if (redoList.isEmpty())
 		{
-			System.out.println("-- End of redo list --");
+			MEMS.getOut().println("-- End of redo list --");
 		}
 		else
 		{
 			for (String description : redoList)
 			{
-				System.out.println(description);
+				MEMS.getOut().println(description);
 			}
-			System.out.println("-- End of redo list --");
+			MEMS.getOut().println("-- End of redo list --");
 		}
 		
+		// Where we are, for "se as of" / "sa as of" (when the journal is on)
+		HistoryJournal journal = MEMS.getHistoryJournal();
+		if (journal != null)
+		{
+			MEMS.getOut().println();
+			MEMS.getOut().println("Now at " + journal.describeIndex(journal.size()) + ".");
+		}
+		
+		return true;
+	}
+	
+	private boolean search()
+	{
+		HistoryJournal journal = MEMS.requireHistoryJournal();
+		List<Integer> found = journal.find(query);
+		StringBuilder sb = new StringBuilder();
+		for (int index : found)
+		{
+			sb.append(journal.describeEntry(index)).append(System.lineSeparator());
+		}
+		sb.append(found.size()).append(found.size() == 1 ? " history entry matches " : " history entries match ")
+			.append(query).append('.').append(System.lineSeparator());
+		MEMS.getOut().print(sb);
 		return true;
 	}
 	
@@ -65,6 +106,6 @@ public class ListHistoryCommand implements Command
 	
 	public String getDescription()
 	{
-		return "List undo/redo history";
+		return (query == null) ? "List undo/redo history" : "Search history where " + query;
 	}
 }
@@ -1,31 +1,86 @@
-import java.util.List;
-import java.util.ArrayList;
-import java.util.Iterator;
 import java.util.Map;
-import java.util.Scanner;
 
 public class ModifyMusicianInstrumentCommand implements Command
 {
 	private String ensembleId;
+	private String musicianId;
+	private int newRole;
 	private MusicianMemento memento;	// Memento of the last modified musician, use for description
-	boolean hasUndo = false;
 	
 	public ModifyMusicianInstrumentCommand()
 	{
 	}
 	
-	public void readInput(Scanner scanner)
+	// Constructor for programmatic use (MemsEngine) - same checks as the console, but an invalid role is an error
+	public ModifyMusicianInstrumentCommand(String ensembleId, String musicianId, int newRole)
+	{
+		Ensemble ensemble = MEMS.getEnsembles().get(ensembleId);
+		if (ensemble == null) {
+			throw new IllegalArgumentException("Ensemble ID '" + ensembleId + "' does not exist!");
+		}
+		MusicianFactory musicianFactory = MEMS.getFactoryRegistry().getMusicianFactory(ensemble.getFactoryType());
+		if (!musicianFactory.isValidRole(newRole)) {
+			throw new IllegalArgumentException("Invalid instrument selection: " + newRole);
+		}
+		this.ensembleId = ensembleId;
+		this.musicianId = musicianId;
+		this.newRole = newRole;
+	}
+	
+	public void readInput(LineReader reader)
 	{
 		Map<String, Ensemble> ensembles = MEMS.getEnsembles();
-
+		
 		this.ensembleId = MEMS.getCurrentEnsembleId();
 		Ensemble ensemble = ensembles.get(ensembleId);
 		
 		if (ensemble == null) {
 			throw new IllegalArgumentException("No current ensemble set. Please create or switch to an ensemble first.");
 		}
+		
+		MEMS.getOut().print("Please input musician ID:- ");
+		this.musicianId = reader.nextTrimmedLine();
+		if (musicianId.isEmpty()) {
+			throw new IllegalArgumentException("Musician ID cannot be empty");
+		}
+		
+		// Same musician checks as before the role prompt, so the user is not asked for a role in vain
+		if (ensemble.findMusician(musicianId) == null) {
+			if (!MEMS.getMusicians().containsKey(musicianId)) {
+				throw new IllegalArgumentException("Musician with ID " + musicianId + " does not exist");
+			}
+			throw new IllegalArgumentException("Musician " + musicianId + " is not in this ensemble");
+		}
+		
+		MusicianFactory musicianFactory = MEMS.getFactoryRegistry().getMusicianFactory(ensemble.getFactoryType());
+		MEMS.getOut().print(musicianFactory.getRolePrompt());
+		String roleInput = reader.nextTrimmedLine();
+		if (roleInput.isEmpty()) {
+			throw new IllegalArgumentException("Instrument selection cannot be empty");
+		}
+		this.newRole = Integer.parseInt(roleInput);
+	}
+	
+	// "m M1 2" - changes the instrument in whichever ensemble holds the musician, no switching needed
+	public void setArguments(String arguments)
+	{
+		String[] words = arguments.trim().split("\\s+");
+		if (words.length != 2) {
+			throw new IllegalArgumentException("Usage: m <musician ID> <instrument number>");
+		}
+		this.musicianId = words[0];
+		this.ensembleId = MEMS.findMusicianOwner(musicianId);
+		if (ensembleId == null) {
+			throw new IllegalArgumentException("Musician with ID " + musicianId + " does not exist");
+		}
+		this.newRole = Integer.parseInt(words[1]);
+		Ensemble ensemble = MEMS.getEnsembles().get(ensembleId);
+		if (!MEMS.getFactoryRegistry().getMusicianFactory(ensemble.getFactoryType()).isValidRole(newRole)) {
+			throw new IllegalArgumentException("Invalid instrument selection: " + newRole);
+		}
 	}
 	
+	// Also used for redo - the same musician and role are applied again
 	public boolean execute()
 	{
 		Map<String, Ensemble> ensembles = MEMS.getEnsembles();
@@ -34,61 +89,43 @@ public class ModifyMusicianInstrumentCommand implements Command
 		if (ensemble == null) {
 			throw new IllegalStateException("Ensemble " + ensembleId + " no longer exists!");
 		}
-
-		if(hasUndo) 
-		{
-			System.out.println("Restoring role from last undo.");
-			EnsembleCaretaker.restoreMemento();
-			hasUndo = false;
-			List<Musician> musicianList = new ArrayList<>();
-			Iterator<Musician> musiciansBeforeUndo = ensemble.getMusicians();
-			while (musiciansBeforeUndo.hasNext()) 
-			{
-				musicianList.add(musiciansBeforeUndo.next());
+		
+		// Check the musician before the memento is taken, so a failed modify leaves nothing on the caretaker's stack
+		Musician musician = ensemble.findMusician(musicianId);
+		if (musician == null) {
+			if (!MEMS.getMusicians().containsKey(musicianId)) {
+				throw new IllegalArgumentException("Musician with ID " + musicianId + " does not exist");
 			}
-			EnsembleCaretaker.createMemento(ensemble.getEnsembleID(), musicianList, ensemble.getName());
-			return true;
+			throw new IllegalArgumentException("Musician " + musicianId + " is not in this ensemble");
 		}
-	
-		List<Musician> musicianList = new ArrayList<>();
-		Iterator<Musician> musiciansBeforeUndo = ensemble.getMusicians();
-		while (musiciansBeforeUndo.hasNext()) {
-			musicianList.add(musiciansBeforeUndo.next());
+		
+		// The old role is saved even if the new one is refused, as undo takes back one memento per execute
+		EnsembleCaretaker.createMemento(EnsembleMemento.roleChanged(ensembleId, musicianId, musician.getRole()));
+		
+		boolean changed = ensemble.updateMusicianRole(musicianId, newRole);
+		MusicianMemento saved = MusicianCaretaker.popMemento();
+		if (saved != null) {
+			this.memento = saved;
 		}
-		EnsembleCaretaker.createMemento(ensemble.getEnsembleID(), musicianList, ensemble.getName());
-
-		ensemble.updateMusicianRole();
-		this.memento = MusicianCaretaker.popMemento();
-
+		
+		// Report the change only if a valid new instrument was really set
+		if (changed && memento != null && memento.getRole() != newRole)
+		{
+			MEMS.getChangeNotifier().roleChanged(ensemble, ensemble.findMusician(musicianId), memento.getRole());
+		}
+		
 		return true;
 	}
 	
 	public boolean undo()
 	{
-		Map<String, Ensemble> ensembles = MEMS.getEnsembles();
-		Map<String, Musician> musicians = MEMS.getMusicians();
-		
-		// Restore the ensemble state (restores musicians with old roles)
+		// Take the change back (gives the musician its old role)
 		EnsembleCaretaker.restoreMemento();
-		
-		// After restoring, sync the global musicians map with the ensemble's musicians
-		Ensemble ensemble = ensembles.get(ensembleId);
-		if (ensemble != null) {
-			Iterator<Musician> it = ensemble.getMusicians();
-			while (it.hasNext()) {
-				Musician m = it.next();
-				// Ensure all musicians in the ensemble are in the global map
-				musicians.put(m.getMID(), m);
-			}
-		}
-
-		hasUndo = true;
 		return true;
 	}
 	
 	public String getDescription()
 	{
-
-		return String.format("Modify musician's instrument, %s, original role: %s", memento.getMID(), memento.getRoleName());
+		return "Modify musician's instrument, " + memento.getMID() + ", original role: " + memento.getRoleName();
 	}
 }
@@ -1,22 +1,34 @@
-import java.util.Scanner;
+import java.util.List;
 
 /**
  * RedoCommand - wrapper command that redoes the last undone command
  * Part of the Command pattern implementation for redo functionality
  * 
  * Delegates the actual work to HistoryManager
+ * "r N" redoes N commands in one go
  */
 public class RedoCommand implements Command
 {
+	private int steps = 1;   // How many commands to redo
+	
 	public RedoCommand()
 	{
 	}
 	
-	public void readInput(Scanner scanner)
+	public void readInput(LineReader reader)
 	{
 		// No input needed for redo
 	}
 	
+	// Number of steps, e.g. "r 5"
+	public void setArguments(String arguments)
+	{
+		this.steps = Integer.parseInt(arguments.trim());
+		if (steps < 1) {
+			throw new IllegalArgumentException("Number of steps must be at least 1");
+		}
+	}
+	
 	public boolean execute()
 	{
 		HistoryManager historyManager = MEMS.getHistoryManager();
@@ -24,11 +36,19 @@ public class RedoCommand implements Command
 		// Save current ensemble before redo
 		String previousEnsembleId = MEMS.getCurrentEnsembleId();
 		
-		String description = historyManager.redo();
+		List<String> descriptions = historyManager.redo(steps);
 		
-		if (description != null)
+		if (!descriptions.isEmpty())
 		{
-			System.out.println("Command (" + description + ") is redone.");
+			if (descriptions.size() == 1)
+			{
+				MEMS.getOut().println("Command (" + descriptions.get(0) + ") is redone.");
+			}
+			else
+			{
+				MEMS.getOut().println(descriptions.size() + " commands are redone, from (" + descriptions.get(0)
+						+ ") to (" + descriptions.get(descriptions.size() - 1) + ").");
+			}
 			
 			// Check if ensemble context changed during redo
 			String newEnsembleId = MEMS.getCurrentEnsembleId();
@@ -39,7 +59,7 @@ public class RedoCommand implements Command
 					Ensemble newEnsemble = MEMS.getEnsembles().get(newEnsembleId);
 					if (newEnsemble != null)
 					{
-						System.out.println("The current ensemble is changed to " + newEnsembleId + " " + newEnsemble.getName() + ".");
+						MEMS.getOut().println("The current ensemble is changed to " + newEnsembleId + " " + newEnsemble.getName() + ".");
 					}
 				}
 			}
@@ -47,7 +67,7 @@ public class RedoCommand implements Command
 		}
 		else
 		{
-			System.out.println("Nothing to redo.");
+			MEMS.getOut().println("Nothing to redo.");
 			return false;
 		}
 	}
@@ -0,0 +1,34 @@
+/**
+ * ReplicatedCommand - placeholder for a command that ran on the primary
+ * A follower puts these in its HistoryManager so the undo/redo lists match the primary's.
+ * The real changes arrive as separate replication records, so execute and undo do nothing.
+ */
+public class ReplicatedCommand implements Command
+{
+	private String description;   // Description as shown on the primary
+	
+	public ReplicatedCommand(String description)
+	{
+		this.description = description;
+	}
+	
+	public void readInput(LineReader reader)
+	{
+		// Never read from the console
+	}
+	
+	public boolean execute()
+	{
+		return true;
+	}
+	
+	public boolean undo()
+	{
+		return true;
+	}
+	
+	public String getDescription()
+	{
+		return description;
+	}
+}
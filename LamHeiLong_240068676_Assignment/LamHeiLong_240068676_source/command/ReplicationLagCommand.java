@@ -0,0 +1,40 @@
+/**
+ * ReplicationLagCommand - shows how far a follower is behind the primary
+ * This is a non-undoable command (view-only, doesn't modify state)
+ */
+public class ReplicationLagCommand implements Command
+{
+	public ReplicationLagCommand()
+	{
+	}
+	
+	public void readInput(LineReader reader)
+	{
+		// No input needed
+	}
+	
+	public boolean execute()
+	{
+		ReplicaFollower follower = MEMS.getReplicaFollower();
+		if (follower == null)
+		{
+			MEMS.getOut().println("This node is not a follower.");
+		}
+		else
+		{
+			MEMS.getOut().println(follower.getLagReport());
+		}
+		return true;
+	}
+	
+	public boolean undo()
+	{
+		// Non-undoable command (view-only)
+		return false;
+	}
+	
+	public String getDescription()
+	{
+		return "Show replication lag";
+	}
+}
@@ -0,0 +1,71 @@
+/**
+ * RollbackCommand - undoes or redoes back to a savepoint in one move ("rollback to <name>")
+ * Like "u N", undoing back to a savepoint is one move: the commands' changes are taken back one by one,
+ * and each affected ensemble is reported once at the end (one "Restored ensemble" line, its net changes to the listeners)
+ * 
+ * A savepoint in the redo list is reached by redoing; it is lost once a new command cuts the redo list.
+ */
+public class RollbackCommand implements Command
+{
+	private String name;
+	
+	public RollbackCommand()
+	{
+	}
+	
+	public void readInput(LineReader reader)
+	{
+		MEMS.getOut().print("Please input savepoint name:- ");
+		setArguments(reader.nextTrimmedLine());
+	}
+	
+	// "to <name>" or just "<name>"
+	public void setArguments(String arguments)
+	{
+		String text = arguments.trim();
+		if (text.regionMatches(true, 0, "to ", 0, 3)) {
+			text = text.substring(3).trim();
+		}
+		if (text.isEmpty()) {
+			throw new IllegalArgumentException("Savepoint name cannot be empty");
+		}
+		this.name = text;
+	}
+	
+	public boolean execute()
+	{
+		String previousEnsembleId = MEMS.getCurrentEnsembleId();
+		
+		int steps = MEMS.getHistoryManager().rollbackTo(name);
+		if (steps == 0)
+		{
+			MEMS.getOut().println("Already at savepoint " + name + ".");
+			return true;
+		}
+		MEMS.getOut().println("Rolled back to savepoint " + name + " (" + Math.abs(steps)
+				+ (steps < 0 ? " command(s) undone)." : " command(s) redone)."));
+		
+		// Tell the user if the current ensemble changed on the way
+		String newEnsembleId = MEMS.getCurrentEnsembleId();
+		if (newEnsembleId != null && !newEnsembleId.equals(previousEnsembleId))
+		{
+			Ensemble newEnsemble = MEMS.getEnsembles().get(newEnsembleId);
+			if (newEnsemble != null)
+			{
+				MEMS.getOut().println("The current ensemble is changed to " + newEnsembleId + " " + newEnsemble.getName() + ".");
+			}
+		}
+		return true;
+	}
+	
+	public boolean undo()
+	{
+		// Cannot undo a rollback itself - use redo / rollback to another savepoint
+		return false;
+	}
+	
+	public String getDescription()
+	{
+		return "Rollback to savepoint " + name;
+	}
+}
@@ -0,0 +1,47 @@
+/**
+ * SavepointCommand - names the current point in the undo/redo history
+ * "rollback to <name>" later undoes (or redoes) back to exactly this point
+ * Non-undoable - it does not change any ensemble and doesn't go in history
+ */
+public class SavepointCommand implements Command
+{
+	private String name;
+	
+	public SavepointCommand()
+	{
+	}
+	
+	public void readInput(LineReader reader)
+	{
+		MEMS.getOut().print("Please input savepoint name:- ");
+		setArguments(reader.nextTrimmedLine());
+	}
+	
+	// Savepoint name, e.g. "savepoint before-import"
+	public void setArguments(String arguments)
+	{
+		this.name = arguments.trim();
+		if (name.isEmpty()) {
+			throw new IllegalArgumentException("Savepoint name cannot be empty");
+		}
+	}
+	
+	public boolean execute()
+	{
+		HistoryManager historyManager = MEMS.getHistoryManager();
+		historyManager.setSavepoint(name);
+		MEMS.getOut().println("Savepoint " + name + " is set (" + historyManager.getUndoList().size() + " command(s) in the undo list).");
+		return true;
+	}
+	
+	public boolean undo()
+	{
+		// Non-undoable command
+		return false;
+	}
+	
+	public String getDescription()
+	{
+		return "Set savepoint " + name;
+	}
+}
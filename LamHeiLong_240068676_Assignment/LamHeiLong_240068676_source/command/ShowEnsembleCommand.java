@@ -1,33 +1,84 @@
 import java.util.Map;
-import java.util.Scanner;
 
 /**
  * ShowEnsembleCommand - displays the current ensemble details
  * This is a non-undoable command (doesn't go in history)
+ * 
+ * "se as of <history index|time>" shows the ensemble as it was then, rebuilt by the HistoryJournal
+ * "se json" (or "se json as of ...") prints it as one JSON object instead of text
  */
 public class ShowEnsembleCommand implements Command
 {
+	private int asOf = -1;   // History index to show (-1 = now)
+	private RenderCache.Format format = RenderCache.Format.TEXT;
+	
 	public ShowEnsembleCommand()
 	{
 	}
 	
-	public void readInput(Scanner scanner)
+	public void readInput(LineReader reader)
 	{
 		// No input needed
 	}
 	
+	// "json" and/or "as of <history index|time>"
+	public void setArguments(String arguments)
+	{
+		if (MEMS.getCurrentEnsembleId() == null) {
+			throw new IllegalArgumentException("No current ensemble set. Please create or switch to an ensemble first.");
+		}
+		if (arguments.equals("json") || arguments.startsWith("json ")) {
+			this.format = RenderCache.Format.JSON;
+			arguments = arguments.substring(4).trim();
+			if (arguments.isEmpty()) {
+				return;
+			}
+		}
+		if (MEMS.getReplicaFollower() != null) {
+			throw new IllegalArgumentException("'as of' queries are only available on the primary");
+		}
+		this.asOf = MEMS.requireHistoryJournal().parseAsOf(arguments);
+	}
+	
 	public boolean execute()
 	{
+		if (asOf >= 0)
+		{
+			HistoryJournal journal = MEMS.getHistoryJournal();
+			String ensembleId = MEMS.getCurrentEnsembleId();
+			Ensemble then = journal.ensembleAsOf(ensembleId, asOf);
+			if (then == null)
+			{
+				MEMS.getOut().println("Ensemble " + ensembleId + " did not exist at " + journal.describeIndex(asOf) + ".");
+				return true;
+			}
+			MEMS.getOut().println("As of " + journal.describeIndex(asOf) + ":");
+			show(then);
+			return true;
+		}
+		
 		Map<String, Ensemble> ensembles = MEMS.getEnsembles();
 		
 		Ensemble ensemble = ensembles.get(MEMS.getCurrentEnsembleId());
 		if (ensemble != null)
 		{
-			ensemble.showEnsemble();
+			show(ensemble);
 		}
 		return true;
 	}
 	
+	private void show(Ensemble ensemble)
+	{
+		if (format == RenderCache.Format.JSON)
+		{
+			MEMS.getOut().println(MEMS.getRenderCache().render(ensemble, format));
+		}
+		else
+		{
+			ensemble.showEnsemble();
+		}
+	}
+	
 	public boolean undo()
 	{
 		// Non-undoable command
@@ -0,0 +1,64 @@
+import java.util.Map;
+
+/**
+ * SummaryCommand - shows the head count per instrument for one ensemble or all ensembles
+ * This is a non-undoable command (view-only, doesn't modify state)
+ * 
+ * The numbers come from the counters each Ensemble keeps up to date,
+ * so the cost is constant per ensemble no matter how big the roster is.
+ */
+public class SummaryCommand implements Command
+{
+	private String ensembleId;    // Ensemble to summarise (empty = all ensembles)
+	
+	public SummaryCommand()
+	{
+	}
+	
+	public void readInput(LineReader reader)
+	{
+		MEMS.getOut().print("Please input ensemble ID (leave blank for all ensembles):- ");
+		this.ensembleId = reader.nextTrimmedLine();
+	}
+	
+	public boolean execute()
+	{
+		Map<String, Ensemble> ensembles = MEMS.getEnsembles();
+		
+		if (ensembleId.isEmpty())
+		{
+			if (ensembles.isEmpty())
+			{
+				MEMS.getOut().println("No ensembles found.");
+				return true;
+			}
+			int total = 0;
+			for (Ensemble e : ensembles.values())
+			{
+				e.showSummary();
+				total += e.getSize();
+			}
+			MEMS.getOut().println("Total: " + ensembles.size() + " ensemble(s), " + total + " musician(s)");
+			return true;
+		}
+		
+		Ensemble ensemble = ensembles.get(ensembleId);
+		if (ensemble == null)
+		{
+			throw new IllegalArgumentException("Ensemble ID '" + ensembleId + "' does not exist!");
+		}
+		ensemble.showSummary();
+		return true;
+	}
+	
+	public boolean undo()
+	{
+		// Non-undoable command (view-only)
+		return false;
+	}
+	
+	public String getDescription()
+	{
+		return "Show ensemble summary";
+	}
+}
@@ -1,10 +1,11 @@
 import java.util.Map;
-import java.util.Scanner;
+import java.util.Objects;
 
 /**
  * SwitchEnsembleCommand - switches the current active ensemble
+ * A chain of switches coalesces into one entry that goes back to where the chain started.
  */
-public class SwitchEnsembleCommand implements Command
+public class SwitchEnsembleCommand implements Command, Coalescible
 {
 	private String previousEnsembleId;
 	private String ensembleId;
@@ -13,10 +14,16 @@ public class SwitchEnsembleCommand implements Command
 	{
 	}
 	
-	public void readInput(Scanner scanner)
+	// Constructor for programmatic use (MemsEngine)
+	public SwitchEnsembleCommand(String ensembleId)
 	{
-		System.out.print("Please input ensemble ID:- ");
-		this.ensembleId = scanner.nextLine().trim();
+		this.ensembleId = ensembleId;
+	}
+	
+	public void readInput(LineReader reader)
+	{
+		MEMS.getOut().print("Please input ensemble ID:- ");
+		this.ensembleId = reader.nextTrimmedLine();
 		if (this.ensembleId.isEmpty()) {
 			throw new IllegalArgumentException("Ensemble ID cannot be empty");
 		}
@@ -27,10 +34,10 @@ public class SwitchEnsembleCommand implements Command
 		this.previousEnsembleId = MEMS.getCurrentEnsembleId();
 		Map<String, Ensemble> ensembles = MEMS.getEnsembles();
 		Ensemble ensemble = ensembles.get(ensembleId);
-
+		
 		if (ensemble == null)
 		{
-			System.out.println("Ensemble " + ensembleId + " is not found!!");
+			MEMS.getOut().println("Ensemble " + ensembleId + " is not found!!");
 			throw new IllegalArgumentException("Ensemble ID '" + ensembleId + "' does not exist!");
 		}
 		MEMS.setCurrentEnsembleId(ensembleId);
@@ -47,4 +54,20 @@ public class SwitchEnsembleCommand implements Command
 	{
 		return "Switch to ensemble " + ensembleId;
 	}
+	
+	// s E2 right after s E1: one switch from before E1 to E2
+	public boolean absorb(Command next)
+	{
+		if (!(next instanceof SwitchEnsembleCommand)) {
+			return false;
+		}
+		this.ensembleId = ((SwitchEnsembleCommand) next).ensembleId;
+		return true;
+	}
+	
+	// Switched back to where the chain started
+	public boolean isNoOp()
+	{
+		return Objects.equals(previousEnsembleId, ensembleId);
+	}
 }
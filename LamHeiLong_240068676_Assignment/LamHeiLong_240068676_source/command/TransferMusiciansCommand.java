@@ -0,0 +1,256 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * TransferMusiciansCommand - moves one or more musicians from one ensemble to another in one step
+ * Part of the Command pattern for undo/redo support
+ *
+ * A musician keeps an instrument the target ensemble also has (by name, e.g. violinist -> violinist);
+ * otherwise an instrument of the target ensemble must be chosen.
+ *
+ * Instead of two full-roster mementos it keeps only (musician ID, old role, new role) per moved musician,
+ * so execute and undo cost O(moved) plus one pass over the source roster, whatever the target's size.
+ * The musicians themselves move (the same objects), so they stay in MEMS.getMusicians() the whole time.
+ * Execute also notes where each musician stood in the source roster, and undo puts them back there.
+ */
+public class TransferMusiciansCommand implements Command
+{
+	private String fromId;                     // Source ensemble
+	private String toId;                       // Target ensemble
+	private List<String> musicianIds;          // Musicians to move, in the order given
+	private Map<String, Integer> chosenRoles;  // Target instrument for musicians whose instrument the target lacks
+	private int[] oldRoles;                    // Role in the source per moved musician (set by execute)
+	private int[] newRoles;                    // Role in the target per moved musician (set by execute)
+	private int[] positions;                   // Position in the source roster per moved musician (set by execute)
+	
+	public TransferMusiciansCommand()
+	{
+	}
+	
+	// Constructor for programmatic use (MemsEngine) - 'fallbackRole' is used for musicians whose instrument
+	// the target ensemble does not have (0 = refuse such a transfer)
+	public TransferMusiciansCommand(String fromId, String toId, List<String> musicianIds, int fallbackRole)
+	{
+		this.fromId = fromId;
+		this.toId = (toId == null) ? null : toId.trim();
+		this.musicianIds = parseIds(musicianIds);
+		this.chosenRoles = new HashMap<>();
+		Ensemble from = checkEnsembles();
+		for (String id : this.musicianIds)
+		{
+			if (mapRole(from, id, 0) == 0)
+			{
+				chosenRoles.put(id, fallbackRole);
+			}
+		}
+		resolveRoles(from);
+	}
+	
+	// Source is the current ensemble; asks for the target, the musicians, and an instrument where needed
+	public void readInput(LineReader reader)
+	{
+		this.fromId = MEMS.getCurrentEnsembleId();
+		if (fromId == null) {
+			throw new IllegalArgumentException("No current ensemble set. Please create or switch to an ensemble first.");
+		}
+		MEMS.getOut().print("Please input target ensemble ID:- ");
+		this.toId = reader.nextTrimmedLine();
+		MEMS.getOut().print("Please input musician ID(s) to transfer (comma separated):- ");
+		this.musicianIds = parseIds(List.of(reader.nextTrimmedLine().split(",")));
+		this.chosenRoles = new HashMap<>();
+		Ensemble from = checkEnsembles();
+		
+		MusicianFactory sourceFactory = MEMS.getFactoryRegistry().getMusicianFactory(from.getFactoryType());
+		MusicianFactory targetFactory = MEMS.getFactoryRegistry().getMusicianFactory(MEMS.getEnsembles().get(toId).getFactoryType());
+		for (String id : musicianIds)
+		{
+			if (mapRole(from, id, 0) != 0) {
+				continue;
+			}
+			Musician m = from.findMusician(id);
+			MEMS.getOut().println(m.getMID() + ", " + m.getName() + " plays " + sourceFactory.getRoleName(m.getRole())
+				+ ", which ensemble " + toId + " does not have.");
+			MEMS.getOut().print(targetFactory.getRolePrompt());
+			String roleInput = reader.nextTrimmedLine();
+			if (roleInput.isEmpty()) {
+				throw new IllegalArgumentException("Instrument selection cannot be empty");
+			}
+			chosenRoles.put(id, Integer.parseInt(roleInput));
+		}
+		resolveRoles(from);
+	}
+	
+	// "M1,M2 to E2" - moves from the current ensemble without prompting
+	// (every musician must keep an instrument the target also has)
+	public void setArguments(String arguments)
+	{
+		int to = arguments.lastIndexOf(" to ");
+		if (to < 0) {
+			throw new IllegalArgumentException("Usage: transfer <musician ID>[,<musician ID>...] to <ensemble ID>");
+		}
+		this.fromId = MEMS.getCurrentEnsembleId();
+		if (fromId == null) {
+			throw new IllegalArgumentException("No current ensemble set. Please create or switch to an ensemble first.");
+		}
+		this.toId = arguments.substring(to + 4).trim();
+		this.musicianIds = parseIds(List.of(arguments.substring(0, to).split(",")));
+		this.chosenRoles = new HashMap<>();
+		resolveRoles(checkEnsembles());
+	}
+	
+	// Also used for redo - the same musicians are moved again with the same instruments
+	public boolean execute()
+	{
+		Map<String, Ensemble> ensembles = MEMS.getEnsembles();
+		Ensemble from = ensembles.get(fromId);
+		Ensemble to = ensembles.get(toId);
+		if (from == null || to == null) {
+			throw new IllegalStateException("Ensemble " + (from == null ? fromId : toId) + " no longer exists!");
+		}
+		
+		// Check everything first, so a transfer either moves all musicians or none
+		Musician[] moving = new Musician[musicianIds.size()];
+		for (int i = 0; i < moving.length; i++)
+		{
+			moving[i] = from.findMusician(musicianIds.get(i));
+			if (moving[i] == null) {
+				throw new IllegalStateException("Musician " + musicianIds.get(i) + " is no longer in ensemble " + fromId);
+			}
+		}
+		this.positions = from.positionsOf(musicianIds);
+		this.oldRoles = new int[moving.length];
+		this.newRoles = new int[moving.length];
+		for (int i = 0; i < moving.length; i++)
+		{
+			oldRoles[i] = moving[i].getRole();
+			newRoles[i] = mapRole(from, moving[i].getMID(), chosenRoles.getOrDefault(moving[i].getMID(), 0));
+			if (newRoles[i] == 0) {
+				throw new IllegalStateException("Ensemble " + toId + " has no instrument for musician " + moving[i].getMID());
+			}
+		}
+		
+		for (int i = 0; i < moving.length; i++)
+		{
+			leave(from, moving[i]);
+			moving[i].setRole(newRoles[i]);
+			to.addMusician(moving[i]);
+			MEMS.getChangeNotifier().musicianAdded(to, moving[i]);
+		}
+		MEMS.getOut().println(moving.length + " musician(s) transferred to ensemble " + toId + ".");
+		return true;
+	}
+	
+	public boolean undo()
+	{
+		// A multi-step undo may still hold restores of these ensembles - apply them before moving anything
+		EnsembleCaretaker.settle(fromId);
+		EnsembleCaretaker.settle(toId);
+		
+		Map<String, Ensemble> ensembles = MEMS.getEnsembles();
+		Ensemble from = ensembles.get(fromId);
+		Ensemble to = ensembles.get(toId);
+		Musician[] returning = new Musician[musicianIds.size()];
+		for (int i = 0; i < returning.length; i++)
+		{
+			returning[i] = to.findMusician(musicianIds.get(i));
+			leave(to, returning[i]);
+			returning[i].setRole(oldRoles[i]);
+		}
+		from.insertMusicians(returning, positions);
+		for (Musician m : returning)
+		{
+			MEMS.getChangeNotifier().musicianAdded(from, m);
+		}
+		MEMS.setCurrentEnsembleId(fromId);
+		return true;
+	}
+	
+	public String getDescription()
+	{
+		return String.format("Transfer musicians, %s -> %s, %s", fromId, toId, String.join(", ", musicianIds));
+	}
+	
+	// Take a musician out of an ensemble on its way to the other one - reported while it still has its old role
+	private static void leave(Ensemble e, Musician m)
+	{
+		e.dropMusician(m);
+		MEMS.getChangeNotifier().musicianRemoved(e, m);
+	}
+	
+	// Both ensembles exist and differ, and every musician is in the source - returns the source
+	private Ensemble checkEnsembles()
+	{
+		Map<String, Ensemble> ensembles = MEMS.getEnsembles();
+		Ensemble from = ensembles.get(fromId);
+		if (from == null) {
+			throw new IllegalArgumentException("Ensemble ID '" + fromId + "' does not exist!");
+		}
+		if (toId == null || toId.isEmpty()) {
+			throw new IllegalArgumentException("Target ensemble ID cannot be empty");
+		}
+		if (!ensembles.containsKey(toId)) {
+			throw new IllegalArgumentException("Ensemble ID '" + toId + "' does not exist!");
+		}
+		if (toId.equals(fromId)) {
+			throw new IllegalArgumentException("Source and target are the same ensemble (" + toId + ")");
+		}
+		for (String id : musicianIds)
+		{
+			if (from.findMusician(id) == null) {
+				throw new IllegalArgumentException("Musician ID '" + id + "' does not exist in ensemble " + fromId + "!");
+			}
+		}
+		return from;
+	}
+	
+	// Every musician has an instrument in the target ensemble
+	private void resolveRoles(Ensemble from)
+	{
+		for (String id : musicianIds)
+		{
+			if (mapRole(from, id, chosenRoles.getOrDefault(id, 0)) == 0)
+			{
+				Musician m = from.findMusician(id);
+				String roleName = MEMS.getFactoryRegistry().getMusicianFactory(from.getFactoryType()).getRoleName(m.getRole());
+				throw new IllegalArgumentException("Ensemble " + toId + " has no " + roleName + " - please choose an instrument for " + id);
+			}
+		}
+	}
+	
+	// Role of a musician in the target: the same instrument if the target has it, else 'chosen' if valid there (0 = none)
+	private int mapRole(Ensemble from, String musicianId, int chosen)
+	{
+		FactoryRegistry factoryRegistry = MEMS.getFactoryRegistry();
+		MusicianFactory sourceFactory = factoryRegistry.getMusicianFactory(from.getFactoryType());
+		MusicianFactory targetFactory = factoryRegistry.getMusicianFactory(MEMS.getEnsembles().get(toId).getFactoryType());
+		int sameInstrument = targetFactory.findRole(sourceFactory.getRoleName(from.findMusician(musicianId).getRole()));
+		if (sameInstrument != 0)
+		{
+			return sameInstrument;
+		}
+		return targetFactory.isValidRole(chosen) ? chosen : 0;
+	}
+	
+	// Trimmed, non-empty and without duplicates
+	private static List<String> parseIds(List<String> ids)
+	{
+		if (ids == null) {
+			throw new IllegalArgumentException("Please input at least one musician ID");
+		}
+		Set<String> unique = new LinkedHashSet<>();
+		for (String id : ids)
+		{
+			if (id != null && !id.trim().isEmpty()) {
+				unique.add(id.trim());
+			}
+		}
+		if (unique.isEmpty()) {
+			throw new IllegalArgumentException("Please input at least one musician ID");
+		}
+		return new ArrayList<>(unique);
+	}
+}
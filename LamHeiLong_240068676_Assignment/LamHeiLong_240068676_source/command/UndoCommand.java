@@ -1,22 +1,34 @@
-import java.util.Scanner;
+import java.util.List;
 
 /**
  * UndoCommand - wrapper command that undoes the last undoable command
  * Part of the Command pattern implementation for undo functionality
  * 
  * Delegates the actual work to HistoryManager
+ * "u N" undoes N commands in one go
  */
 public class UndoCommand implements Command
 {
+	private int steps = 1;   // How many commands to undo
+	
 	public UndoCommand()
 	{
 	}
 	
-	public void readInput(Scanner scanner)
+	public void readInput(LineReader reader)
 	{
 		// No input needed for undo
 	}
 	
+	// Number of steps, e.g. "u 5"
+	public void setArguments(String arguments)
+	{
+		this.steps = Integer.parseInt(arguments.trim());
+		if (steps < 1) {
+			throw new IllegalArgumentException("Number of steps must be at least 1");
+		}
+	}
+	
 	public boolean execute()
 	{
 		HistoryManager historyManager = MEMS.getHistoryManager();
@@ -24,11 +36,19 @@ public class UndoCommand implements Command
 		// Save current ensemble before undo
 		String previousEnsembleId = MEMS.getCurrentEnsembleId();
 		
-		String description = historyManager.undo();
+		List<String> descriptions = historyManager.undo(steps);
 		
-		if (description != null)
+		if (!descriptions.isEmpty())
 		{
-			System.out.println("Command (" + description + ") is undone.");
+			if (descriptions.size() == 1)
+			{
+				MEMS.getOut().println("Command (" + descriptions.get(0) + ") is undone.");
+			}
+			else
+			{
+				MEMS.getOut().println(descriptions.size() + " commands are undone, from (" + descriptions.get(0)
+						+ ") to (" + descriptions.get(descriptions.size() - 1) + ").");
+			}
 			
 			// Check if ensemble context changed during undo
 			String newEnsembleId = MEMS.getCurrentEnsembleId();
@@ -39,7 +59,7 @@ public class UndoCommand implements Command
 					Ensemble newEnsemble = MEMS.getEnsembles().get(newEnsembleId);
 					if (newEnsemble != null)
 					{
-						System.out.println("The current ensemble is changed to " + newEnsembleId + " " + newEnsemble.getName() + ".");
+						MEMS.getOut().println("The current ensemble is changed to " + newEnsembleId + " " + newEnsemble.getName() + ".");
 					}
 				}
 			}
@@ -47,7 +67,7 @@ public class UndoCommand implements Command
 		}
 		else
 		{
-			System.out.println("Nothing to undo.");
+			MEMS.getOut().println("Nothing to undo.");
 			return false;
 		}
 	}
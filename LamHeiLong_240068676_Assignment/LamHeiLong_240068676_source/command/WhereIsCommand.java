@@ -0,0 +1,52 @@
+/**
+ * WhereIsCommand - shows which ensemble a musician is in (from the musician index, no roster scan)
+ * This is a non-undoable command (doesn't go in history)
+ */
+public class WhereIsCommand implements Command
+{
+	private String musicianId;
+	
+	public WhereIsCommand()
+	{
+	}
+	
+	public void readInput(LineReader reader)
+	{
+		MEMS.getOut().print("Please input musician ID:- ");
+		setArguments(reader.nextTrimmedLine());
+	}
+	
+	// "whereis M1"
+	public void setArguments(String arguments)
+	{
+		this.musicianId = arguments.trim();
+		if (musicianId.isEmpty()) {
+			throw new IllegalArgumentException("Musician ID cannot be empty");
+		}
+	}
+	
+	public boolean execute()
+	{
+		String ensembleId = MEMS.findMusicianOwner(musicianId);
+		Ensemble ensemble = (ensembleId == null) ? null : MEMS.getEnsembles().get(ensembleId);
+		Musician m = (ensemble == null) ? null : ensemble.findMusician(musicianId);
+		if (m == null) {
+			throw new IllegalArgumentException("Musician ID '" + musicianId + "' does not exist!");
+		}
+		String roleName = MEMS.getFactoryRegistry().getMusicianFactory(ensemble.getFactoryType()).getRoleName(m.getRole());
+		MEMS.getOut().println("Musician " + m.getMID() + " (" + m.getName() + ", " + roleName + ") is in ensemble "
+			+ ensemble.getEnsembleID() + " " + ensemble.getName() + ".");
+		return true;
+	}
+	
+	public boolean undo()
+	{
+		// Non-undoable command
+		return false;
+	}
+	
+	public String getDescription()
+	{
+		return "Where is " + musicianId;
+	}
+}
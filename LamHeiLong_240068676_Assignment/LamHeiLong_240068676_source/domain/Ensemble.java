@@ -1,6 +1,10 @@
-import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.Iterator;
-import java.util.Vector;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 
 /**
  * Ensemble class - base class for all types of ensembles (Orchestra, Jazz Band, etc.)
@@ -11,46 +15,256 @@ import java.util.Vector;
  * and subclasses fill in the specific parts (like how to display or validate roles).
  * 
  * Also uses Memento pattern - can save and restore state for undo/redo.
+ * 
+ * The roster is keyed by musician ID (in joining order), so finding or dropping one musician is O(1).
+ * Keeps a running count of musicians per role, so summaries don't need to walk the roster.
+ * Every change also bumps the ensemble's own version counter, so storage can tell which ensembles are dirty
+ * and the RenderCache can tell whether a rendered view is still current. Versions only mean something
+ * for the same Ensemble object (a new object, e.g. a reloaded one, starts again at 0).
  */
 public abstract class Ensemble
 {
 	private String ensembleID;           // Unique ID for this ensemble
 	private String eName;                // Name of the ensemble
-	private AbstractList<Musician> musicians;    // List of musicians in this ensemble
+	private Map<String, Musician> musicians;    // Musicians in this ensemble by ID, in joining order
+	private int[] roleCounts;            // Number of musicians per role (index = role number)
+	private long version;                // Counts the changes to this ensemble object
 	
 	// Constructor - creates a new ensemble with an ID
 	public Ensemble(String eID)
 	{
 		this.ensembleID = eID;
 		this.eName = "";
-		this.musicians = new Vector<>();  // Using Vector to store musicians
+		this.musicians = new LinkedHashMap<>();
+		this.roleCounts = new int[4];     // Roles 1..3 are used today, grows if needed
+		this.version = 0;
 	}
 	
 	// Getter and setter methods
 	public String getEnsembleID() { return ensembleID; }
 	public String getName() { return eName; }
-	public void setName(String eName) { this.eName = eName; }
+	public void setName(String eName) { this.eName = eName; touch(); }
+	public long getVersion() { return version; }
 	
-	// Add a musician to this ensemble
+	// Add a musician to this ensemble (replaces a musician with the same ID)
 	public void addMusician(Musician m)
 	{
-		musicians.add(m);
+		Musician previous = musicians.put(m.getMID(), m);
+		if (previous != null)
+		{
+			adjustRoleCount(previous.getRole(), -1);
+		}
+		adjustRoleCount(m.getRole(), 1);
+		touch();
 	}
 	
 	// Remove a musician from this ensemble
+	// Counts only change if the musician was really in the roster
 	public void dropMusician(Musician m)
 	{
-		musicians.remove(m);
+		if (musicians.remove(m.getMID(), m))
+		{
+			adjustRoleCount(m.getRole(), -1);
+			touch();
+		}
+	}
+	
+	// Change the role of a musician in this ensemble and keep the counts in step
+	// Subclasses call this instead of Musician.setRole() once the role is validated
+	protected void changeMusicianRole(Musician m, int newRole)
+	{
+		adjustRoleCount(m.getRole(), -1);
+		m.setRole(newRole);
+		adjustRoleCount(newRole, 1);
+		touch();
+	}
+	
+	// Roster positions (joining order, from 0) of the given musicians, in the same order - one pass over the roster
+	public int[] positionsOf(List<String> musicianIds)
+	{
+		Map<String, Integer> wanted = new HashMap<>();
+		for (int i = 0; i < musicianIds.size(); i++)
+		{
+			wanted.put(musicianIds.get(i), i);
+		}
+		int[] positions = new int[musicianIds.size()];
+		Arrays.fill(positions, -1);
+		int position = 0;
+		for (String id : musicians.keySet())
+		{
+			Integer slot = wanted.get(id);
+			if (slot != null)
+			{
+				positions[slot] = position;
+			}
+			position++;
+		}
+		return positions;
+	}
+	
+	// Roster position (joining order, from 0) of one musician, or -1 if it is not in this ensemble
+	public int positionOf(String musicianId)
+	{
+		int position = 0;
+		for (String id : musicians.keySet())
+		{
+			if (id.equals(musicianId))
+			{
+				return position;
+			}
+			position++;
+		}
+		return -1;
+	}
+	
+	// Put musicians back at the roster positions they had (from positionsOf before they left), e.g. when
+	// a transfer is undone - one pass that rebuilds the roster
+	public void insertMusicians(Musician[] returning, int[] positions)
+	{
+		Map<Integer, Musician> byPosition = new TreeMap<>();
+		for (int i = 0; i < returning.length; i++)
+		{
+			byPosition.put(positions[i], returning[i]);
+		}
+		Map<String, Musician> rebuilt = new LinkedHashMap<>();
+		Iterator<Musician> staying = musicians.values().iterator();
+		for (Map.Entry<Integer, Musician> entry : byPosition.entrySet())
+		{
+			while (rebuilt.size() < entry.getKey() && staying.hasNext())
+			{
+				Musician m = staying.next();
+				rebuilt.put(m.getMID(), m);
+			}
+			rebuilt.put(entry.getValue().getMID(), entry.getValue());
+			adjustRoleCount(entry.getValue().getRole(), 1);
+		}
+		while (staying.hasNext())
+		{
+			Musician m = staying.next();
+			rebuilt.put(m.getMID(), m);
+		}
+		musicians = rebuilt;
+		touch();
 	}
 	
 	// Get an iterator to loop through all musicians
 	public Iterator<Musician> getMusicians()
 	{
-		return musicians.iterator();
+		return musicians.values().iterator();
+	}
+	
+	// Find a musician in this roster by ID (null if not in this ensemble) - O(1)
+	public Musician findMusician(String musicianId)
+	{
+		return musicians.get(musicianId);
+	}
+	
+	// Number of musicians in this ensemble - O(1)
+	public int getSize()
+	{
+		return musicians.size();
+	}
+	
+	// Number of musicians playing the given role - O(1)
+	public int getRoleCount(int role)
+	{
+		if (role < 0 || role >= roleCounts.length)
+		{
+			return 0;
+		}
+		return roleCounts[role];
+	}
+	
+	// Print the ensemble - an unchanged ensemble is served from the RenderCache without walking the roster
+	public void showEnsemble()
+	{
+		MEMS.getOut().print(MEMS.getRenderCache().render(this, RenderCache.Format.TEXT));
+	}
+	
+	// Write the ensemble as one JSON object, musicians in joining order with their instrument names
+	public void renderJson(StringBuilder out, MusicianFactory musicianFactory)
+	{
+		out.append("{\"id\":");
+		jsonString(out, ensembleID);
+		out.append(",\"name\":");
+		jsonString(out, eName);
+		out.append(",\"type\":");
+		jsonString(out, getFactoryType());
+		out.append(",\"musicians\":[");
+		boolean first = true;
+		for (Musician m : musicians.values())
+		{
+			if (!first)
+			{
+				out.append(',');
+			}
+			first = false;
+			out.append("{\"id\":");
+			jsonString(out, m.getMID());
+			out.append(",\"name\":");
+			jsonString(out, m.getName());
+			out.append(",\"role\":");
+			jsonString(out, musicianFactory.getRoleName(m.getRole()));
+			out.append('}');
+		}
+		out.append("]}");
+	}
+	
+	// One line of text output
+	protected static void line(StringBuilder out, String text)
+	{
+		out.append(text).append(System.lineSeparator());
+	}
+	
+	// Quoted JSON string with the characters JSON requires escaped
+	private static void jsonString(StringBuilder out, String s)
+	{
+		out.append('"');
+		for (int i = 0; i < s.length(); i++)
+		{
+			char c = s.charAt(i);
+			if (c == '"' || c == '\\')
+			{
+				out.append('\\').append(c);
+			}
+			else if (c < 0x20)
+			{
+				out.append(String.format("\\u%04x", (int) c));
+			}
+			else
+			{
+				out.append(c);
+			}
+		}
+		out.append('"');
+	}
+	
+	// Take a new version number after any change
+	private void touch()
+	{
+		version++;
+	}
+	
+	// Update the counter for one role, growing the array for unexpected role numbers
+	private void adjustRoleCount(int role, int delta)
+	{
+		if (role < 0)
+		{
+			return;
+		}
+		if (role >= roleCounts.length)
+		{
+			int[] bigger = new int[role + 1];
+			System.arraycopy(roleCounts, 0, bigger, 0, roleCounts.length);
+			roleCounts = bigger;
+		}
+		roleCounts[role] += delta;
 	}
 	
 	// Abstract methods - subclasses must implement these
 	// Each ensemble type has different rules for roles and different display formats
-	public abstract void updateMusicianRole();
-	public abstract void showEnsemble();
+	public abstract boolean updateMusicianRole(String musicianId, int newRole);   // False if the role is not valid here
+	protected abstract void renderText(StringBuilder out);   // The text shown by showEnsemble()
+	public abstract void showSummary();
+	public abstract String getFactoryType();   // Key of this ensemble's factories in FactoryRegistry
 }
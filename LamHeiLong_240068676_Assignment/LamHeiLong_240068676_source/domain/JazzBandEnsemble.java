@@ -1,5 +1,4 @@
 import java.util.Iterator;
-import java.util.Scanner;
 
 /**
  * JazzBandEnsemble - represents a jazz band type ensemble
@@ -23,35 +22,15 @@ public class JazzBandEnsemble extends Ensemble
 		super(eID);
 	}
 	
-	// Update musician's role - only allows valid jazz band roles (1, 2, or 3)
-	public void updateMusicianRole()
+	// Update musician's role (input is read by ModifyMusicianInstrumentCommand) - only allows valid jazz band roles (1, 2, or 3)
+	public boolean updateMusicianRole(String musicianId, int newRole)
 	{
-		Scanner scanner = MEMS.getScanner();
-		
-		String musicianId;
-		int newRole;
-
-		System.out.print("Please input musician ID:- ");
-		musicianId = scanner.nextLine().trim();
-		if (musicianId.isEmpty()) {
-			throw new IllegalArgumentException("Musician ID cannot be empty");
-		}
-		
-		Musician m = MEMS.getMusicians().get(musicianId);
+		// Look the musician up in this roster, so we change the object the ensemble really holds
+		Musician m = findMusician(musicianId);
 		if( m == null ) {
-			throw new IllegalArgumentException("Musician with ID " + musicianId + " does not exist");
-		}
-		
-		// Check if the musician belongs to this ensemble
-		boolean isInEnsemble = false;
-		Iterator<Musician> it = getMusicians();
-		while (it.hasNext()) {
-			if (it.next().getMID().equals(musicianId)) {
-				isInEnsemble = true;
-				break;
+			if (!MEMS.getMusicians().containsKey(musicianId)) {
+				throw new IllegalArgumentException("Musician with ID " + musicianId + " does not exist");
 			}
-		}
-		if (!isInEnsemble) {
 			throw new IllegalArgumentException("Musician " + musicianId + " is not in this ensemble");
 		}
 		
@@ -74,31 +53,26 @@ public class JazzBandEnsemble extends Ensemble
 			MusicianCaretaker.createMemento(m, roleName);
 		}
 		
-		System.out.print("Instrument (1 = pianist | 2 = saxophonist | 3 = drummer ):- ");
-		String roleInput = scanner.nextLine().trim();
-		if (roleInput.isEmpty()) {
-			throw new IllegalArgumentException("Instrument selection cannot be empty");
-		}
-		newRole = Integer.parseInt(roleInput);
-
 		if (newRole == PIANIST_ROLE || newRole == SAXOPHONIST_ROLE || newRole == DRUMMER_ROLE)
 		{
-			m.setRole(newRole);
-			System.out.println("Instrument is updated.");
+			changeMusicianRole(m, newRole);
+			MEMS.getOut().println("Instrument is updated.");
+			return true;
 		}
 		else
 		{
-			System.out.println("Invalid instrument selection. No changes made.");
+			MEMS.getOut().println("Invalid instrument selection. No changes made.");
+			return false;
 		}
 	}
 	
-	// Display the jazz band and all its musicians grouped by instrument
-	public void showEnsemble()
+	// Write the jazz band and all its musicians grouped by instrument (shown through Ensemble.showEnsemble)
+	protected void renderText(StringBuilder out)
 	{
-		System.out.println("Jazz Band Ensemble " + getName() + " (" + getEnsembleID() + ")");
+		line(out, "Jazz Band Ensemble " + getName() + " (" + getEnsembleID() + ")");
 		
 		// Display all pianists
-		System.out.println("Pianist:");
+		line(out, "Pianist:");
 		Iterator<Musician> it = getMusicians();
 		boolean hasPianist = false;
 		while (it.hasNext())
@@ -106,17 +80,17 @@ public class JazzBandEnsemble extends Ensemble
 			Musician m = it.next();
 			if (m.getRole() == PIANIST_ROLE)
 			{
-				System.out.println(m.getMID() + ", " + m.getName());
+				line(out, m.getMID() + ", " + m.getName());
 				hasPianist = true;
 			}
 		}
 		if (!hasPianist)
 		{
-			System.out.println("NLI");
+			line(out, "NLI");
 		}
 		
 		// Display saxophonists
-		System.out.println("Saxophonist:");
+		line(out, "Saxophonist:");
 		it = getMusicians();
 		boolean hasSaxophonist = false;
 		while (it.hasNext())
@@ -124,17 +98,17 @@ public class JazzBandEnsemble extends Ensemble
 			Musician m = it.next();
 			if (m.getRole() == SAXOPHONIST_ROLE)
 			{
-				System.out.println(m.getMID() + ", " + m.getName());
+				line(out, m.getMID() + ", " + m.getName());
 				hasSaxophonist = true;
 			}
 		}
 		if (!hasSaxophonist)
 		{
-			System.out.println("NIL");
+			line(out, "NIL");
 		}
 		
 		// Display drummers
-		System.out.println("Drummer:");
+		line(out, "Drummer:");
 		it = getMusicians();
 		boolean hasDrummer = false;
 		while (it.hasNext())
@@ -142,13 +116,25 @@ public class JazzBandEnsemble extends Ensemble
 			Musician m = it.next();
 			if (m.getRole() == DRUMMER_ROLE)
 			{
-				System.out.println(m.getMID() + ", " + m.getName());
+				line(out, m.getMID() + ", " + m.getName());
 				hasDrummer = true;
 			}
 		}
 		if (!hasDrummer)
 		{
-			System.out.println("NIL");
+			line(out, "NIL");
 		}
 	}
+	
+	// Display the head count per instrument - uses the counters kept by Ensemble, no roster walk
+	public void showSummary()
+	{
+		MEMS.getOut().println("Jazz Band Ensemble " + getName() + " (" + getEnsembleID() + "): "
+				+ getSize() + " musician(s)");
+		MEMS.getOut().println("Pianist: " + getRoleCount(PIANIST_ROLE) + ", Saxophonist: " + getRoleCount(SAXOPHONIST_ROLE)
+				+ ", Drummer: " + getRoleCount(DRUMMER_ROLE));
+	}
+	
+	// Key used to find the ensemble and musician factories for this type
+	public String getFactoryType() { return "jazz"; }
 }
@@ -0,0 +1,115 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * MusicianFilter - selects the musicians of one ensemble for the bulk commands (bm, bd)
+ *
+ * Written as one or more terms, all of which must match:
+ * - role=<instrument>  instrument name (e.g. saxophonist) or number, checked against the ensemble's MusicianFactory
+ * - id=<prefix>        musician ID starts with the prefix (a trailing * is allowed, e.g. id=TMP-*)
+ * - name=<pattern>     whole name matches the pattern, * = any text, ? = one character, case ignored
+ * e.g. "role=saxophonist", "id=TMP-", "role=violinist name=*Smith"
+ */
+public class MusicianFilter
+{
+	private static final Pattern TERM_START = Pattern.compile("\\s+(?=(role|id|name)=)");
+	
+	private int role;            // Role to match (0 = any)
+	private String idPrefix;     // ID prefix to match (null = any)
+	private Pattern namePattern; // Name pattern to match (null = any)
+	private String text;         // The filter as written, for descriptions
+	
+	private MusicianFilter()
+	{
+	}
+	
+	// Parse a filter for an ensemble whose instruments come from 'musicianFactory'
+	public static MusicianFilter parse(String text, MusicianFactory musicianFactory)
+	{
+		if (text == null || text.trim().isEmpty()) {
+			throw new IllegalArgumentException("Filter cannot be empty - use role=<instrument>, id=<prefix> and/or name=<pattern>");
+		}
+		MusicianFilter filter = new MusicianFilter();
+		filter.text = text.trim();
+		List<String> seen = new ArrayList<>();
+		for (String term : TERM_START.split(filter.text))
+		{
+			int eq = term.indexOf('=');
+			String key = (eq < 0) ? term : term.substring(0, eq).trim();
+			String value = (eq < 0) ? "" : term.substring(eq + 1).trim();
+			if (eq < 0 || value.isEmpty()) {
+				throw new IllegalArgumentException("Invalid filter term '" + term + "' - use role=<instrument>, id=<prefix> and/or name=<pattern>");
+			}
+			if (seen.contains(key)) {
+				throw new IllegalArgumentException("Filter term '" + key + "' is given twice");
+			}
+			seen.add(key);
+			switch (key)
+			{
+				case "role":
+					filter.role = parseRole(value, musicianFactory);
+					break;
+				case "id":
+					filter.idPrefix = value.endsWith("*") ? value.substring(0, value.length() - 1) : value;
+					break;
+				case "name":
+					filter.namePattern = globToPattern(value);
+					break;
+				default:
+					throw new IllegalArgumentException("Unknown filter term '" + key + "' - use role, id or name");
+			}
+		}
+		return filter;
+	}
+	
+	// Instrument given by name or by number, valid for the factory (IllegalArgumentException otherwise)
+	public static int parseRole(String value, MusicianFactory musicianFactory)
+	{
+		String v = value.trim();
+		int role = musicianFactory.findRole(v.toLowerCase());
+		if (role == 0 && !v.isEmpty() && v.chars().allMatch(Character::isDigit)) {
+			role = Integer.parseInt(v);
+		}
+		if (!musicianFactory.isValidRole(role)) {
+			throw new IllegalArgumentException("Invalid instrument selection: " + v);
+		}
+		return role;
+	}
+	
+	public boolean matches(Musician m)
+	{
+		if (role != 0 && m.getRole() != role) {
+			return false;
+		}
+		if (idPrefix != null && !m.getMID().startsWith(idPrefix)) {
+			return false;
+		}
+		return namePattern == null || namePattern.matcher(m.getName()).matches();
+	}
+	
+	public String toString() { return text; }
+	
+	// * and ? become regex wildcards, everything else is literal
+	private static Pattern globToPattern(String glob)
+	{
+		StringBuilder regex = new StringBuilder();
+		int literalStart = 0;
+		for (int i = 0; i < glob.length(); i++)
+		{
+			char c = glob.charAt(i);
+			if (c == '*' || c == '?')
+			{
+				if (i > literalStart) {
+					regex.append(Pattern.quote(glob.substring(literalStart, i)));
+				}
+				regex.append(c == '*' ? ".*" : ".");
+				literalStart = i + 1;
+			}
+		}
+		if (literalStart < glob.length()) {
+			regex.append(Pattern.quote(glob.substring(literalStart)));
+		}
+		return Pattern.compile(regex.toString(), Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE | Pattern.DOTALL);
+	}
+}
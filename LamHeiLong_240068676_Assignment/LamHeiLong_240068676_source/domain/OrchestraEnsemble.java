@@ -1,5 +1,4 @@
 import java.util.Iterator;
-import java.util.Scanner;
 
 /**
  * OrchestraEnsemble - represents an orchestra type ensemble
@@ -21,40 +20,18 @@ public class OrchestraEnsemble extends Ensemble
 		super(eID);
 	}
 	
-	// Update musician's role - only allows valid orchestra roles (1 or 2)
-	public void updateMusicianRole()
+	// Update musician's role (input is read by ModifyMusicianInstrumentCommand) - only allows valid orchestra roles (1 or 2)
+	public boolean updateMusicianRole(String musicianId, int newRole)
 	{
-		Scanner scanner = MEMS.getScanner();
-		
-		String musicianId;
-		int newRole;
-
-		System.out.print("Please input musician ID:- ");
-		musicianId = scanner.nextLine().trim();
-		if (musicianId.isEmpty()) {
-			
-			throw new IllegalArgumentException("Musician ID cannot be empty");
-		}
-		
-		Musician m = MEMS.getMusicians().get(musicianId);
+		// Look the musician up in this roster, so we change the object the ensemble really holds
+		Musician m = findMusician(musicianId);
 		if( m == null ) {
-			
-			throw new IllegalArgumentException("Musician with ID " + musicianId + " does not exist");
-		}
-		
-		// Check if the musician belongs to this ensemble
-		boolean isInEnsemble = false;
-		Iterator<Musician> it = getMusicians();
-		while (it.hasNext()) {
-			if (it.next().getMID().equals(musicianId)) {
-				isInEnsemble = true;
-				break;
+			if (!MEMS.getMusicians().containsKey(musicianId)) {
+				throw new IllegalArgumentException("Musician with ID " + musicianId + " does not exist");
 			}
-		}
-		if (!isInEnsemble) {
 			throw new IllegalArgumentException("Musician " + musicianId + " is not in this ensemble");
 		}
-
+		
 		int currentRole = m.getRole();
 		if(currentRole == VIOLINIST_ROLE || currentRole == CELLIST_ROLE)
 		{
@@ -70,32 +47,27 @@ public class OrchestraEnsemble extends Ensemble
 			}
 			MusicianCaretaker.createMemento(m, roleName);
 		}
-		System.out.print("Instrument (1 = violinist | 2 = cellist ):- ");
-		String roleInput = scanner.nextLine().trim();
-		if (roleInput.isEmpty()) {
-			
-			throw new IllegalArgumentException("Instrument selection cannot be empty");
-		}
-		newRole = Integer.parseInt(roleInput);
-
+		
 		if (newRole == VIOLINIST_ROLE || newRole == CELLIST_ROLE)
 		{
-			m.setRole(newRole);
-			System.out.println("Instrument is updated.");
+			changeMusicianRole(m, newRole);
+			MEMS.getOut().println("Instrument is updated.");
+			return true;
 		}
 		else
 		{
-			System.out.println("Invalid instrument selection. No changes made.");
+			MEMS.getOut().println("Invalid instrument selection. No changes made.");
+			return false;
 		}
 	}
 	
-	// Display the orchestra and all its musicians grouped by instrument
-	public void showEnsemble()
+	// Write the orchestra and all its musicians grouped by instrument (shown through Ensemble.showEnsemble)
+	protected void renderText(StringBuilder out)
 	{
-		System.out.println("Orchestra Ensemble " + getName() + " (" + getEnsembleID() + ")");
+		line(out, "Orchestra Ensemble " + getName() + " (" + getEnsembleID() + ")");
 		
 		// Display all violinists
-		System.out.println("Violinist:");
+		line(out, "Violinist:");
 		Iterator<Musician> it = getMusicians();
 		boolean hasViolinist = false;
 		while (it.hasNext())
@@ -103,17 +75,17 @@ public class OrchestraEnsemble extends Ensemble
 			Musician m = it.next();
 			if (m.getRole() == VIOLINIST_ROLE)
 			{
-				System.out.println(m.getMID() + ", " + m.getName());
+				line(out, m.getMID() + ", " + m.getName());
 				hasViolinist = true;
 			}
 		}
 		if (!hasViolinist)
 		{
-			System.out.println("NIL");  // Show NIL if no violinists
+			line(out, "NIL");  // Show NIL if no violinists
 		}
 		
 		// Display all cellists
-		System.out.println("Cellist:");
+		line(out, "Cellist:");
 		it = getMusicians();
 		boolean hasCellist = false;
 		while (it.hasNext())
@@ -121,13 +93,24 @@ public class OrchestraEnsemble extends Ensemble
 			Musician m = it.next();
 			if (m.getRole() == CELLIST_ROLE)
 			{
-				System.out.println(m.getMID() + ", " + m.getName());
+				line(out, m.getMID() + ", " + m.getName());
 				hasCellist = true;
 			}
 		}
 		if (!hasCellist)
 		{
-			System.out.println("NIL");  // Show NIL if no cellists
+			line(out, "NIL");  // Show NIL if no cellists
 		}
 	}
+	
+	// Display the head count per instrument - uses the counters kept by Ensemble, no roster walk
+	public void showSummary()
+	{
+		MEMS.getOut().println("Orchestra Ensemble " + getName() + " (" + getEnsembleID() + "): "
+				+ getSize() + " musician(s)");
+		MEMS.getOut().println("Violinist: " + getRoleCount(VIOLINIST_ROLE) + ", Cellist: " + getRoleCount(CELLIST_ROLE));
+	}
+	
+	// Key used to find the ensemble and musician factories for this type
+	public String getFactoryType() { return "orchestra"; }
 }
@@ -0,0 +1,65 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * EnsembleView - read-only snapshot of an ensemble returned by MemsEngine
+ * Holds the head count per role and, unless it is a summary view, the musicians
+ *
+ * Role counts come from the counters Ensemble keeps, so a summary view costs the same for any roster size.
+ */
+public class EnsembleView
+{
+	private final String id;
+	private final String name;
+	private final String type;                      // FactoryRegistry key, e.g. "orchestra" or "jazz"
+	private final int size;
+	private final Map<String, Integer> roleCounts;  // Role name -> head count, in role order
+	private final List<MusicianView> musicians;     // Empty for summary views
+	
+	public EnsembleView(String id, String name, String type, int size, Map<String, Integer> roleCounts, List<MusicianView> musicians)
+	{
+		this.id = id;
+		this.name = name;
+		this.type = type;
+		this.size = size;
+		this.roleCounts = Collections.unmodifiableMap(roleCounts);
+		this.musicians = Collections.unmodifiableList(musicians);
+	}
+	
+	// Snapshot of an ensemble - withRoster = false skips copying the musicians (summary view)
+	static EnsembleView of(Ensemble e, FactoryRegistry factoryRegistry, boolean withRoster)
+	{
+		MusicianFactory musicianFactory = factoryRegistry.getMusicianFactory(e.getFactoryType());
+		Map<String, Integer> counts = new LinkedHashMap<>();
+		for (int role = 1; musicianFactory.isValidRole(role); role++)
+		{
+			counts.put(musicianFactory.getRoleName(role), e.getRoleCount(role));
+		}
+		List<MusicianView> roster = new ArrayList<>();
+		if (withRoster)
+		{
+			Iterator<Musician> it = e.getMusicians();
+			while (it.hasNext())
+			{
+				roster.add(MusicianView.of(it.next(), musicianFactory));
+			}
+		}
+		return new EnsembleView(e.getEnsembleID(), e.getName(), e.getFactoryType(), e.getSize(), counts, roster);
+	}
+	
+	public String getId() { return id; }
+	public String getName() { return name; }
+	public String getType() { return type; }
+	public int getSize() { return size; }
+	public Map<String, Integer> getRoleCounts() { return roleCounts; }
+	public List<MusicianView> getMusicians() { return musicians; }
+	
+	public String toString()
+	{
+		return type + " " + id + " " + name + " " + roleCounts;
+	}
+}
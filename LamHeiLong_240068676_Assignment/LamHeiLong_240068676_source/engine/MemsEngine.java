@@ -0,0 +1,303 @@
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * MemsEngine - programmatic API for embedding MEMS in other programs (no console, no text scraping)
+ * Takes typed parameters, returns typed snapshots (EnsembleView, MusicianView) and reports errors
+ * as IllegalArgumentException / IllegalStateException with the same messages the console shows.
+ *
+ * Changes run through the same Command classes and HistoryManager as the console,
+ * so undo/redo, change listeners, replication and the file store all behave the same way.
+ * The console (MEMS.run) is just another front end over these commands.
+ *
+ * Each engine has its own system, which never becomes MEMS's static instance: every method runs with
+ * that system bound to the calling thread (MEMS.callBound), so the commands' static MEMS accessors reach
+ * this engine's data and no other, and several engines can live in one program.
+ * All methods are synchronized, so an engine can be shared between threads.
+ */
+public class MemsEngine
+{
+	private MEMS system;   // The system behind this engine (its console is never started)
+	
+	// Constructor - command messages are discarded
+	public MemsEngine()
+	{
+		this(OutputSink.discard());
+	}
+	
+	// Constructor - command messages (e.g. "Musician is added.") go to 'log'
+	public MemsEngine(PrintStream log)
+	{
+		this(MEMS.detached(log));
+	}
+	
+	// Constructor - over an existing system, e.g. a tenant's
+	MemsEngine(MEMS system)
+	{
+		this.system = system;
+	}
+	
+	// The underlying system, e.g. to call useEnsembleStore() or enableReplicationLog() before use
+	public MEMS getSystem() { return system; }
+	
+	// Create an ensemble and make it the current one - type is "o"/"orchestra" or "j"/"jazz"
+	public synchronized EnsembleView createEnsemble(String type, String ensembleId, String name)
+	{
+		return bound(() ->
+		{
+			run(new CreateEnsembleCommand(type, ensembleId, name));
+			return getEnsemble(ensembleId.trim());
+		});
+	}
+	
+	// Create an ensemble with a generated ID (see IdAllocator) and make it the current one
+	public synchronized EnsembleView createEnsemble(String type, String name)
+	{
+		return bound(() -> createEnsemble(type, MEMS.getEnsembleIdAllocator().next(), name));
+	}
+	
+	// New ensemble with the type and roster of 'sourceId' (musicians get generated IDs) - '*' generates the ensemble ID
+	public synchronized EnsembleView cloneEnsemble(String sourceId, String ensembleId, String name)
+	{
+		return bound(() ->
+		{
+			run(new CloneEnsembleCommand(sourceId, ensembleId, name));
+			return getEnsemble(MEMS.getCurrentEnsembleId());   // The clone is the current ensemble now
+		});
+	}
+	
+	// Same, from a snapshot of an ensemble held elsewhere, with musician IDs chosen by the caller (ShardedEngine)
+	synchronized EnsembleView cloneEnsemble(EnsembleView source, String ensembleId, String name, List<String> musicianIds)
+	{
+		return bound(() ->
+		{
+			run(new CloneEnsembleCommand(source, ensembleId, name, musicianIds));
+			return getEnsemble(ensembleId);
+		});
+	}
+	
+	// Make an ensemble the current one (recorded in history like the 's' command)
+	public synchronized void switchEnsemble(String ensembleId)
+	{
+		system.runBound(() -> run(new SwitchEnsembleCommand(ensembleId)));
+	}
+	
+	public synchronized MusicianView addMusician(String ensembleId, String musicianId, String name, int role)
+	{
+		return bound(() ->
+		{
+			run(new AddMusicianCommand(ensembleId, musicianId, name, role));
+			return getMusician(ensembleId, musicianId.trim());
+		});
+	}
+	
+	// Add a musician with a generated ID - the view returned carries the ID
+	public synchronized MusicianView addMusician(String ensembleId, String name, int role)
+	{
+		return bound(() -> addMusician(ensembleId, MEMS.getMusicianIdAllocator().next(), name, role));
+	}
+	
+	// Change a musician's instrument - the role must be valid for the ensemble type
+	public synchronized MusicianView modifyInstrument(String ensembleId, String musicianId, int role)
+	{
+		return bound(() ->
+		{
+			run(new ModifyMusicianInstrumentCommand(ensembleId, musicianId, role));
+			return getMusician(ensembleId, musicianId);
+		});
+	}
+	
+	public synchronized void deleteMusician(String ensembleId, String musicianId)
+	{
+		system.runBound(() -> run(new DeleteMusicianCommand(ensembleId, musicianId)));
+	}
+	
+	// Move musicians between ensembles as one change (one undo step) - they keep their instrument if the target
+	// has it, otherwise they get 'fallbackRole' (0 = refuse the transfer)
+	public synchronized void transferMusicians(String fromId, String toId, List<String> musicianIds, int fallbackRole)
+	{
+		system.runBound(() -> run(new TransferMusiciansCommand(fromId, toId, musicianIds, fallbackRole)));
+	}
+	
+	// Give every musician of the ensemble that matches 'filter' (see MusicianFilter) a new instrument - one undo step
+	public synchronized EnsembleView modifyInstruments(String ensembleId, String filter, int role)
+	{
+		return bound(() ->
+		{
+			run(new BulkModifyMusiciansCommand(ensembleId, filter, role));
+			return getSummary(ensembleId);
+		});
+	}
+	
+	// Delete every musician of the ensemble that matches 'filter' (see MusicianFilter) - one undo step
+	public synchronized EnsembleView deleteMusicians(String ensembleId, String filter)
+	{
+		return bound(() ->
+		{
+			run(new BulkDeleteMusiciansCommand(ensembleId, filter));
+			return getSummary(ensembleId);
+		});
+	}
+	
+	public synchronized EnsembleView renameEnsemble(String ensembleId, String name)
+	{
+		return bound(() ->
+		{
+			run(new ChangeEnsembleNameCommand(ensembleId, name));
+			return getEnsemble(ensembleId);
+		});
+	}
+	
+	// Undo the last change - returns its description, or null if there was nothing to undo
+	public synchronized String undo()
+	{
+		return bound(() -> MEMS.getHistoryManager().undo());
+	}
+	
+	// Redo the last undone change - returns its description, or null if there was nothing to redo
+	public synchronized String redo()
+	{
+		return bound(() -> MEMS.getHistoryManager().redo());
+	}
+	
+	// Undo up to 'steps' changes in one move - returns their descriptions, most recent first
+	public synchronized List<String> undo(int steps)
+	{
+		return bound(() -> MEMS.getHistoryManager().undo(steps));
+	}
+	
+	// Redo up to 'steps' changes - returns their descriptions, in the order they were redone
+	public synchronized List<String> redo(int steps)
+	{
+		return bound(() -> MEMS.getHistoryManager().redo(steps));
+	}
+	
+	// Name the current history position
+	public synchronized void setSavepoint(String name)
+	{
+		system.runBound(() -> MEMS.getHistoryManager().setSavepoint(name));
+	}
+	
+	// Undo or redo back to a savepoint - returns the steps taken (negative = undone, positive = redone)
+	public synchronized int rollbackTo(String name)
+	{
+		return bound(() -> MEMS.getHistoryManager().rollbackTo(name));
+	}
+	
+	// Ensemble with its musicians, or null if the ID does not exist
+	public synchronized EnsembleView getEnsemble(String ensembleId)
+	{
+		return bound(() ->
+		{
+			Ensemble e = MEMS.getEnsembles().get(ensembleId);
+			return (e == null) ? null : EnsembleView.of(e, MEMS.getFactoryRegistry(), true);
+		});
+	}
+	
+	// Ensemble with head counts only (no roster copy), or null if the ID does not exist
+	public synchronized EnsembleView getSummary(String ensembleId)
+	{
+		return bound(() ->
+		{
+			Ensemble e = MEMS.getEnsembles().get(ensembleId);
+			return (e == null) ? null : EnsembleView.of(e, MEMS.getFactoryRegistry(), false);
+		});
+	}
+	
+	// Ensemble as se shows it (TEXT) or as one JSON object, or null if the ID does not exist
+	// Repeated calls for an unchanged ensemble are answered from the RenderCache
+	public synchronized String render(String ensembleId, RenderCache.Format format)
+	{
+		return bound(() ->
+		{
+			Ensemble e = MEMS.getEnsembles().get(ensembleId);
+			return (e == null) ? null : MEMS.getRenderCache().render(e, format);
+		});
+	}
+	
+	// Musician in an ensemble, or null if it is not in that ensemble
+	public synchronized MusicianView getMusician(String ensembleId, String musicianId)
+	{
+		return bound(() ->
+		{
+			Ensemble e = MEMS.getEnsembles().get(ensembleId);
+			Musician m = (e == null) ? null : e.findMusician(musicianId);
+			if (m == null)
+			{
+				return null;
+			}
+			return MusicianView.of(m, MEMS.getFactoryRegistry().getMusicianFactory(e.getFactoryType()));
+		});
+	}
+	
+	// All ensembles in ID order
+	public synchronized List<EnsembleView> listEnsembles()
+	{
+		return bound(() ->
+		{
+			List<EnsembleView> views = new ArrayList<>();
+			for (Ensemble e : MEMS.getEnsembles().values())
+			{
+				views.add(EnsembleView.of(e, MEMS.getFactoryRegistry(), true));
+			}
+			return views;
+		});
+	}
+	
+	// Ensembles with IDs from 'from' to 'to' (both inclusive), in ID order
+	public synchronized List<EnsembleView> getEnsembleRange(String from, String to)
+	{
+		return bound(() ->
+		{
+			List<EnsembleView> views = new ArrayList<>();
+			for (Ensemble e : MEMS.getEnsembleRange(from, to))
+			{
+				views.add(EnsembleView.of(e, MEMS.getFactoryRegistry(), true));
+			}
+			return views;
+		});
+	}
+	
+	// Which ensemble holds a musician, or null if the ID is not in use
+	public synchronized String whereIs(String musicianId)
+	{
+		return bound(() -> MEMS.findMusicianOwner(musicianId));
+	}
+	
+	public synchronized String getCurrentEnsembleId() { return bound(() -> MEMS.getCurrentEnsembleId()); }
+	
+	// Descriptions of the undoable / redoable changes, most recent first
+	public synchronized List<String> getUndoHistory() { return bound(() -> MEMS.getHistoryManager().getUndoList()); }
+	public synchronized List<String> getRedoHistory() { return bound(() -> MEMS.getHistoryManager().getRedoList()); }
+	
+	// Be told about every change (runs on the calling thread, inside the engine lock)
+	public void addChangeListener(ChangeListener listener)
+	{
+		system.runBound(() -> MEMS.getChangeNotifier().addListener(listener));
+	}
+	
+	// Change-data-capture stream, for subscribers that should not slow the engine down
+	public ChangeEventRingBuffer getChangeEvents() { return bound(() -> MEMS.getChangeEvents()); }
+	
+	// Run with this engine's system bound, so the commands' static MEMS accessors reach it (nested calls are fine)
+	private <T> T bound(Supplier<T> work)
+	{
+		return system.callBound(work);
+	}
+	
+	// Execute a change through history, like the console does for undoable commands
+	// (callers create the command with the system bound too, as some constructors read it)
+	private void run(Command command)
+	{
+		system.runBound(() ->
+		{
+			if (MEMS.getReplicaFollower() != null)
+			{
+				throw new IllegalStateException("This is a read-only follower. Please make changes on the primary.");
+			}
+			MEMS.getHistoryManager().executeCommand(command);
+		});
+	}
+}
@@ -0,0 +1,35 @@
+/**
+ * MusicianView - read-only snapshot of a musician returned by MemsEngine
+ * Taken at the time of the call, so later changes to the ensemble do not show up in it
+ */
+public class MusicianView
+{
+	private final String id;
+	private final String name;
+	private final int role;
+	private final String roleName;   // e.g. "violinist" - depends on the ensemble type
+	
+	public MusicianView(String id, String name, int role, String roleName)
+	{
+		this.id = id;
+		this.name = name;
+		this.role = role;
+		this.roleName = roleName;
+	}
+	
+	// Snapshot of a musician, with the role name from the ensemble type's musician factory
+	static MusicianView of(Musician m, MusicianFactory musicianFactory)
+	{
+		return new MusicianView(m.getMID(), m.getName(), m.getRole(), musicianFactory.getRoleName(m.getRole()));
+	}
+	
+	public String getId() { return id; }
+	public String getName() { return name; }
+	public int getRole() { return role; }
+	public String getRoleName() { return roleName; }
+	
+	public String toString()
+	{
+		return id + ", " + name + ", " + roleName;
+	}
+}
@@ -0,0 +1,405 @@
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * ShardedEngine - spreads ensembles over several independent MEMS systems ("shards") so changes to
+ * different ensembles can run at the same time
+ *
+ * - an ensemble belongs to shard hash(ensembleId) mod N, and everything about it runs on that shard
+ * - each shard has its own maps, history, change listeners and one thread that runs its work in order,
+ *   so inside a shard there is still exactly one writer and the commands need no locking
+ * - callers block until their shard has done the work; callers working on different shards do not wait
+ *   for each other
+ * - musician IDs must stay unique across all shards, so an add first reserves the ID in a shared map
+ *   (one putIfAbsent) before it is queued on the shard
+ * - generated IDs come from shared sequences in blocks, with one IdAllocator per calling thread,
+ *   so threads creating musicians or ensembles do not share a counter
+ *
+ * History is per shard: undo(ensembleId) undoes the last change made on that ensemble's shard,
+ * which may belong to another ensemble of the same shard.
+ * An undo or redo that would bring back a musician whose ID another shard has taken in the meantime
+ * is taken back at once and refused, so an ID never appears twice.
+ *
+ * Shard systems never become MEMS's static instance (MEMS.forTenant) and are bound only to their
+ * own thread, so a MEMS console or other engines in the same program are not affected.
+ */
+public class ShardedEngine implements AutoCloseable
+{
+	private Shard[] shards;
+	private ConcurrentHashMap<String, String> musicianOwners = new ConcurrentHashMap<>();  // Musician ID -> ensemble ID
+	private Set<String> ensembleIds = ConcurrentHashMap.newKeySet();                       // IDs of all ensembles
+	private IdSequence musicianSequence = new IdSequence();
+	private IdSequence ensembleSequence = new IdSequence();
+	private ThreadLocal<IdAllocator> musicianIdAllocators = ThreadLocal.withInitial(() ->
+		new IdAllocator("M", musicianSequence, IdAllocator.DEFAULT_BLOCK_SIZE, musicianOwners::containsKey));
+	private ThreadLocal<IdAllocator> ensembleIdAllocators = ThreadLocal.withInitial(() ->
+		new IdAllocator("E", ensembleSequence, IdAllocator.DEFAULT_BLOCK_SIZE, ensembleIds::contains));
+	
+	// One MEMS with the thread that owns it
+	private static class Shard
+	{
+		MemsEngine engine;
+		ExecutorService executor;
+		List<String> takenElsewhere = new ArrayList<>();   // IDs the running undo/redo brought back that another shard holds
+		
+		Shard(int index, PrintStream log)
+		{
+			this.engine = new MemsEngine(MEMS.forTenant(log));
+			final MEMS system = engine.getSystem();
+			this.executor = Executors.newSingleThreadExecutor(task ->
+			{
+				Thread thread = new Thread(() ->
+				{
+					system.bindToCurrentThread();
+					task.run();
+				}, "mems-shard-" + index);
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+		
+		<T> Future<T> submit(Function<MemsEngine, T> work)
+		{
+			return executor.submit(() -> work.apply(engine));
+		}
+	}
+	
+	// Constructor - one shard per available processor, command messages are discarded
+	public ShardedEngine()
+	{
+		this(Runtime.getRuntime().availableProcessors());
+	}
+	
+	// Constructor - 'shardCount' shards, command messages are discarded
+	public ShardedEngine(int shardCount)
+	{
+		this(shardCount, OutputSink.discard());
+	}
+	
+	// Constructor - 'shardCount' shards, command messages of all shards go to 'log'
+	public ShardedEngine(int shardCount, PrintStream log)
+	{
+		if (shardCount < 1)
+		{
+			throw new IllegalArgumentException("Shard count must be at least 1");
+		}
+		this.shards = new Shard[shardCount];
+		for (int i = 0; i < shardCount; i++)
+		{
+			shards[i] = new Shard(i, log);
+			final Shard shard = shards[i];
+			
+			// Keep the reservations in step with what each shard really holds (also after undo/redo)
+			// Registered on the shard thread, where MEMS resolves to the shard's own system
+			final ChangeListener reservations = new ChangeListener()
+			{
+				public void ensembleCreated(Ensemble e)
+				{
+					ensembleIds.add(e.getEnsembleID());
+				}
+				
+				public void ensembleRemoved(String ensembleId)
+				{
+					ensembleIds.remove(ensembleId);
+				}
+				
+				// A musician coming back (undo/redo) may find its ID taken by another shard meanwhile - leave
+				// that reservation alone and note the clash, so the undo/redo can be taken back (see checked)
+				public void musicianAdded(Ensemble e, Musician m)
+				{
+					String owner = musicianOwners.putIfAbsent(m.getMID(), e.getEnsembleID());
+					if (owner == null || owner.equals(e.getEnsembleID()))
+					{
+						return;
+					}
+					if (shards[shardOf(owner)] == shard)
+					{
+						musicianOwners.put(m.getMID(), e.getEnsembleID());   // Moved inside this shard (e.g. a transfer)
+					}
+					else
+					{
+						shard.takenElsewhere.add(m.getMID());
+					}
+				}
+				
+				public void musicianRemoved(Ensemble e, Musician m)
+				{
+					musicianOwners.remove(m.getMID(), e.getEnsembleID());
+				}
+			};
+			await(shards[i].submit(engine ->
+			{
+				engine.addChangeListener(reservations);
+				return null;
+			}));
+		}
+	}
+	
+	public int getShardCount() { return shards.length; }
+	
+	// Which shard an ensemble belongs to
+	public int shardOf(String ensembleId)
+	{
+		return Math.floorMod(ensembleId.hashCode(), shards.length);
+	}
+	
+	// Create an ensemble on its shard - type is "o"/"orchestra" or "j"/"jazz"
+	public EnsembleView createEnsemble(String type, String ensembleId, String name)
+	{
+		String id = requireId(ensembleId, "Ensemble ID");
+		return call(id, engine -> engine.createEnsemble(type, id, name));
+	}
+	
+	// Create an ensemble with a generated ID
+	public EnsembleView createEnsemble(String type, String name)
+	{
+		return createEnsemble(type, ensembleIdAllocators.get().next(), name);
+	}
+	
+	// New ensemble with the type and roster of 'sourceId' - the source may be on another shard,
+	// so its roster is read there and the copies are made on the clone's shard under freshly reserved IDs
+	public EnsembleView cloneEnsemble(String sourceId, String ensembleId, String name)
+	{
+		EnsembleView source = getEnsemble(sourceId);
+		if (source == null)
+		{
+			throw new IllegalArgumentException("Ensemble ID '" + sourceId + "' does not exist!");
+		}
+		String id = IdAllocator.AUTO.equals(ensembleId) ? ensembleIdAllocators.get().next() : requireId(ensembleId, "Ensemble ID");
+		List<String> musicianIds = new ArrayList<>();
+		IdAllocator allocator = musicianIdAllocators.get();
+		for (int i = 0; i < source.getSize(); i++)
+		{
+			String mid = allocator.next();
+			if (musicianOwners.putIfAbsent(mid, id) != null)
+			{
+				i--;   // Taken since next() checked - try the next one
+				continue;
+			}
+			musicianIds.add(mid);
+		}
+		try
+		{
+			return call(id, engine -> engine.cloneEnsemble(source, id, name, musicianIds));
+		}
+		catch (RuntimeException e)
+		{
+			for (String mid : musicianIds)
+			{
+				musicianOwners.remove(mid, id);
+			}
+			throw e;
+		}
+	}
+	
+	// Add a musician with a generated ID - the view returned carries the ID
+	public MusicianView addMusician(String ensembleId, String name, int role)
+	{
+		return addMusician(ensembleId, musicianIdAllocators.get().next(), name, role);
+	}
+	
+	// Add a musician - the ID is reserved across all shards first, and released again if the add fails
+	public MusicianView addMusician(String ensembleId, String musicianId, String name, int role)
+	{
+		String id = requireId(ensembleId, "Ensemble ID");
+		String mid = requireId(musicianId, "Musician ID");
+		if (musicianOwners.putIfAbsent(mid, id) != null)
+		{
+			throw new IllegalArgumentException("Musician ID '" + mid + "' already exists! Please use a different ID.");
+		}
+		try
+		{
+			return call(id, engine -> engine.addMusician(id, mid, name, role));
+		}
+		catch (RuntimeException e)
+		{
+			musicianOwners.remove(mid, id);
+			throw e;
+		}
+	}
+	
+	public MusicianView modifyInstrument(String ensembleId, String musicianId, int role)
+	{
+		return call(ensembleId, engine -> engine.modifyInstrument(ensembleId, musicianId, role));
+	}
+	
+	public void deleteMusician(String ensembleId, String musicianId)
+	{
+		call(ensembleId, engine ->
+		{
+			engine.deleteMusician(ensembleId, musicianId);
+			return null;
+		});
+	}
+	
+	// Bulk changes stay inside one ensemble, so they run on its shard like any other change
+	public EnsembleView modifyInstruments(String ensembleId, String filter, int role)
+	{
+		return call(ensembleId, engine -> engine.modifyInstruments(ensembleId, filter, role));
+	}
+	
+	public EnsembleView deleteMusicians(String ensembleId, String filter)
+	{
+		return call(ensembleId, engine -> engine.deleteMusicians(ensembleId, filter));
+	}
+	
+	public EnsembleView renameEnsemble(String ensembleId, String name)
+	{
+		return call(ensembleId, engine -> engine.renameEnsemble(ensembleId, name));
+	}
+	
+	// Undo the last change on this ensemble's shard - returns its description, or null if there was nothing to undo
+	// Refused (and nothing changes) if it would bring back a musician whose ID another shard uses now
+	public String undo(String ensembleId)
+	{
+		return call(ensembleId, engine -> checked(shards[shardOf(ensembleId)], "undo", engine.undo(), engine::redo));
+	}
+	
+	// Redo the last undone change on this ensemble's shard - returns its description, or null if there was nothing to redo
+	// Refused the same way as undo
+	public String redo(String ensembleId)
+	{
+		return call(ensembleId, engine -> checked(shards[shardOf(ensembleId)], "redo", engine.redo(), engine::undo));
+	}
+	
+	// Ensemble with its musicians, or null if the ID does not exist
+	public EnsembleView getEnsemble(String ensembleId)
+	{
+		return call(ensembleId, engine -> engine.getEnsemble(ensembleId));
+	}
+	
+	// Ensemble with head counts only, or null if the ID does not exist
+	public EnsembleView getSummary(String ensembleId)
+	{
+		return call(ensembleId, engine -> engine.getSummary(ensembleId));
+	}
+	
+	// Ensemble as text or JSON, or null if the ID does not exist (cached by the owning shard)
+	public String render(String ensembleId, RenderCache.Format format)
+	{
+		return call(ensembleId, engine -> engine.render(ensembleId, format));
+	}
+	
+	// Musician in an ensemble, or null if it is not in that ensemble
+	public MusicianView getMusician(String ensembleId, String musicianId)
+	{
+		return call(ensembleId, engine -> engine.getMusician(ensembleId, musicianId));
+	}
+	
+	// Which ensemble holds a musician ID, or null - answered from the reservations, no shard is asked
+	public String getMusicianOwner(String musicianId)
+	{
+		return musicianOwners.get(musicianId);
+	}
+	
+	// All ensembles in ID order - every shard lists its own at the same time, then the lists are merged
+	public List<EnsembleView> listEnsembles()
+	{
+		List<Future<List<EnsembleView>>> parts = new ArrayList<>();
+		for (Shard shard : shards)
+		{
+			parts.add(shard.submit(engine -> engine.listEnsembles()));
+		}
+		List<EnsembleView> views = new ArrayList<>();
+		for (Future<List<EnsembleView>> part : parts)
+		{
+			views.addAll(await(part));
+		}
+		views.sort(Comparator.comparing(EnsembleView::getId));
+		return views;
+	}
+	
+	// Stop the shard threads after the work already queued
+	public void close()
+	{
+		for (Shard shard : shards)
+		{
+			shard.executor.shutdown();
+		}
+		try
+		{
+			for (Shard shard : shards)
+			{
+				shard.executor.awaitTermination(1, TimeUnit.MINUTES);
+			}
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+	}
+	
+	// Run work on the ensemble's shard and wait for the result
+	private <T> T call(String ensembleId, Function<MemsEngine, T> work)
+	{
+		if (ensembleId == null)
+		{
+			throw new IllegalArgumentException("Ensemble ID cannot be empty");
+		}
+		return await(shards[shardOf(ensembleId)].submit(work));
+	}
+	
+	// Result of an undo/redo on the shard - or, if it brought back an ID that another shard holds,
+	// take it back with 'revert' and refuse (runs on the shard thread)
+	private String checked(Shard shard, String what, String description, Supplier<String> revert)
+	{
+		if (shard.takenElsewhere.isEmpty())
+		{
+			return description;
+		}
+		String mid = shard.takenElsewhere.get(0);
+		String owner = musicianOwners.get(mid);
+		revert.get();
+		shard.takenElsewhere.clear();
+		throw new IllegalStateException("Cannot " + what + " '" + description + "': musician ID '" + mid
+			+ "' is now used in ensemble " + owner);
+	}
+	
+	// Wait for shard work, passing on the command's own exception (e.g. "Ensemble ID ... does not exist!")
+	private static <T> T await(Future<T> future)
+	{
+		try
+		{
+			return future.get();
+		}
+		catch (ExecutionException e)
+		{
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException)
+			{
+				throw (RuntimeException) cause;
+			}
+			if (cause instanceof Error)
+			{
+				throw (Error) cause;
+			}
+			throw new IllegalStateException(cause);
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting for a shard", e);
+		}
+	}
+	
+	// IDs are routed and reserved trimmed, the same way the commands store them
+	private static String requireId(String id, String what)
+	{
+		if (id == null || id.trim().isEmpty())
+		{
+			throw new IllegalArgumentException(what + " cannot be empty");
+		}
+		return id.trim();
+	}
+}
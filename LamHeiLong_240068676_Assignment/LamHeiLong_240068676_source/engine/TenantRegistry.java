@@ -0,0 +1,182 @@
+import java.io.PrintStream;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * TenantRegistry - many isolated MEMS datasets ("tenants", e.g. one per music school) in one program
+ *
+ * - each tenant has its own MEMS (MEMS.forTenant): ensembles, musicians, history, caretakers, journal,
+ *   listeners and ID sequences. Tenant systems never become MEMS's static instance, so they can't see each other
+ * - a tenant's work runs on a shared pool of worker threads, with the tenant's system bound to the worker
+ *   only while it runs (MEMS.runBound)
+ * - each tenant has its own queue and runs one task at a time, so inside a tenant there is still exactly one
+ *   writer. Different tenants run in parallel on different workers
+ * - a worker runs at most BATCH tasks of one tenant before moving to the next, so a busy tenant can't starve the rest
+ * - tenants are created on first use and cost little until they hold data
+ *
+ * Work is given as a function of the tenant's MemsEngine, e.g.
+ *   tenants.call("school-42", engine -> engine.addMusician("E1", "Ann Lee", 1));
+ * Keep the engine inside the function - its methods only reach the tenant's data on a worker.
+ */
+public class TenantRegistry implements AutoCloseable
+{
+	private static final int BATCH = 32;   // Tasks of one tenant per turn on a worker
+	
+	// One tenant: its engine and the work waiting for it
+	private static class Tenant
+	{
+		MemsEngine engine;
+		ConcurrentLinkedQueue<Runnable> queue = new ConcurrentLinkedQueue<>();
+		AtomicBoolean scheduled = new AtomicBoolean();   // A drain is queued or running on a worker
+		
+		Tenant(MemsEngine engine)
+		{
+			this.engine = engine;
+		}
+	}
+	
+	private ConcurrentHashMap<String, Tenant> tenants = new ConcurrentHashMap<>();
+	private ExecutorService workers;
+	private PrintStream log;
+	
+	// Constructor - one worker per available processor, command messages are discarded
+	public TenantRegistry()
+	{
+		this(Runtime.getRuntime().availableProcessors());
+	}
+	
+	// Constructor - 'workerCount' workers, command messages are discarded
+	public TenantRegistry(int workerCount)
+	{
+		this(workerCount, OutputSink.discard());
+	}
+	
+	// Constructor - 'workerCount' workers, command messages of all tenants go to 'log'
+	public TenantRegistry(int workerCount, PrintStream log)
+	{
+		if (workerCount < 1)
+		{
+			throw new IllegalArgumentException("Worker count must be at least 1");
+		}
+		this.log = log;
+		AtomicInteger next = new AtomicInteger();
+		this.workers = Executors.newFixedThreadPool(workerCount, task ->
+		{
+			Thread thread = new Thread(task, "mems-tenant-worker-" + next.getAndIncrement());
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+	
+	// Run work for a tenant and wait for the result (exceptions are thrown as they are)
+	public <T> T call(String tenantId, Function<MemsEngine, T> work)
+	{
+		return await(submit(tenantId, work));
+	}
+	
+	// Queue work for a tenant - it runs after the tenant's earlier work
+	public <T> Future<T> submit(String tenantId, Function<MemsEngine, T> work)
+	{
+		if (tenantId == null || tenantId.trim().isEmpty())
+		{
+			throw new IllegalArgumentException("Tenant ID cannot be empty");
+		}
+		Tenant tenant = tenants.computeIfAbsent(tenantId.trim(), id -> new Tenant(new MemsEngine(MEMS.forTenant(log))));
+		FutureTask<T> task = new FutureTask<>(() -> work.apply(tenant.engine));
+		tenant.queue.add(task);
+		schedule(tenant);
+		return task;
+	}
+	
+	public boolean exists(String tenantId) { return tenants.containsKey(tenantId); }
+	public Set<String> getTenantIds() { return tenants.keySet(); }
+	public int size() { return tenants.size(); }
+	
+	// Forget a tenant and all its data (work already queued for it still runs)
+	public boolean remove(String tenantId)
+	{
+		return tenants.remove(tenantId) != null;
+	}
+	
+	// Stop the workers after the work already queued
+	public void close()
+	{
+		workers.shutdown();
+		try
+		{
+			workers.awaitTermination(1, TimeUnit.MINUTES);
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+	}
+	
+	// Give the tenant a turn on a worker, unless it already has one
+	private void schedule(Tenant tenant)
+	{
+		if (tenant.scheduled.compareAndSet(false, true))
+		{
+			workers.execute(() -> drain(tenant));
+		}
+	}
+	
+	// Run up to BATCH of the tenant's tasks with its system bound, then let the next tenant have the worker
+	private void drain(Tenant tenant)
+	{
+		tenant.engine.getSystem().runBound(() ->
+		{
+			for (int i = 0; i < BATCH; i++)
+			{
+				Runnable task = tenant.queue.poll();
+				if (task == null)
+				{
+					break;
+				}
+				task.run();
+			}
+		});
+		tenant.scheduled.set(false);
+		// Work queued while we were finishing (or left over) gets another turn
+		if (!tenant.queue.isEmpty())
+		{
+			schedule(tenant);
+		}
+	}
+	
+	private static <T> T await(Future<T> future)
+	{
+		try
+		{
+			return future.get();
+		}
+		catch (ExecutionException e)
+		{
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException)
+			{
+				throw (RuntimeException) cause;
+			}
+			if (cause instanceof Error)
+			{
+				throw (Error) cause;
+			}
+			throw new IllegalStateException(cause);
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting for a tenant", e);
+		}
+	}
+}
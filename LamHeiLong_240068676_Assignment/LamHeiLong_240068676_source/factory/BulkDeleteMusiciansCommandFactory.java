@@ -0,0 +1,11 @@
+/**
+ * BulkDeleteMusiciansCommandFactory - creates BulkDeleteMusiciansCommand objects
+ * Part of the Factory pattern implementation
+ */
+public class BulkDeleteMusiciansCommandFactory implements CommandFactory
+{
+	public Command createCommand()
+	{
+		return new BulkDeleteMusiciansCommand();
+	}
+}
@@ -0,0 +1,11 @@
+/**
+ * BulkModifyMusiciansCommandFactory - creates BulkModifyMusiciansCommand objects
+ * Part of the Factory pattern implementation
+ */
+public class BulkModifyMusiciansCommandFactory implements CommandFactory
+{
+	public Command createCommand()
+	{
+		return new BulkModifyMusiciansCommand();
+	}
+}
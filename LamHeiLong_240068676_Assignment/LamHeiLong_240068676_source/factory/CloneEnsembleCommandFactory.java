@@ -0,0 +1,11 @@
+/**
+ * CloneEnsembleCommandFactory - creates CloneEnsembleCommand objects
+ * Part of the Factory pattern implementation
+ */
+public class CloneEnsembleCommandFactory implements CommandFactory
+{
+	public Command createCommand()
+	{
+		return new CloneEnsembleCommand();
+	}
+}
@@ -0,0 +1,10 @@
+/**
+ * ListEnsembleRangeCommandFactory - creates ListEnsembleRangeCommand objects
+ */
+public class ListEnsembleRangeCommandFactory implements CommandFactory
+{
+	public Command createCommand()
+	{
+		return new ListEnsembleRangeCommand();
+	}
+}
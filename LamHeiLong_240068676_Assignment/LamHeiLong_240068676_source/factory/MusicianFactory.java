@@ -11,5 +11,6 @@ public interface MusicianFactory
 	public Musician createMusician(String mID, String name, int role);  // Create musician with validation
 	public boolean isValidRole(int role);                                // Check if role is valid
 	public String getRoleName(int role);                                 // Get role name for display
+	public int findRole(String roleName);                                // Role number for a name (0 = none)
 	public String getRolePrompt();                                       // Get prompt for role selection (OCP)
 }
@@ -40,6 +40,19 @@ public class OrchestraMusicianFactory implements MusicianFactory
 		}
 	}
 	
+	// Find the role number for a role name (0 if this ensemble type has no such role)
+	public int findRole(String roleName)
+	{
+		for (int role = 1; isValidRole(role); role++)
+		{
+			if (getRoleName(role).equals(roleName))
+			{
+				return role;
+			}
+		}
+		return 0;
+	}
+	
 	// Get the role selection prompt (OCP compliant)
 	public String getRolePrompt()
 	{
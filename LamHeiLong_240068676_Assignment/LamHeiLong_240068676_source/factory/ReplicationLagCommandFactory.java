@@ -0,0 +1,10 @@
+/**
+ * ReplicationLagCommandFactory - creates ReplicationLagCommand objects
+ */
+public class ReplicationLagCommandFactory implements CommandFactory
+{
+	public Command createCommand()
+	{
+		return new ReplicationLagCommand();
+	}
+}
@@ -0,0 +1,11 @@
+/**
+ * RollbackCommandFactory - creates RollbackCommand objects
+ * Part of the Factory pattern implementation
+ */
+public class RollbackCommandFactory implements CommandFactory
+{
+	public Command createCommand()
+	{
+		return new RollbackCommand();
+	}
+}
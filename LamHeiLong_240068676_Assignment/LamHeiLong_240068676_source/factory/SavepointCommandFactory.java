@@ -0,0 +1,11 @@
+/**
+ * SavepointCommandFactory - creates SavepointCommand objects
+ * Part of the Factory pattern implementation
+ */
+public class SavepointCommandFactory implements CommandFactory
+{
+	public Command createCommand()
+	{
+		return new SavepointCommand();
+	}
+}
@@ -0,0 +1,10 @@
+/**
+ * SummaryCommandFactory - creates SummaryCommand objects
+ */
+public class SummaryCommandFactory implements CommandFactory
+{
+	public Command createCommand()
+	{
+		return new SummaryCommand();
+	}
+}
@@ -0,0 +1,11 @@
+/**
+ * TransferMusiciansCommandFactory - creates TransferMusiciansCommand objects
+ * Part of the Factory pattern implementation
+ */
+public class TransferMusiciansCommandFactory implements CommandFactory
+{
+	public Command createCommand()
+	{
+		return new TransferMusiciansCommand();
+	}
+}
@@ -0,0 +1,11 @@
+/**
+ * WhereIsCommandFactory - creates WhereIsCommand objects
+ * Part of the Factory pattern implementation
+ */
+public class WhereIsCommandFactory implements CommandFactory
+{
+	public Command createCommand()
+	{
+		return new WhereIsCommand();
+	}
+}
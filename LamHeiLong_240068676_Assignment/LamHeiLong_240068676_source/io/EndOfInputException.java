@@ -0,0 +1,14 @@
+/**
+ * EndOfInputException - thrown by LineReader when the input has no more lines
+ * MEMS treats it like the exit command, so a piped command file simply ends the session
+ * (the retry loop must not catch it, or it would ask for the same input forever).
+ */
+public class EndOfInputException extends RuntimeException
+{
+	private static final long serialVersionUID = 1L;
+	
+	public EndOfInputException()
+	{
+		super("End of input");
+	}
+}
@@ -0,0 +1,248 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * LineReader - fast line and field reader for command input (replaces java.util.Scanner)
+ * Reads a ReadableByteChannel through one reusable direct buffer and finds line ends and commas
+ * on the raw bytes, so the only objects made per line are the Strings the caller asks for.
+ *
+ * Input is UTF-8. Lines end with \n (a \r before it is dropped). Trimming follows String.trim()
+ * (drops bytes <= space) and commas are ASCII, so both work on bytes without breaking multi-byte characters.
+ *
+ * Throws EndOfInputException when there are no more lines.
+ * An optional callback runs before every read from the channel (MEMS flushes its output there,
+ * so prompts are visible before the program waits for input).
+ */
+public class LineReader
+{
+	private static final int BUFFER_SIZE = 64 * 1024;
+	
+	private ReadableByteChannel channel;   // Where the input comes from
+	private ByteBuffer buffer;             // Reused direct read buffer (kept in read mode between calls)
+	private byte[] line;                   // Bytes of the current line (grows for long lines)
+	private int lineLength;                // Number of bytes in 'line'
+	private boolean endOfInput;            // The channel has no more bytes
+	private Runnable beforeRead;           // Called before reading from the channel (null = nothing)
+	
+	// Constructor - the buffer starts empty, the first call fills it
+	public LineReader(ReadableByteChannel channel)
+	{
+		this.channel = channel;
+		this.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+		this.buffer.flip();
+		this.line = new byte[256];
+	}
+	
+	// Next line without its line ending (like Scanner.nextLine())
+	public String nextLine()
+	{
+		readLine();
+		return new String(line, 0, lineLength, StandardCharsets.UTF_8);
+	}
+	
+	// Next line with leading and trailing whitespace removed (same as nextLine().trim(), one String less)
+	public String nextTrimmedLine()
+	{
+		readLine();
+		int start = skipSpace(0, lineLength);
+		int end = trimEnd(start, lineLength);
+		return new String(line, start, end - start, StandardCharsets.UTF_8);
+	}
+	
+	// Next line split at commas into at most 'limit' trimmed fields (same as trim().split(",", limit) with each part trimmed)
+	public String[] nextFields(int limit)
+	{
+		readLine();
+		int start = skipSpace(0, lineLength);
+		int end = trimEnd(start, lineLength);
+		
+		int count = 1;
+		for (int i = start; i < end && count < limit; i++)
+		{
+			if (line[i] == ',')
+			{
+				count++;
+			}
+		}
+		
+		String[] fields = new String[count];
+		int fieldStart = start;
+		for (int f = 0; f < count; f++)
+		{
+			int fieldEnd = end;
+			if (f < count - 1)
+			{
+				fieldEnd = fieldStart;
+				while (line[fieldEnd] != ',')
+				{
+					fieldEnd++;
+				}
+			}
+			int s = skipSpace(fieldStart, fieldEnd);
+			fields[f] = new String(line, s, trimEnd(s, fieldEnd) - s, StandardCharsets.UTF_8);
+			fieldStart = fieldEnd + 1;
+		}
+		return fields;
+	}
+	
+	// Next line as a whole number (surrounding whitespace allowed); NumberFormatException if it is not one
+	public int nextInt()
+	{
+		readLine();
+		int start = skipSpace(0, lineLength);
+		int end = trimEnd(start, lineLength);
+		if (start == end)
+		{
+			throw new NumberFormatException("For input string: \"\"");
+		}
+		boolean negative = line[start] == '-';
+		int i = (negative || line[start] == '+') ? start + 1 : start;
+		if (i == end)
+		{
+			throw new NumberFormatException("For input string: \"" + new String(line, start, end - start, StandardCharsets.UTF_8) + "\"");
+		}
+		long value = 0;
+		for (; i < end; i++)
+		{
+			int digit = line[i] - '0';
+			if (digit < 0 || digit > 9 || value > Integer.MAX_VALUE + 1L)
+			{
+				throw new NumberFormatException("For input string: \"" + new String(line, start, end - start, StandardCharsets.UTF_8) + "\"");
+			}
+			value = value * 10 + digit;
+		}
+		value = negative ? -value : value;
+		if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE)
+		{
+			throw new NumberFormatException("For input string: \"" + new String(line, start, end - start, StandardCharsets.UTF_8) + "\"");
+		}
+		return (int) value;
+	}
+	
+	// Run 'callback' before each read from the channel, i.e. whenever the buffered input is used up
+	public void setBeforeRead(Runnable callback)
+	{
+		this.beforeRead = callback;
+	}
+	
+	// Is there another line? (may block until input arrives, like Scanner.hasNextLine())
+	public boolean hasNextLine()
+	{
+		return buffer.hasRemaining() || fill();
+	}
+	
+	public void close()
+	{
+		try
+		{
+			channel.close();
+		}
+		catch (IOException e)
+		{
+			throw new UncheckedIOException(e);
+		}
+	}
+	
+	// Copy the next line into 'line' - scans the buffer for \n and refills it as needed
+	private void readLine()
+	{
+		if (!hasNextLine())
+		{
+			throw new EndOfInputException();
+		}
+		lineLength = 0;
+		while (true)
+		{
+			int start = buffer.position();
+			int limit = buffer.limit();
+			int i = start;
+			while (i < limit && buffer.get(i) != '\n')
+			{
+				i++;
+			}
+			append(start, i - start);
+			if (i < limit)
+			{
+				buffer.position(i + 1);   // Skip the \n
+				break;
+			}
+			buffer.position(limit);
+			if (!fill())
+			{
+				break;   // Last line without a line ending
+			}
+		}
+		if (lineLength > 0 && line[lineLength - 1] == '\r')
+		{
+			lineLength--;
+		}
+	}
+	
+	// Copy 'length' bytes from the buffer at 'start' to the end of 'line'
+	private void append(int start, int length)
+	{
+		if (lineLength + length > line.length)
+		{
+			byte[] bigger = new byte[Math.max(line.length * 2, lineLength + length)];
+			System.arraycopy(line, 0, bigger, 0, lineLength);
+			line = bigger;
+		}
+		buffer.get(start, line, lineLength, length);
+		lineLength += length;
+	}
+	
+	// Read more bytes into the (empty) buffer; false at end of input
+	private boolean fill()
+	{
+		if (endOfInput)
+		{
+			return false;
+		}
+		if (beforeRead != null)
+		{
+			beforeRead.run();
+		}
+		buffer.clear();
+		try
+		{
+			int n;
+			do
+			{
+				n = channel.read(buffer);
+			} while (n == 0);
+			buffer.flip();
+			if (n < 0)
+			{
+				endOfInput = true;
+				return false;
+			}
+			return true;
+		}
+		catch (IOException e)
+		{
+			buffer.flip();
+			throw new UncheckedIOException("Cannot read input", e);
+		}
+	}
+	
+	private int skipSpace(int from, int to)
+	{
+		while (from < to && (line[from] & 0xff) <= ' ')
+		{
+			from++;
+		}
+		return from;
+	}
+	
+	private int trimEnd(int from, int to)
+	{
+		while (to > from && (line[to - 1] & 0xff) <= ' ')
+		{
+			to--;
+		}
+		return to;
+	}
+}
@@ -0,0 +1,78 @@
+import java.io.BufferedOutputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+/**
+ * OutputSink - where MEMS prints to (MEMS.getOut() is one of these on the console)
+ * A PrintStream, so commands keep calling print/println as before.
+ *
+ * - buffered(): output collects in a large buffer and goes out in one write when the buffer is full
+ *   or when flush() is called - MEMS flushes before it waits for input and when it exits,
+ *   instead of System.out's flush after every println
+ * - discard(): drops everything without encoding it (MemsEngine, ShardedEngine and benchmarks)
+ */
+public class OutputSink extends PrintStream
+{
+	public static final int BUFFER_SIZE = 64 * 1024;
+	
+	private final boolean discarding;   // True for the null sink
+	
+	private OutputSink(OutputStream target, boolean discarding)
+	{
+		super(target, false);
+		this.discarding = discarding;
+	}
+	
+	// Sink that writes to 'target' through a BUFFER_SIZE buffer, flushed only on request or when full
+	public static OutputSink buffered(OutputStream target)
+	{
+		return new OutputSink(new BufferedOutputStream(target, BUFFER_SIZE), false);
+	}
+	
+	// Sink that throws all output away
+	public static OutputSink discard()
+	{
+		return new OutputSink(OutputStream.nullOutputStream(), true);
+	}
+	
+	// The null sink skips the string encoding PrintStream would do before discarding the bytes
+	public void print(String s)
+	{
+		if (!discarding)
+		{
+			super.print(s);
+		}
+	}
+	
+	public void println(String s)
+	{
+		if (!discarding)
+		{
+			super.println(s);
+		}
+	}
+	
+	public void println()
+	{
+		if (!discarding)
+		{
+			super.println();
+		}
+	}
+	
+	public void write(int b)
+	{
+		if (!discarding)
+		{
+			super.write(b);
+		}
+	}
+	
+	public void write(byte[] buf, int off, int len)
+	{
+		if (!discarding)
+		{
+			super.write(buf, off, len);
+		}
+	}
+}
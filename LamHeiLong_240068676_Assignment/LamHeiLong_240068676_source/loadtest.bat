@@ -0,0 +1,15 @@
+@echo off
+REM Load test script - compiles MEMS and runs the synthetic workload generator
+REM Example: loadtest.bat --ensembles 5000 --musicians 40 --seconds 30 --mix write --zipf 1.1
+
+echo Compiling MEMS...
+javac -d bin domain/*.java factory/*.java command/*.java registry/*.java Memento/*.java io/*.java engine/*.java tools/*.java MEMS.java
+
+if %ERRORLEVEL% EQU 0 (
+    echo.
+    java -cp bin LoadGenerator %*
+) else (
+    echo.
+    echo Compilation failed!
+    pause
+)
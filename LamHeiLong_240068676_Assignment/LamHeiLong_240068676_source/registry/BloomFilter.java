@@ -0,0 +1,110 @@
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.BitSet;
+
+/**
+ * BloomFilter - compact set of strings that answers "definitely not present" or "maybe present"
+ * Used by LazyEnsembleRegistry so most "does this ID exist?" checks never touch the disk
+ *
+ * False positives are possible (then the caller checks the disk), false negatives are not.
+ * Uses double hashing: probe i = h1 + i * h2
+ */
+public class BloomFilter
+{
+	private BitSet bits;       // The filter bits
+	private int numBits;       // Size of the bit array
+	private int numHashes;     // Number of probes per value
+	private int capacity;      // Number of values the filter was sized for
+	private int count;         // Number of values added so far
+	
+	// Constructor - sizes the filter for the expected number of values at about 1% false positives
+	public BloomFilter(int expectedValues)
+	{
+		this.capacity = Math.max(expectedValues, 1024);
+		this.numBits = (int) Math.ceil(capacity * 9.6);   // -n * ln(0.01) / ln(2)^2
+		this.numHashes = 7;                               // (m / n) * ln(2)
+		this.bits = new BitSet(numBits);
+		this.count = 0;
+	}
+	
+	// Add a value to the filter
+	public void add(String value)
+	{
+		int h1 = value.hashCode();
+		int h2 = secondHash(value);
+		for (int i = 0; i < numHashes; i++)
+		{
+			bits.set(index(h1 + i * h2));
+		}
+		count++;
+	}
+	
+	// False means the value was never added; true means it probably was
+	public boolean mightContain(String value)
+	{
+		int h1 = value.hashCode();
+		int h2 = secondHash(value);
+		for (int i = 0; i < numHashes; i++)
+		{
+			if (!bits.get(index(h1 + i * h2)))
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	// True once more values were added than the filter was sized for (false positives climb fast)
+	public boolean isOverloaded()
+	{
+		return count > capacity;
+	}
+	
+	public int getCount() { return count; }
+	
+	// Save the filter so the next start does not have to rebuild it
+	public void writeTo(DataOutputStream out) throws IOException
+	{
+		out.writeInt(capacity);
+		out.writeInt(count);
+		long[] words = bits.toLongArray();
+		out.writeInt(words.length);
+		for (long w : words)
+		{
+			out.writeLong(w);
+		}
+	}
+	
+	// Load a filter saved by writeTo()
+	public static BloomFilter readFrom(DataInputStream in) throws IOException
+	{
+		BloomFilter filter = new BloomFilter(in.readInt());
+		filter.count = in.readInt();
+		long[] words = new long[in.readInt()];
+		for (int i = 0; i < words.length; i++)
+		{
+			words[i] = in.readLong();
+		}
+		filter.bits = BitSet.valueOf(words);
+		return filter;
+	}
+	
+	// Map a hash to a bit position
+	private int index(int hash)
+	{
+		return (hash & 0x7fffffff) % numBits;
+	}
+	
+	// Independent second hash (FNV-1a), forced odd so the probes spread over the whole array
+	private static int secondHash(String value)
+	{
+		int h = 0x811c9dc5;
+		for (int i = 0; i < value.length(); i++)
+		{
+			h ^= value.charAt(i);
+			h *= 0x01000193;
+		}
+		return h | 1;
+	}
+}
@@ -0,0 +1,91 @@
+/**
+ * ChangeEvent - one structured change, as seen by change-data-capture subscribers
+ * 
+ * Events live in the slots of a ChangeEventRingBuffer and are reused once every subscriber
+ * has moved past them, so a handler must copy anything it wants to keep before it returns.
+ * Fields that don't apply to a type are null / 0.
+ */
+public class ChangeEvent
+{
+	// What happened
+	public enum Type
+	{
+		ENSEMBLE_CREATED, ENSEMBLE_REMOVED, ENSEMBLE_RENAMED,
+		MUSICIAN_ADDED, MUSICIAN_REMOVED, ROLE_CHANGED,
+		COMMAND_EXECUTED, COMMAND_UNDONE, COMMAND_REDONE
+	}
+	
+	private long sequence;          // Position in the stream (starts at 0, no gaps)
+	private long timestamp;         // System.currentTimeMillis() when published
+	private Type type;
+	private String ensembleId;
+	private String ensembleName;
+	private String ensembleType;    // FactoryRegistry key, e.g. "orchestra"
+	private String musicianId;
+	private String musicianName;
+	private int role;               // New / current role
+	private int oldRole;            // Previous role (ROLE_CHANGED only)
+	private Command command;        // History events only; description is built on demand
+	
+	// Reset the slot for a new event (called by the ring buffer, allocates nothing)
+	void reset(long sequence, Type type)
+	{
+		this.sequence = sequence;
+		this.timestamp = System.currentTimeMillis();
+		this.type = type;
+		this.ensembleId = null;
+		this.ensembleName = null;
+		this.ensembleType = null;
+		this.musicianId = null;
+		this.musicianName = null;
+		this.role = 0;
+		this.oldRole = 0;
+		this.command = null;
+	}
+	
+	// Setters used by the publisher - they only copy references
+	void setEnsemble(Ensemble e)
+	{
+		this.ensembleId = e.getEnsembleID();
+		this.ensembleName = e.getName();
+		this.ensembleType = e.getFactoryType();
+	}
+	
+	void setEnsembleId(String ensembleId) { this.ensembleId = ensembleId; }
+	
+	void setMusician(Musician m)
+	{
+		this.musicianId = m.getMID();
+		this.musicianName = m.getName();
+		this.role = m.getRole();
+	}
+	
+	void setOldRole(int oldRole) { this.oldRole = oldRole; }
+	void setCommand(Command command) { this.command = command; }
+	
+	// Getters for subscribers
+	public long getSequence() { return sequence; }
+	public long getTimestamp() { return timestamp; }
+	public Type getType() { return type; }
+	public String getEnsembleId() { return ensembleId; }
+	public String getEnsembleName() { return ensembleName; }
+	public String getEnsembleType() { return ensembleType; }
+	public String getMusicianId() { return musicianId; }
+	public String getMusicianName() { return musicianName; }
+	public int getRole() { return role; }
+	public int getOldRole() { return oldRole; }
+	
+	// Description of the command for history events (null otherwise)
+	public String getCommandDescription()
+	{
+		return (command == null) ? null : command.getDescription();
+	}
+	
+	public String toString()
+	{
+		return sequence + " " + type + " ensemble=" + ensembleId
+				+ (musicianId == null ? "" : " musician=" + musicianId + " role=" + role)
+				+ (type == Type.ROLE_CHANGED ? " oldRole=" + oldRole : "")
+				+ (command == null ? "" : " command=" + command.getDescription());
+	}
+}
@@ -0,0 +1,9 @@
+/**
+ * ChangeEventHandler - callback for a change-data-capture subscriber
+ * Called on the subscriber's own thread, in stream order, once per event.
+ * The event object is reused afterwards - copy what you need.
+ */
+public interface ChangeEventHandler
+{
+	public void onEvent(ChangeEvent event);
+}
@@ -0,0 +1,83 @@
+/**
+ * ChangeEventPublisher - turns ChangeNotifier callbacks into ChangeEvents on a ring buffer
+ * This is the change-data-capture feed for downstream systems (e.g. rehearsal scheduler, payroll)
+ * 
+ * Runs on the command thread; each callback fills one preallocated slot and publishes it,
+ * so commands pay a few field writes per change and nothing is allocated.
+ */
+public class ChangeEventPublisher implements ChangeListener
+{
+	private ChangeEventRingBuffer ring;
+	
+	public ChangeEventPublisher(ChangeEventRingBuffer ring)
+	{
+		this.ring = ring;
+	}
+	
+	public void ensembleCreated(Ensemble e)
+	{
+		ChangeEvent event = ring.claim(ChangeEvent.Type.ENSEMBLE_CREATED);
+		event.setEnsemble(e);
+		ring.publish();
+	}
+	
+	public void ensembleRemoved(String ensembleId)
+	{
+		ChangeEvent event = ring.claim(ChangeEvent.Type.ENSEMBLE_REMOVED);
+		event.setEnsembleId(ensembleId);
+		ring.publish();
+	}
+	
+	public void ensembleRenamed(Ensemble e, String oldName)
+	{
+		ChangeEvent event = ring.claim(ChangeEvent.Type.ENSEMBLE_RENAMED);
+		event.setEnsemble(e);
+		ring.publish();
+	}
+	
+	public void musicianAdded(Ensemble e, Musician m)
+	{
+		ChangeEvent event = ring.claim(ChangeEvent.Type.MUSICIAN_ADDED);
+		event.setEnsemble(e);
+		event.setMusician(m);
+		ring.publish();
+	}
+	
+	public void musicianRemoved(Ensemble e, Musician m)
+	{
+		ChangeEvent event = ring.claim(ChangeEvent.Type.MUSICIAN_REMOVED);
+		event.setEnsemble(e);
+		event.setMusician(m);
+		ring.publish();
+	}
+	
+	public void roleChanged(Ensemble e, Musician m, int oldRole)
+	{
+		ChangeEvent event = ring.claim(ChangeEvent.Type.ROLE_CHANGED);
+		event.setEnsemble(e);
+		event.setMusician(m);
+		event.setOldRole(oldRole);
+		ring.publish();
+	}
+	
+	public void commandExecuted(Command command)
+	{
+		ChangeEvent event = ring.claim(ChangeEvent.Type.COMMAND_EXECUTED);
+		event.setCommand(command);
+		ring.publish();
+	}
+	
+	public void commandUndone(Command command)
+	{
+		ChangeEvent event = ring.claim(ChangeEvent.Type.COMMAND_UNDONE);
+		event.setCommand(command);
+		ring.publish();
+	}
+	
+	public void commandRedone(Command command)
+	{
+		ChangeEvent event = ring.claim(ChangeEvent.Type.COMMAND_REDONE);
+		event.setCommand(command);
+		ring.publish();
+	}
+}
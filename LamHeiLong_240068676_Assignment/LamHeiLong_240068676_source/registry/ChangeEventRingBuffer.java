@@ -0,0 +1,171 @@
+import java.io.PrintStream;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * ChangeEventRingBuffer - preallocated ring of ChangeEvents with any number of independent subscribers
+ * 
+ * - single writer: events are published from the thread that runs the commands
+ * - every subscriber has its own thread and its own position, so a slow one never holds back the others
+ *   until the ring is full; then the writer waits for the slowest one (nothing is ever dropped)
+ * - no locks and no allocation on publish: slots are filled in place and made visible by moving the cursor
+ */
+public class ChangeEventRingBuffer
+{
+	private static final long WAIT_NANOS = 50_000;    // Back-off while waiting (writer or subscriber)
+	
+	private final ChangeEvent[] slots;                // The ring, allocated once
+	private final int mask;                           // slots.length - 1 (length is a power of two)
+	private final AtomicLong cursor = new AtomicLong(-1);   // Last published sequence
+	private long claimed = -1;                        // Last claimed sequence (writer thread only)
+	private long cachedMinimum = -1;                  // Slowest subscriber position seen last time (writer only)
+	private volatile Subscription[] subscriptions = new Subscription[0];   // Replaced on (un)subscribe
+	private final PrintStream log;                    // Where subscriber failures are reported (the owning MEMS's output)
+	
+	// Constructor - the size is rounded up to a power of two
+	public ChangeEventRingBuffer(int size, PrintStream log)
+	{
+		this.log = log;
+		int capacity = Integer.highestOneBit(Math.max(size, 2) - 1) << 1;
+		this.slots = new ChangeEvent[capacity];
+		for (int i = 0; i < capacity; i++)
+		{
+			slots[i] = new ChangeEvent();
+		}
+		this.mask = capacity - 1;
+	}
+	
+	// Claim the next slot and reset it for an event of the given type
+	// Must be followed by publish(); waits if the slowest subscriber is a whole ring behind
+	public ChangeEvent claim(ChangeEvent.Type type)
+	{
+		long next = claimed + 1;
+		long wrapPoint = next - slots.length;
+		if (wrapPoint > cachedMinimum)
+		{
+			long minimum;
+			while (wrapPoint > (minimum = minimumPosition(next - 1)))
+			{
+				LockSupport.parkNanos(WAIT_NANOS);
+			}
+			cachedMinimum = minimum;
+		}
+		claimed = next;
+		ChangeEvent event = slots[(int) next & mask];
+		event.reset(next, type);
+		return event;
+	}
+	
+	// Make the claimed event visible to subscribers
+	public void publish()
+	{
+		cursor.set(claimed);
+	}
+	
+	// Sequence of the last published event (-1 if none)
+	public long getCursor() { return cursor.get(); }
+	
+	public int getCapacity() { return slots.length; }
+	
+	// Start a subscriber that sees every event published from now on
+	public synchronized Subscription subscribe(String name, ChangeEventHandler handler)
+	{
+		Subscription subscription = new Subscription(name, handler, cursor.get());
+		Subscription[] current = subscriptions;
+		Subscription[] bigger = new Subscription[current.length + 1];
+		System.arraycopy(current, 0, bigger, 0, current.length);
+		bigger[current.length] = subscription;
+		subscriptions = bigger;
+		subscription.thread.start();
+		return subscription;
+	}
+	
+	// Stop gating the writer on a subscriber that was closed
+	private synchronized void unsubscribe(Subscription subscription)
+	{
+		Subscription[] current = subscriptions;
+		int count = 0;
+		Subscription[] smaller = new Subscription[Math.max(current.length - 1, 0)];
+		for (Subscription s : current)
+		{
+			if (s != subscription && count < smaller.length)
+			{
+				smaller[count++] = s;
+			}
+		}
+		subscriptions = smaller;
+	}
+	
+	// Position of the slowest subscriber (or 'fallback' if there are none)
+	private long minimumPosition(long fallback)
+	{
+		long minimum = fallback;
+		for (Subscription s : subscriptions)
+		{
+			minimum = Math.min(minimum, s.position.get());
+		}
+		return minimum;
+	}
+	
+	/**
+	 * Subscription - one consumer with its own thread and read position
+	 */
+	public class Subscription implements Runnable
+	{
+		private final String name;
+		private final ChangeEventHandler handler;
+		private final AtomicLong position;     // Last sequence this subscriber has finished with
+		private final Thread thread;
+		private volatile boolean running = true;
+		
+		private Subscription(String name, ChangeEventHandler handler, long start)
+		{
+			this.name = name;
+			this.handler = handler;
+			this.position = new AtomicLong(start);
+			this.thread = new Thread(this, "cdc-" + name);
+			this.thread.setDaemon(true);
+		}
+		
+		// Consume everything published, then back off briefly when caught up
+		public void run()
+		{
+			long next = position.get() + 1;
+			while (running)
+			{
+				long available = cursor.get();
+				if (next > available)
+				{
+					LockSupport.parkNanos(WAIT_NANOS);
+					continue;
+				}
+				for (; next <= available; next++)
+				{
+					try
+					{
+						handler.onEvent(slots[(int) next & mask]);
+					}
+					catch (RuntimeException e)
+					{
+						log.println("Change subscriber " + name + " failed on event " + next + ": " + e.getMessage());
+						log.flush();
+					}
+				}
+				position.set(available);
+			}
+		}
+		
+		// Stop this subscriber; the writer no longer waits for it
+		public void close()
+		{
+			running = false;
+			unsubscribe(this);
+		}
+		
+		public String getName() { return name; }
+		public long getPosition() { return position.get(); }
+		
+		// Events published but not yet handled by this subscriber
+		public long getBacklog() { return cursor.get() - position.get(); }
+	}
+}
@@ -0,0 +1,24 @@
+/**
+ * ChangeListener - gets told about every change to ensembles and about history moves
+ * Part of the Observer pattern: listeners register with the ChangeNotifier kept by MEMS
+ * 
+ * Called synchronously on the thread that made the change, after the change is done.
+ * Undo/redo of a memento is reported as the individual differences it made (added, removed, role, name).
+ * An undo reports its history move (commandUndone) as soon as it is taken; what its mementos restored follows
+ * once per ensemble when the undo is over - for a multi-step undo or rollback, the net difference of all steps.
+ * All methods have empty defaults, so a listener only overrides what it needs.
+ */
+public interface ChangeListener
+{
+	public default void ensembleCreated(Ensemble e) {}                          // New ensemble added to the registry
+	public default void ensembleRemoved(String ensembleId) {}                   // Ensemble taken out of the registry
+	public default void ensembleRenamed(Ensemble e, String oldName) {}          // Name changed (new name is in e)
+	public default void musicianAdded(Ensemble e, Musician m) {}                // Musician joined e
+	public default void musicianRemoved(Ensemble e, Musician m) {}              // Musician left e
+	public default void roleChanged(Ensemble e, Musician m, int oldRole) {}     // Musician in e changed instrument
+	
+	public default void commandExecuted(Command command) {}                     // Command added to the undo list
+	public default void commandUndone(Command command) {}                       // Command moved to the redo list
+	public default void commandRedone(Command command) {}                       // Command moved back to the undo list
+	public default void historyCoalesced(int entries, Command merged) {}        // Newest 'entries' undo entries became 'merged' (null = dropped)
+}
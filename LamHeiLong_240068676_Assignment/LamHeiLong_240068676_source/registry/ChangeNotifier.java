@@ -0,0 +1,66 @@
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * ChangeNotifier - passes every change on to the registered ChangeListeners
+ * Part of the Observer pattern; commands, EnsembleCaretaker and HistoryManager report here
+ * 
+ * With no listeners registered each call is just an empty loop, so it costs next to nothing.
+ */
+public class ChangeNotifier implements ChangeListener
+{
+	private List<ChangeListener> listeners = new CopyOnWriteArrayList<>();   // Safe to add while notifying
+	
+	public void addListener(ChangeListener listener) { listeners.add(listener); }
+	public void removeListener(ChangeListener listener) { listeners.remove(listener); }
+	
+	public void ensembleCreated(Ensemble e)
+	{
+		for (ChangeListener l : listeners) l.ensembleCreated(e);
+	}
+	
+	public void ensembleRemoved(String ensembleId)
+	{
+		for (ChangeListener l : listeners) l.ensembleRemoved(ensembleId);
+	}
+	
+	public void ensembleRenamed(Ensemble e, String oldName)
+	{
+		for (ChangeListener l : listeners) l.ensembleRenamed(e, oldName);
+	}
+	
+	public void musicianAdded(Ensemble e, Musician m)
+	{
+		for (ChangeListener l : listeners) l.musicianAdded(e, m);
+	}
+	
+	public void musicianRemoved(Ensemble e, Musician m)
+	{
+		for (ChangeListener l : listeners) l.musicianRemoved(e, m);
+	}
+	
+	public void roleChanged(Ensemble e, Musician m, int oldRole)
+	{
+		for (ChangeListener l : listeners) l.roleChanged(e, m, oldRole);
+	}
+	
+	public void commandExecuted(Command command)
+	{
+		for (ChangeListener l : listeners) l.commandExecuted(command);
+	}
+	
+	public void commandUndone(Command command)
+	{
+		for (ChangeListener l : listeners) l.commandUndone(command);
+	}
+	
+	public void commandRedone(Command command)
+	{
+		for (ChangeListener l : listeners) l.commandRedone(command);
+	}
+	
+	public void historyCoalesced(int entries, Command merged)
+	{
+		for (ChangeListener l : listeners) l.historyCoalesced(entries, merged);
+	}
+}
@@ -0,0 +1,132 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * EnsembleFileStore - keeps one file per ensemble in a local directory (the default EnsembleStore)
+ * Used by LazyEnsembleRegistry to load rosters on demand and write them back on eviction
+ *
+ * File name: <URL-encoded ID>.<hash of ID>.ens
+ * The hash keeps IDs that only differ by case apart on case-insensitive file systems.
+ *
+ * File content (DataOutputStream): EnsembleStore.writeEnsemble's record
+ */
+public class EnsembleFileStore implements EnsembleStore
+{
+	private static final String SUFFIX = ".ens";
+	
+	private File directory;                  // Where the ensemble files live
+	private FactoryRegistry factoryRegistry; // Rebuilds the right Ensemble subclass on load
+	
+	// Constructor - creates the directory if it is not there yet
+	public EnsembleFileStore(File directory, FactoryRegistry factoryRegistry)
+	{
+		if (!directory.isDirectory() && !directory.mkdirs())
+		{
+			throw new IllegalArgumentException("Cannot create ensemble store directory: " + directory);
+		}
+		this.directory = directory;
+		this.factoryRegistry = factoryRegistry;
+	}
+	
+	public File getDirectory() { return directory; }
+	
+	// Does a file exist for this ensemble? (one stat, no read)
+	public boolean exists(String ensembleId)
+	{
+		return fileFor(ensembleId).isFile();
+	}
+	
+	// List the IDs of all stored ensembles from the file names (no file is opened)
+	public List<String> listIds()
+	{
+		List<String> ids = new ArrayList<>();
+		String[] names = directory.list();
+		if (names == null)
+		{
+			return ids;
+		}
+		for (String name : names)
+		{
+			if (!name.endsWith(SUFFIX))
+			{
+				continue;
+			}
+			String base = name.substring(0, name.length() - SUFFIX.length());
+			int hashDot = base.lastIndexOf('.');
+			if (hashDot < 0)
+			{
+				continue;
+			}
+			ids.add(URLDecoder.decode(base.substring(0, hashDot), StandardCharsets.UTF_8));
+		}
+		return ids;
+	}
+	
+	// Load an ensemble, or return null if it is not stored
+	public Ensemble load(String ensembleId)
+	{
+		File file = fileFor(ensembleId);
+		if (!file.isFile())
+		{
+			return null;
+		}
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file))))
+		{
+			return EnsembleStore.readEnsemble(in, factoryRegistry);
+		}
+		catch (IOException e)
+		{
+			throw new UncheckedIOException("Cannot read ensemble " + ensembleId, e);
+		}
+	}
+	
+	// Write an ensemble to its file - writes a temp file first so a crash never leaves half a roster
+	public void save(Ensemble ensemble)
+	{
+		File file = fileFor(ensemble.getEnsembleID());
+		File temp = new File(directory, file.getName() + ".tmp");
+		try
+		{
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp))))
+			{
+				EnsembleStore.writeEnsemble(out, ensemble);
+			}
+			Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+		catch (IOException e)
+		{
+			throw new UncheckedIOException("Cannot write ensemble " + ensemble.getEnsembleID(), e);
+		}
+	}
+	
+	// Delete an ensemble's file (no-op if it was never written)
+	public void delete(String ensembleId)
+	{
+		File file = fileFor(ensembleId);
+		if (file.exists() && !file.delete())
+		{
+			throw new UncheckedIOException(new IOException("Cannot delete ensemble file " + file));
+		}
+	}
+	
+	// Build the file name for an ensemble ID
+	private File fileFor(String ensembleId)
+	{
+		String encoded = URLEncoder.encode(ensembleId, StandardCharsets.UTF_8);
+		return new File(directory, encoded + "." + Integer.toHexString(ensembleId.hashCode()) + SUFFIX);
+	}
+}
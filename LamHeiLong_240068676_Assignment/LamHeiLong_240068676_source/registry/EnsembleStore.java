@@ -0,0 +1,65 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * EnsembleStore - storage backend behind LazyEnsembleRegistry (the storage SPI)
+ * The registry keeps the hot ensembles and their musicians in memory; a store only has to keep
+ * whole ensembles by ID. Chosen at startup (--backend), see MEMS.
+ *
+ * Implementations:
+ * - EnsembleFileStore: one file per ensemble in a directory
+ * - LogStructuredEnsembleStore: one append-only log with an in-memory offset index and batched writes
+ * - MemoryEnsembleStore: serialized ensembles in memory (no persistence)
+ *
+ * Stores are used by one thread at a time (the registry is synchronized).
+ */
+public interface EnsembleStore
+{
+	public File getDirectory();                  // Where the store keeps its files (null = nowhere)
+	public List<String> listIds();               // IDs of all stored ensembles (no roster is read)
+	public boolean exists(String ensembleId);    // Is this ensemble stored?
+	public Ensemble load(String ensembleId);     // Read an ensemble, or null if it is not stored
+	public void save(Ensemble ensemble);         // Write (or replace) an ensemble
+	public void delete(String ensembleId);       // Remove an ensemble (no-op if not stored)
+	
+	// Make every save so far durable (stores that write straight away have nothing to do)
+	public default void flush() {}
+	
+	// Record layout shared by the stores: type key, ID, name, musician count, then (ID, name, role) per musician
+	public static void writeEnsemble(DataOutput out, Ensemble ensemble) throws IOException
+	{
+		out.writeUTF(ensemble.getFactoryType());
+		out.writeUTF(ensemble.getEnsembleID());
+		out.writeUTF(ensemble.getName());
+		out.writeInt(ensemble.getSize());
+		Iterator<Musician> it = ensemble.getMusicians();
+		while (it.hasNext())
+		{
+			Musician m = it.next();
+			out.writeUTF(m.getMID());
+			out.writeUTF(m.getName());
+			out.writeInt(m.getRole());
+		}
+	}
+	
+	public static Ensemble readEnsemble(DataInput in, FactoryRegistry factoryRegistry) throws IOException
+	{
+		String type = in.readUTF();
+		String id = in.readUTF();
+		Ensemble ensemble = factoryRegistry.getEnsembleFactory(type).createEnsemble(id);
+		ensemble.setName(in.readUTF());
+		int count = in.readInt();
+		for (int i = 0; i < count; i++)
+		{
+			Musician m = new Musician(in.readUTF());
+			m.setName(in.readUTF());
+			m.setRole(in.readInt());
+			ensemble.addMusician(m);
+		}
+		return ensemble;
+	}
+}
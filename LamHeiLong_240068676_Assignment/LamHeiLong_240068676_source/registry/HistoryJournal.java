@@ -0,0 +1,728 @@
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * HistoryJournal - records every history move with the changes it made, for "as of" queries
+ * Registered as a ChangeListener: the changes reported between two history moves (execute, undo, redo)
+ * become the deltas of one journal entry. Entry n is "history index n"; index 0 is the program start.
+ *
+ * Every K entries a checkpoint keeps the state of all journaled ensembles, built from the checkpoint before
+ * by replaying the K entries in between. A query for index i starts from checkpoint i / K and replays at
+ * most K - 1 entries, so it costs O(K) no matter how long the history is. It works on copies of its own
+ * and returns detached copies, so neither live state nor the journal can be changed through a result.
+ *
+ * Checkpoints share unchanged ensembles with the previous checkpoint, so one costs O(ensembles changed).
+ * Only the newest 'keptCheckpoints' checkpoints are kept: when one more is taken, the oldest goes, with the
+ * entries up to the next one. Ensembles with no change left in the kept entries are then dropped from the
+ * journal too (they look the same at every kept index as they do now), so memory follows the recent
+ * activity and not the length of the session or the size of the archive.
+ *
+ * Changes taken back by an undo are heard from EnsembleCaretaker one by one, as each memento is taken back,
+ * and the caretaker's summary report of the whole move is skipped. A multi-step undo restores inside one
+ * batch, and this keeps an entry per step, each with only the changes of its own command.
+ *
+ * Ensembles that existed before they were first journaled (e.g. loaded from a file store) get a
+ * baseline: their state just before the first change, worked out by reversing that change.
+ * Ensembles the journal has no changes of are not kept at all: they look as they do now (see isJournaled).
+ *
+ * For "history where ..." (HistoryQuery) each entry is also indexed by the ensembles and musicians its
+ * changes touched, its command type and its kind: sorted lists of history indexes per key. A query walks
+ * the shortest list that applies, within the index range of its times, and checks the others by binary search.
+ */
+public class HistoryJournal implements ChangeListener
+{
+	private enum DeltaType { BASE, CREATE, DROP, RENAME, ADD, REMOVE, ROLE }
+	
+	private static final DateTimeFormatter DISPLAY_TIME = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+	
+	// One change inside an entry
+	private static class Delta
+	{
+		DeltaType type;
+		String ensembleId;
+		Ensemble snapshot;     // BASE / CREATE: full copy of the ensemble
+		String musicianId;     // ADD / REMOVE / ROLE
+		String name;           // RENAME: new ensemble name; ADD: musician name
+		int role;              // ADD / ROLE: (new) role
+		
+		Delta(DeltaType type, String ensembleId)
+		{
+			this.type = type;
+			this.ensembleId = ensembleId;
+		}
+	}
+	
+	// One history move with the changes it made
+	private static class Entry
+	{
+		long time;             // When the move finished (ms, never goes backwards)
+		String kind;           // "execute", "undo" or "redo"
+		String description;    // Description of the command that moved
+		List<Delta> deltas;
+		
+		Entry(long time, String kind, String description, List<Delta> deltas)
+		{
+			this.time = time;
+			this.kind = kind;
+			this.description = description;
+			this.deltas = deltas;
+		}
+	}
+	
+	// History indexes of the entries with one key, ascending (a growing int array, no boxing)
+	private static class Postings
+	{
+		int[] indexes = new int[4];
+		int size;
+		
+		void add(int index)
+		{
+			if (size > 0 && indexes[size - 1] == index)
+			{
+				return;   // Several changes of one entry
+			}
+			if (size == indexes.length)
+			{
+				indexes = Arrays.copyOf(indexes, size * 2);
+			}
+			indexes[size++] = index;
+		}
+		
+		// Position of the first index >= 'index'
+		int lowerBound(int index)
+		{
+			int low = 0;
+			int high = size;
+			while (low < high)
+			{
+				int mid = (low + high) >>> 1;
+				if (indexes[mid] < index)
+				{
+					low = mid + 1;
+				}
+				else
+				{
+					high = mid;
+				}
+			}
+			return low;
+		}
+		
+		boolean contains(int index)
+		{
+			int p = lowerBound(index);
+			return p < size && indexes[p] == index;
+		}
+		
+		// Forget the indexes up to 'index' (they were dropped from the journal)
+		void dropUpTo(int index)
+		{
+			int p = lowerBound(index + 1);
+			System.arraycopy(indexes, p, indexes, 0, size - p);
+			size -= p;
+		}
+	}
+	
+	private static final Postings NONE = new Postings();
+	
+	private FactoryRegistry factoryRegistry;       // Builds detached ensemble copies
+	private int checkpointInterval;                // K - entries between checkpoints
+	private int keptCheckpoints;                   // Most checkpoints kept (older history is dropped with them)
+	private int firstCheckpoint;                   // Number of checkpoints.get(0) - history before it is dropped
+	private long droppedTime;                      // Time of the last dropped entry (0 = none dropped)
+	private List<Entry> entries;                   // entries.get(n - 1 - oldest()) is history index n
+	private List<Map<String, Ensemble>> checkpoints; // checkpoints.get(c - firstCheckpoint) = state at index c * K (never changed)
+	private List<Delta> pending;                   // Changes since the last history move
+	private Map<String, Ensemble> baselines;       // Pre-existing ensemble -> state before its first journaled change
+	private Map<String, Integer> firstSeen;        // Journaled ensemble -> first history index that mentions it
+	private Map<String, Postings> byEnsemble;      // Ensemble ID -> entries whose changes touched it
+	private Map<String, Postings> byMusician;      // Musician ID -> entries that added, removed or re-assigned it
+	private Map<Class<?>, Postings> byType;        // Command class -> its entries
+	private Map<String, Postings> byKind;           // "execute" / "undo" / "redo" -> entries
+	
+	// Constructor - a checkpoint every 'checkpointInterval' entries, the newest 'keptCheckpoints' of them kept
+	public HistoryJournal(FactoryRegistry factoryRegistry, int checkpointInterval, int keptCheckpoints)
+	{
+		if (keptCheckpoints < 1)
+		{
+			throw new IllegalArgumentException("At least one checkpoint must be kept");
+		}
+		this.factoryRegistry = factoryRegistry;
+		this.keptCheckpoints = keptCheckpoints;
+		this.entries = new ArrayList<>();
+		this.checkpoints = new ArrayList<>();
+		this.checkpoints.add(new HashMap<>());   // Index 0 - nothing journaled yet
+		this.pending = new ArrayList<>();
+		this.baselines = new HashMap<>();
+		this.firstSeen = new HashMap<>();
+		this.byEnsemble = new HashMap<>();
+		this.byMusician = new HashMap<>();
+		this.byType = new HashMap<>();
+		this.byKind = new HashMap<>();
+		setCheckpointInterval(checkpointInterval);
+	}
+	
+	// Change K - only before the first entry, since existing checkpoints depend on it
+	public synchronized void setCheckpointInterval(int checkpointInterval)
+	{
+		if (checkpointInterval < 1)
+		{
+			throw new IllegalArgumentException("Checkpoint interval must be at least 1");
+		}
+		if (size() > 0)
+		{
+			throw new IllegalStateException("Checkpoint interval can only be set before the first change");
+		}
+		this.checkpointInterval = checkpointInterval;
+	}
+	
+	public synchronized int getCheckpointInterval() { return checkpointInterval; }
+	
+	// Latest history index (number of history moves so far)
+	public synchronized int size() { return oldest() + entries.size(); }
+	
+	// Oldest history index that can still be queried (0 until the first checkpoint is dropped)
+	public synchronized int oldest() { return firstCheckpoint * checkpointInterval; }
+	
+	// Has the journal got changes of this ensemble? If not, it looked at every kept index as it does now
+	public synchronized boolean isJournaled(String ensembleId) { return firstSeen.containsKey(ensembleId); }
+	
+	// Time of a history index (index 0 has none, returns 0)
+	public synchronized long getTime(int index)
+	{
+		checkIndex(index);
+		if (index == 0)
+		{
+			return 0;
+		}
+		return (index == oldest()) ? droppedTime : entry(index).time;
+	}
+	
+	// "history index 5 (2026-10-19 14:30:15)" - for headings of "as of" views
+	public synchronized String describeIndex(int index)
+	{
+		if (index == 0)
+		{
+			return "history index 0 (program start)";
+		}
+		LocalDateTime time = LocalDateTime.ofInstant(Instant.ofEpochMilli(getTime(index)), ZoneId.systemDefault());
+		return "history index " + index + " (" + time.format(DISPLAY_TIME) + ")";
+	}
+	
+	public synchronized void ensembleCreated(Ensemble e)
+	{
+		Delta d = new Delta(DeltaType.CREATE, e.getEnsembleID());
+		d.snapshot = copyOf(e);
+		record(d);
+	}
+	
+	public synchronized void ensembleRemoved(String ensembleId)
+	{
+		record(new Delta(DeltaType.DROP, ensembleId));
+	}
+	
+	public synchronized void ensembleRenamed(Ensemble e, String oldName)
+	{
+		if (EnsembleCaretaker.isReporting())
+		{
+			return;   // Heard change by change already
+		}
+		if (!firstSeen.containsKey(e.getEnsembleID()))
+		{
+			Ensemble before = copyOf(e);
+			before.setName(oldName);
+			recordBaseline(before);
+		}
+		Delta d = new Delta(DeltaType.RENAME, e.getEnsembleID());
+		d.name = e.getName();
+		record(d);
+	}
+	
+	public synchronized void musicianAdded(Ensemble e, Musician m)
+	{
+		if (EnsembleCaretaker.isReporting())
+		{
+			return;
+		}
+		if (!firstSeen.containsKey(e.getEnsembleID()))
+		{
+			Ensemble before = copyOf(e);
+			before.dropMusician(before.findMusician(m.getMID()));
+			recordBaseline(before);
+		}
+		Delta d = new Delta(DeltaType.ADD, e.getEnsembleID());
+		d.musicianId = m.getMID();
+		d.name = m.getName();
+		d.role = m.getRole();
+		record(d);
+	}
+	
+	public synchronized void musicianRemoved(Ensemble e, Musician m)
+	{
+		if (EnsembleCaretaker.isReporting())
+		{
+			return;
+		}
+		if (!firstSeen.containsKey(e.getEnsembleID()))
+		{
+			Ensemble before = copyOf(e);
+			before.addMusician(copyOf(m, m.getRole()));
+			recordBaseline(before);
+		}
+		Delta d = new Delta(DeltaType.REMOVE, e.getEnsembleID());
+		d.musicianId = m.getMID();
+		record(d);
+	}
+	
+	public synchronized void roleChanged(Ensemble e, Musician m, int oldRole)
+	{
+		if (EnsembleCaretaker.isReporting())
+		{
+			return;
+		}
+		if (!firstSeen.containsKey(e.getEnsembleID()))
+		{
+			Ensemble before = copyOf(e);
+			before.changeMusicianRole(before.findMusician(m.getMID()), oldRole);
+			recordBaseline(before);
+		}
+		Delta d = new Delta(DeltaType.ROLE, e.getEnsembleID());
+		d.musicianId = m.getMID();
+		d.role = m.getRole();
+		record(d);
+	}
+	
+	public synchronized void commandExecuted(Command command) { closeEntry("execute", command); }
+	public synchronized void commandUndone(Command command) { closeEntry("undo", command); }
+	public synchronized void commandRedone(Command command) { closeEntry("redo", command); }
+	
+	// One ensemble as it was at a history index, or null if it did not exist then (a detached copy)
+	public synchronized Ensemble ensembleAsOf(String ensembleId, int index)
+	{
+		return stateAsOf(ensembleId, index).get(ensembleId);
+	}
+	
+	// The journaled ensembles as they were at a history index, in ID order (detached copies)
+	// Live ensembles that are not journaled (isJournaled) looked then as they do now, and are not included,
+	// so a query never has to load the whole archive
+	public synchronized Map<String, Ensemble> ensemblesAsOf(int index)
+	{
+		return stateAsOf(null, index);
+	}
+	
+	// Parse "as of <index>" / "as of <time>" into a history index
+	// A time (ISO date, date-time or instant) means the last index at or before it; a date means the end of that day
+	public synchronized int parseAsOf(String arguments)
+	{
+		String text = arguments.trim();
+		if (!text.regionMatches(true, 0, "as of ", 0, 6))
+		{
+			throw new IllegalArgumentException("Expected 'as of <history index>' or 'as of <time>'");
+		}
+		text = text.substring(6).trim();
+		if (text.matches("\\d+"))
+		{
+			int index = Integer.parseInt(text);
+			checkIndex(index);
+			return index;
+		}
+		long millis = parseTime(text);
+		if (oldest() > 0 && millis < droppedTime)
+		{
+			throw new IllegalArgumentException("'" + text + "' is older than the history the journal keeps (from " + describeIndex(oldest()) + ")");
+		}
+		return indexAt(millis);
+	}
+	
+	// Last history index with a time at or before 'millis' (binary search - times never go backwards)
+	// Times before the kept entries give the oldest kept index
+	public synchronized int indexAt(long millis)
+	{
+		int low = oldest();
+		int high = size();
+		while (low < high)
+		{
+			int mid = (low + high + 1) >>> 1;
+			if (entry(mid).time <= millis)
+			{
+				low = mid;
+			}
+			else
+			{
+				high = mid - 1;
+			}
+		}
+		return low;
+	}
+	
+	private void record(Delta d)
+	{
+		if (!firstSeen.containsKey(d.ensembleId))
+		{
+			firstSeen.put(d.ensembleId, size() + 1);
+		}
+		pending.add(d);
+	}
+	
+	// Remember how a pre-existing ensemble looked before its first journaled change
+	private void recordBaseline(Ensemble before)
+	{
+		String id = before.getEnsembleID();
+		if (!baselines.containsKey(id))
+		{
+			baselines.put(id, before);
+		}
+		Delta d = new Delta(DeltaType.BASE, id);
+		d.snapshot = before;
+		record(d);
+	}
+	
+	// Turn the pending changes into an entry, and take a checkpoint every K entries
+	private void closeEntry(String kind, Command command)
+	{
+		long now = Math.max(System.currentTimeMillis(), entries.isEmpty() ? droppedTime : entries.get(entries.size() - 1).time);
+		// The entry gets an exact-size copy; 'pending' is reused, so it never has to grow again
+		List<Delta> deltas = List.copyOf(pending);
+		pending.clear();
+		entries.add(new Entry(now, kind, command.getDescription(), deltas));
+		int n = size();
+		index(n, kind, command, deltas);
+		
+		if (n % checkpointInterval == 0)
+		{
+			// The previous checkpoint with the last K entries replayed - only the ensembles they changed are copied
+			Map<String, Ensemble> checkpoint = new HashMap<>(checkpoints.get(checkpoints.size() - 1));
+			replay(checkpoint, new HashSet<>(), n - checkpointInterval + 1, n, null);
+			checkpoints.add(checkpoint);
+			if (checkpoints.size() > keptCheckpoints)
+			{
+				dropOldest();
+			}
+		}
+	}
+	
+	// Forget the oldest checkpoint and the entries up to the next one
+	private void dropOldest()
+	{
+		checkpoints.remove(0);
+		firstCheckpoint++;
+		droppedTime = entries.get(checkpointInterval - 1).time;
+		entries.subList(0, checkpointInterval).clear();
+		int oldest = oldest();
+		
+		// Posting lists keep only the indexes that can still be found
+		dropPostings(byEnsemble, oldest);
+		dropPostings(byMusician, oldest);
+		dropPostings(byType, oldest);
+		dropPostings(byKind, oldest);
+		
+		// An ensemble with no change in the kept entries looks the same at every kept index as it does now,
+		// so the journal lets go of it (a later change records a new baseline)
+		Set<String> active = byEnsemble.keySet();
+		for (Map<String, Ensemble> checkpoint : checkpoints)
+		{
+			checkpoint.keySet().retainAll(active);
+		}
+		firstSeen.keySet().retainAll(active);
+		baselines.keySet().removeIf(id -> !firstSeen.containsKey(id) || firstSeen.get(id) <= oldest);
+	}
+	
+	private static <K> void dropPostings(Map<K, Postings> lists, int oldest)
+	{
+		Iterator<Postings> it = lists.values().iterator();
+		while (it.hasNext())
+		{
+			Postings postings = it.next();
+			postings.dropUpTo(oldest);
+			if (postings.size == 0)
+			{
+				it.remove();
+			}
+		}
+	}
+	
+	// Add entry n to the posting lists of its keys (a BASE is how an ensemble looked before, not a change)
+	private void index(int n, String kind, Command command, List<Delta> deltas)
+	{
+		for (int i = 0; i < deltas.size(); i++)
+		{
+			Delta d = deltas.get(i);
+			if (d.type == DeltaType.BASE)
+			{
+				continue;
+			}
+			byEnsemble.computeIfAbsent(d.ensembleId, k -> new Postings()).add(n);
+			if (d.musicianId != null)
+			{
+				byMusician.computeIfAbsent(d.musicianId, k -> new Postings()).add(n);
+			}
+		}
+		byType.computeIfAbsent(command.getClass(), k -> new Postings()).add(n);
+		byKind.computeIfAbsent(kind, k -> new Postings()).add(n);
+	}
+	
+	// History indexes of the entries matching a query, oldest first
+	public synchronized List<Integer> find(HistoryQuery query)
+	{
+		int from = (query.getSince() == Long.MIN_VALUE) ? oldest() + 1 : indexAt(query.getSince() - 1) + 1;
+		int to = (query.getUntil() == Long.MAX_VALUE) ? size() : indexAt(query.getUntil());
+		
+		List<Postings> lists = new ArrayList<>();
+		if (query.getEnsembleId() != null) lists.add(byEnsemble.getOrDefault(query.getEnsembleId(), NONE));
+		if (query.getMusicianId() != null) lists.add(byMusician.getOrDefault(query.getMusicianId(), NONE));
+		if (query.getType() != null) lists.add(byType.getOrDefault(query.getType(), NONE));
+		if (query.getKind() != null) lists.add(byKind.getOrDefault(query.getKind(), NONE));
+		
+		List<Integer> found = new ArrayList<>();
+		if (lists.isEmpty())
+		{
+			// Times only - every entry in the range
+			for (int n = from; n <= to; n++)
+			{
+				found.add(n);
+			}
+			return found;
+		}
+		lists.sort((a, b) -> Integer.compare(a.size, b.size));
+		Postings shortest = lists.get(0);
+		for (int p = shortest.lowerBound(from); p < shortest.size && shortest.indexes[p] <= to; p++)
+		{
+			int n = shortest.indexes[p];
+			boolean all = true;
+			for (int i = 1; i < lists.size() && all; i++)
+			{
+				all = lists.get(i).contains(n);
+			}
+			if (all)
+			{
+				found.add(n);
+			}
+		}
+		return found;
+	}
+	
+	// "#12  2026-10-19 14:30:15  undo     Add musician, M1, Ann, violinist" - one line of "history where"
+	public synchronized String describeEntry(int index)
+	{
+		checkIndex(index);
+		if (index == 0)
+		{
+			return "#0  program start";
+		}
+		if (index == oldest())
+		{
+			return "#" + index + "  (older entries are no longer kept)";
+		}
+		Entry entry = entry(index);
+		LocalDateTime time = LocalDateTime.ofInstant(Instant.ofEpochMilli(entry.time), ZoneId.systemDefault());
+		return String.format("#%d  %s  %-7s  %s", index, time.format(DISPLAY_TIME), entry.kind, entry.description);
+	}
+	
+	// Rebuild the state at 'index' as detached copies - one ensemble (from live state if it is not journaled),
+	// or all journaled ones when ensembleId is null
+	private Map<String, Ensemble> stateAsOf(String ensembleId, int index)
+	{
+		checkIndex(index);
+		int c = index / checkpointInterval;
+		Map<String, Ensemble> state = new TreeMap<>();
+		Map<String, Ensemble> checkpoint = checkpoints.get(c - firstCheckpoint);
+		if (ensembleId == null)
+		{
+			state.putAll(checkpoint);
+		}
+		else if (checkpoint.containsKey(ensembleId))
+		{
+			state.put(ensembleId, checkpoint.get(ensembleId));
+		}
+		Set<String> copied = new HashSet<>();
+		replay(state, copied, c * checkpointInterval + 1, index, ensembleId);
+		
+		// Ensembles not journaled yet at 'index': their baseline
+		for (Map.Entry<String, Ensemble> base : baselines.entrySet())
+		{
+			if ((ensembleId == null || ensembleId.equals(base.getKey())) && firstSeen.get(base.getKey()) > index)
+			{
+				state.put(base.getKey(), base.getValue());
+				copied.remove(base.getKey());
+			}
+		}
+		
+		// Whatever is still shared with a checkpoint, a baseline or an entry is copied for the caller
+		for (Map.Entry<String, Ensemble> e : state.entrySet())
+		{
+			if (!copied.contains(e.getKey()))
+			{
+				e.setValue(copyOf(e.getValue()));
+			}
+		}
+		
+		if (ensembleId != null && !firstSeen.containsKey(ensembleId))
+		{
+			Ensemble live = MEMS.getEnsembles().get(ensembleId);
+			if (live != null)
+			{
+				state.put(ensembleId, copyOf(live));
+			}
+		}
+		return state;
+	}
+	
+	// Apply the entries from..to to a state map - of one ensemble, or of all when ensembleId is null
+	private void replay(Map<String, Ensemble> state, Set<String> copied, int from, int to, String ensembleId)
+	{
+		for (int n = from; n <= to; n++)
+		{
+			for (Delta d : entry(n).deltas)
+			{
+				if (ensembleId == null || ensembleId.equals(d.ensembleId))
+				{
+					applyTo(state, copied, d);
+				}
+			}
+		}
+	}
+	
+	// Apply one change to a state map - 'copied' lists ensembles that are private to this map; any other
+	// ensemble is shared (with a checkpoint or an entry) and copied before changing
+	private void applyTo(Map<String, Ensemble> state, Set<String> copied, Delta d)
+	{
+		switch (d.type)
+		{
+			case BASE:
+			case CREATE:
+				state.put(d.ensembleId, d.snapshot);
+				copied.remove(d.ensembleId);
+				return;
+			case DROP:
+				state.remove(d.ensembleId);
+				return;
+			default:
+				break;
+		}
+		
+		Ensemble e = state.get(d.ensembleId);
+		if (e == null)
+		{
+			return;   // Not journaled (should not happen - a BASE comes first)
+		}
+		if (copied.add(d.ensembleId))
+		{
+			e = copyOf(e);
+			state.put(d.ensembleId, e);
+		}
+		Musician m = (d.musicianId == null) ? null : e.findMusician(d.musicianId);
+		switch (d.type)
+		{
+			case RENAME:
+				e.setName(d.name);
+				break;
+			case ADD:
+				if (m == null)
+				{
+					Musician added = new Musician(d.musicianId);
+					added.setName(d.name);
+					added.setRole(d.role);
+					e.addMusician(added);
+				}
+				break;
+			case REMOVE:
+				if (m != null)
+				{
+					e.dropMusician(m);
+				}
+				break;
+			case ROLE:
+				if (m != null)
+				{
+					e.changeMusicianRole(m, d.role);
+				}
+				break;
+			default:
+				break;
+		}
+	}
+	
+	// Detached copy of an ensemble (same type, ID, name and musicians)
+	private Ensemble copyOf(Ensemble e)
+	{
+		Ensemble copy = factoryRegistry.getEnsembleFactory(e.getFactoryType()).createEnsemble(e.getEnsembleID());
+		copy.setName(e.getName());
+		Iterator<Musician> it = e.getMusicians();
+		while (it.hasNext())
+		{
+			Musician m = it.next();
+			copy.addMusician(copyOf(m, m.getRole()));
+		}
+		return copy;
+	}
+	
+	private static Musician copyOf(Musician m, int role)
+	{
+		Musician copy = new Musician(m.getMID());
+		copy.setName(m.getName());
+		copy.setRole(role);
+		return copy;
+	}
+	
+	private Entry entry(int index)
+	{
+		return entries.get(index - 1 - oldest());
+	}
+	
+	private void checkIndex(int index)
+	{
+		if (index >= 0 && index < oldest())
+		{
+			throw new IllegalArgumentException("History index " + index + " is no longer kept (" + oldest() + " to " + size() + ")");
+		}
+		if (index < 0 || index > size())
+		{
+			throw new IllegalArgumentException("History index " + index + " does not exist (0 to " + size() + ")");
+		}
+	}
+	
+	// Accepts 2026-10-19, 2026-10-19T14:30[:15] (local time) or 2026-10-19T06:30:15Z
+	private static long parseTime(String text)
+	{
+		try
+		{
+			return timeOf(text, true);
+		}
+		catch (DateTimeParseException e)
+		{
+			throw new IllegalArgumentException("'" + text + "' is neither a history index nor a time (e.g. 2026-10-19T14:30)");
+		}
+	}
+	
+	// Time in ms of the same formats - a date alone means the start of that day, or its last ms if 'endOfDay'
+	static long timeOf(String text, boolean endOfDay)
+	{
+		if (text.endsWith("Z"))
+		{
+			return Instant.parse(text).toEpochMilli();
+		}
+		if (text.indexOf('T') < 0)
+		{
+			LocalDate date = LocalDate.parse(text);
+			if (endOfDay)
+			{
+				return date.plusDays(1).atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli() - 1;
+			}
+			return date.atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+		}
+		return LocalDateTime.parse(text).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+	}
+}
@@ -1,6 +1,11 @@
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * HistoryManager - manages undo/redo functionality using the Command pattern
@@ -8,59 +13,274 @@ import java.util.List;
  * - undoList: commands that have been executed (can be undone)
  * - redoList: commands that have been undone (can be redone)
  * Using LinkedList for efficient add/remove at the end
+ * 
+ * Every history move is reported to the ChangeNotifier (e.g. for replication).
+ * 
+ * Multi-step undo (and rollback) runs as one EnsembleCaretaker batch: every step is taken back and its
+ * history move reported as it goes, and what the mementos restored is reported once per ensemble at the
+ * end, as the net difference and one "Restored ensemble" line. The history journal still gets one entry per step, as it hears of every
+ * change taken back on its own (see HistoryJournal).
+ * Savepoints are positions in the undo list; rolling back to one undoes or redoes up to that position.
+ * 
+ * Coalescing: a newly executed command may be merged into the entry before it (see Coalescible),
+ * for the command types switched on with setCoalescing. A merged entry keeps one pre-image, and an entry
+ * that comes out as a net no-op is dropped. Nothing is merged across a savepoint, and undo/redo never merge,
+ * so any point an undo can still reach is reached in the same state as before.
  */
 public class HistoryManager
 {
 	private LinkedList<Command> undoList;  // List of commands that can be undone
 	private LinkedList<Command> redoList;  // List of commands that can be redone
+	private ChangeNotifier changeNotifier; // Told about every execute/undo/redo
+	private Map<String, Integer> savepoints; // Savepoint name -> undo list size when it was set
+	private Set<Class<? extends Command>> coalescing; // Types whose entries absorb the next compatible command
+	private LazyEnsembleRegistry fileStore;  // Ensembles to pin while a command runs (null = all in memory)
 	
 	// Constructor - creates empty lists
-	public HistoryManager()
+	public HistoryManager(ChangeNotifier changeNotifier)
 	{
 		this.undoList = new LinkedList<>();
 		this.redoList = new LinkedList<>();
+		this.changeNotifier = changeNotifier;
+		this.savepoints = new LinkedHashMap<>();
+		this.coalescing = new HashSet<>();
+	}
+	
+	// Switch coalescing on or off for entries of one command type (off for every type at first)
+	public void setCoalescing(Class<? extends Command> type, boolean enabled)
+	{
+		if (enabled && !Coalescible.class.isAssignableFrom(type))
+		{
+			throw new IllegalArgumentException(type.getSimpleName() + " cannot be coalesced");
+		}
+		if (enabled)
+		{
+			coalescing.add(type);
+		}
+		else
+		{
+			coalescing.remove(type);
+		}
+	}
+	
+	public boolean isCoalescing(Class<? extends Command> type)
+	{
+		return coalescing.contains(type);
+	}
+	
+	// With a file store, keep the ensembles a command (or undo/redo step) touches loaded until it finishes
+	public void pinEnsemblesIn(LazyEnsembleRegistry fileStore)
+	{
+		this.fileStore = fileStore;
 	}
 	
 	// Execute a command and add it to undo history
 	// Clears redo list because we're starting a new "branch" of history
 	public boolean executeCommand(Command command)
+	{
+		pin();
+		try
+		{
+			return record(command);
+		}
+		finally
+		{
+			unpin();
+		}
+	}
+	
+	// Execute and record (ensembles are pinned by the caller)
+	private boolean record(Command command)
 	{
 		if (command.execute())
 		{
+			// Savepoints inside the redo branch are lost with it (no iterator when there are none)
+			int position = undoList.size();
+			if (!savepoints.isEmpty())
+			{
+				savepoints.values().removeIf(p -> p > position);
+			}
 			undoList.addLast(command);  // Add to end (most recent)
 			redoList.clear();  // Clear redo when new command is executed
+			changeNotifier.commandExecuted(command);
+			coalesce(position);
 			return true;
 		}
 		return false;
 	}
 	
+	// Merge the command just added at 'position' into the entry before it, if that entry's type allows it
+	// and no savepoint sits between them
+	private void coalesce(int position)
+	{
+		if (position == 0 || savepoints.containsValue(position)) {
+			return;
+		}
+		Command previous = undoList.get(position - 1);
+		if (!coalescing.contains(previous.getClass())) {
+			return;
+		}
+		Coalescible merged = (Coalescible) previous;
+		if (!merged.absorb(undoList.getLast())) {
+			return;
+		}
+		undoList.removeLast();
+		if (merged.isNoOp())
+		{
+			merged.discard();
+			undoList.removeLast();
+			changeNotifier.historyCoalesced(2, null);
+		}
+		else
+		{
+			changeNotifier.historyCoalesced(2, previous);
+		}
+	}
+	
+	// Replace the newest 'count' undo entries by one (or by none if null) - how a follower mirrors coalescing
+	public void replaceLatest(int count, Command replacement)
+	{
+		for (int i = 0; i < count && !undoList.isEmpty(); i++)
+		{
+			undoList.removeLast();
+		}
+		if (replacement != null)
+		{
+			undoList.addLast(replacement);
+		}
+	}
+	
 	// Undo the last command
 	// Removes from the END of undoList (most recently added = last executed command)
 	// Moves command from undo list to redo list
 	public String undo()
 	{
-		if (undoList.isEmpty())
+		List<String> undone = undo(1);
+		return undone.isEmpty() ? null : undone.get(0);  // null = nothing to undo
+	}
+	
+	// Undo up to 'steps' commands as one move - returns their descriptions, most recent first
+	// One batch for the whole move: each ensemble's restored changes are reported once, at the end
+	public List<String> undo(int steps)
+	{
+		List<Command> undone = new ArrayList<>();
+		pin();
+		EnsembleCaretaker.beginBatch();
+		try
 		{
-			return null;  // Nothing to undo
+			while (undone.size() < steps && !undoList.isEmpty())
+			{
+				Command command = undoList.removeLast();  // Remove from END (most recent command)
+				command.undo();
+				redoList.addLast(command);
+				undone.add(command);
+				changeNotifier.commandUndone(command);   // Closes this step's history journal entry
+			}
 		}
-		Command command = undoList.removeLast();  // Remove from END (most recent command)
-		command.undo();
-		redoList.addLast(command);
-		return command.getDescription();
+		finally
+		{
+			EnsembleCaretaker.endBatch();
+			unpin();
+		}
+		return describe(undone);
 	}
 	
 	// Redo the last undone command
 	// Moves command from redo list back to undo list
 	public String redo()
 	{
-		if (redoList.isEmpty())
+		List<String> redone = redo(1);
+		return redone.isEmpty() ? null : redone.get(0);  // null = nothing to redo
+	}
+	
+	// Redo up to 'steps' commands - returns their descriptions, in the order they were redone
+	// (redo re-executes commands and never restores mementos, so there is nothing to batch)
+	public List<String> redo(int steps)
+	{
+		List<Command> redone = new ArrayList<>();
+		while (redone.size() < steps && !redoList.isEmpty())
+		{
+			Command command = redoList.removeLast();  // Remove from END
+			pin();
+			try
+			{
+				command.execute();
+			}
+			finally
+			{
+				unpin();
+			}
+			undoList.addLast(command);
+			redone.add(command);
+			changeNotifier.commandRedone(command);
+		}
+		return describe(redone);
+	}
+	
+	// Remember the current history position under a name (replaces an older savepoint of that name)
+	public void setSavepoint(String name)
+	{
+		savepoints.put(name, undoList.size());
+	}
+	
+	// Undo or redo back to a savepoint - returns the number of steps (negative = undone, positive = redone)
+	public int rollbackTo(String name)
+	{
+		Integer position = savepoints.get(name);
+		if (position == null)
+		{
+			throw new IllegalArgumentException("Savepoint '" + name + "' does not exist!");
+		}
+		int steps = position - undoList.size();
+		if (steps < 0)
+		{
+			undo(-steps);
+		}
+		else if (steps > 0)
+		{
+			redo(steps);
+		}
+		return steps;
+	}
+	
+	// Savepoint names with their positions (number of undoable commands at that point)
+	public Map<String, Integer> getSavepoints()
+	{
+		return Collections.unmodifiableMap(savepoints);
+	}
+	
+	// Forget all history (used when a follower starts over from a new replication log)
+	public void clear()
+	{
+		undoList.clear();
+		redoList.clear();
+		savepoints.clear();
+	}
+	
+	private void pin()
+	{
+		if (fileStore != null)
+		{
+			fileStore.pin();
+		}
+	}
+	
+	private void unpin()
+	{
+		if (fileStore != null)
+		{
+			fileStore.unpin();
+		}
+	}
+	
+	private static List<String> describe(List<Command> commands)
+	{
+		List<String> descriptions = new ArrayList<>();
+		for (Command command : commands)
 		{
-			return null;  // Nothing to redo
+			descriptions.add(command.getDescription());
 		}
-		Command command = redoList.removeLast();  // Remove from END
-		command.execute();
-		undoList.addLast(command);
-		return command.getDescription();
+		return descriptions;
 	}
 	
 	// Get list of all commands that can be undone (for display)
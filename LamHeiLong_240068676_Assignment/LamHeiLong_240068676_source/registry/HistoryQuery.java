@@ -0,0 +1,113 @@
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * HistoryQuery - the conditions of "history where ...", answered by HistoryJournal.find
+ *
+ * Written as one or more terms (an "and" between them is allowed), all of which must match:
+ * - ensemble=<ID>      the entry changed that ensemble
+ * - musician=<ID>      the entry added, removed or re-assigned that musician
+ * - type=<command>     the entry's command, by command word (e.g. a, add, cn, rename)
+ * - kind=<kind>        execute, undo or redo
+ * - since=<time>       at or after the time (a date alone = from the start of that day)
+ * - until=<time>       at or before the time (a date alone = to the end of that day)
+ * - on=<date>          on that day ("today" works for on, since and until)
+ * e.g. "musician=M1042", "ensemble=E7 on=today", "type=rename kind=undo since=2026-10-01"
+ */
+public class HistoryQuery
+{
+	private String ensembleId;                  // null = any
+	private String musicianId;                  // null = any
+	private Class<? extends Command> type;      // null = any
+	private String kind;                        // null = any
+	private long since = Long.MIN_VALUE;        // Earliest time (ms)
+	private long until = Long.MAX_VALUE;        // Latest time (ms)
+	private String text;                        // The query as written, for messages
+	
+	private HistoryQuery()
+	{
+	}
+	
+	public static HistoryQuery parse(String text)
+	{
+		if (text == null || text.trim().isEmpty()) {
+			throw new IllegalArgumentException("Query cannot be empty - use ensemble=, musician=, type=, kind=, since=, until= and/or on=");
+		}
+		HistoryQuery query = new HistoryQuery();
+		query.text = text.trim();
+		List<String> seen = new ArrayList<>();
+		for (String term : query.text.split("\\s+"))
+		{
+			if (term.equalsIgnoreCase("and")) {
+				continue;
+			}
+			int eq = term.indexOf('=');
+			String key = (eq < 0) ? term : term.substring(0, eq).toLowerCase();
+			String value = (eq < 0) ? "" : term.substring(eq + 1);
+			if (eq < 0 || value.isEmpty()) {
+				throw new IllegalArgumentException("Invalid query term '" + term + "' - use e.g. musician=M1 or ensemble=E1");
+			}
+			if (seen.contains(key)) {
+				throw new IllegalArgumentException("Query term '" + key + "' is given twice");
+			}
+			seen.add(key);
+			switch (key)
+			{
+				case "ensemble":
+					query.ensembleId = value;
+					break;
+				case "musician":
+					query.musicianId = value;
+					break;
+				case "type":
+					query.type = MEMS.findCommandType(value);
+					if (query.type == null) {
+						throw new IllegalArgumentException("Unknown command '" + value + "'");
+					}
+					break;
+				case "kind":
+					query.kind = value.toLowerCase();
+					if (!query.kind.equals("execute") && !query.kind.equals("undo") && !query.kind.equals("redo")) {
+						throw new IllegalArgumentException("Kind must be execute, undo or redo");
+					}
+					break;
+				case "since":
+					query.since = Math.max(query.since, time(value, false));
+					break;
+				case "until":
+					query.until = Math.min(query.until, time(value, true));
+					break;
+				case "on":
+					query.since = Math.max(query.since, time(value, false));
+					query.until = Math.min(query.until, time(value, true));
+					break;
+				default:
+					throw new IllegalArgumentException("Unknown query term '" + key + "' - use ensemble, musician, type, kind, since, until or on");
+			}
+		}
+		return query;
+	}
+	
+	public String getEnsembleId() { return ensembleId; }
+	public String getMusicianId() { return musicianId; }
+	public Class<? extends Command> getType() { return type; }
+	public String getKind() { return kind; }
+	public long getSince() { return since; }
+	public long getUntil() { return until; }
+	public String toString() { return text; }
+	
+	private static long time(String value, boolean endOfDay)
+	{
+		String text = value.equalsIgnoreCase("today") ? LocalDate.now().toString() : value;
+		try
+		{
+			return HistoryJournal.timeOf(text, endOfDay);
+		}
+		catch (DateTimeParseException e)
+		{
+			throw new IllegalArgumentException("'" + value + "' is not a time (e.g. today, 2026-10-19 or 2026-10-19T14:30)");
+		}
+	}
+}
@@ -0,0 +1,63 @@
+import java.util.function.Predicate;
+
+/**
+ * IdAllocator - hands out IDs such as M17 or E3 for one session (one console, engine or caller thread)
+ * Takes a block of numbers from the shared IdSequence at a time and uses it up locally,
+ * so creating an entity needs no shared counter and no "does this ID exist?" round trip first.
+ *
+ * IDs typed by hand can still be anything, so a generated ID that is already taken is skipped.
+ * Not thread-safe: give each thread its own allocator over the same sequence.
+ */
+public class IdAllocator
+{
+	public static final String AUTO = "*";              // Typed instead of an ID to get a generated one
+	public static final int DEFAULT_BLOCK_SIZE = 64;    // Numbers per block unless told otherwise
+	
+	private String prefix;             // e.g. "M" for musicians, "E" for ensembles
+	private IdSequence sequence;       // Where blocks come from
+	private int blockSize;             // Numbers reserved per block
+	private Predicate<String> taken;   // Is an ID already in use?
+	private long nextNumber;           // Next number of the current block
+	private long blockEnd;             // End of the current block (exclusive)
+	
+	// Constructor - no block is reserved until the first ID is needed
+	public IdAllocator(String prefix, IdSequence sequence, int blockSize, Predicate<String> taken)
+	{
+		if (blockSize < 1)
+		{
+			throw new IllegalArgumentException("ID block size must be at least 1");
+		}
+		this.prefix = prefix;
+		this.sequence = sequence;
+		this.blockSize = blockSize;
+		this.taken = taken;
+		this.nextNumber = 0;
+		this.blockEnd = 0;
+	}
+	
+	public String getPrefix() { return prefix; }
+	
+	// Same sequence and block size, another prefix (numbers stay unique, so old and new IDs never meet)
+	public IdAllocator withPrefix(String newPrefix)
+	{
+		return new IdAllocator(newPrefix, sequence, blockSize, taken);
+	}
+	
+	// The next free ID
+	public String next()
+	{
+		while (true)
+		{
+			if (nextNumber == blockEnd)
+			{
+				nextNumber = sequence.reserve(blockSize);
+				blockEnd = nextNumber + blockSize;
+			}
+			String id = prefix + nextNumber++;
+			if (!taken.test(id))
+			{
+				return id;
+			}
+		}
+	}
+}
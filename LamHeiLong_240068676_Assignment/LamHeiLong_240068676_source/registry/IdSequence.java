@@ -0,0 +1,79 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * IdSequence - central number sequence that IdAllocators reserve blocks of IDs from
+ * One atomic add per block, so allocators on different threads hardly ever meet here.
+ *
+ * When a file is given, the high-water mark (end of the last block handed out) is written
+ * to it before the block is returned, and a restarted program continues from that mark.
+ * Numbers of blocks that were not used up before a restart are skipped, never reused.
+ */
+public class IdSequence
+{
+	private AtomicLong next;      // First number of the next block
+	private File file;            // Where the high-water mark is kept (null = not persisted)
+	private long persistedMark;   // Mark last written to the file
+	
+	// Constructor - in-memory sequence starting at 1
+	public IdSequence()
+	{
+		this.next = new AtomicLong(1);
+		this.file = null;
+	}
+	
+	// Constructor - sequence that continues from the mark saved in 'file' (or from 1 if there is none)
+	public IdSequence(File file)
+	{
+		this.file = file;
+		this.persistedMark = 1;
+		if (file.isFile())
+		{
+			try
+			{
+				persistedMark = Long.parseLong(new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8).trim());
+			}
+			catch (IOException | NumberFormatException e)
+			{
+				throw new IllegalStateException("Cannot read ID sequence " + file, e);
+			}
+		}
+		this.next = new AtomicLong(persistedMark);
+	}
+	
+	// Reserve 'size' numbers - returns the first one, the block is [first, first + size)
+	public long reserve(int size)
+	{
+		long first = next.getAndAdd(size);
+		if (file != null)
+		{
+			persistUpTo(first + size);
+		}
+		return first;
+	}
+	
+	// Write the new high-water mark (temp file first, so a crash never leaves a broken mark)
+	private synchronized void persistUpTo(long mark)
+	{
+		if (mark <= persistedMark)
+		{
+			return;   // A later block already wrote a higher mark
+		}
+		File temp = new File(file.getPath() + ".tmp");
+		try
+		{
+			Files.write(temp.toPath(), Long.toString(mark).getBytes(StandardCharsets.UTF_8));
+			Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+		catch (IOException e)
+		{
+			throw new UncheckedIOException("Cannot write ID sequence " + file, e);
+		}
+		persistedMark = mark;
+	}
+}
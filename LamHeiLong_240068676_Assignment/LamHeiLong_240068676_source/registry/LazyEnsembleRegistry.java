@@ -0,0 +1,479 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * LazyEnsembleRegistry - ensemble map backed by an EnsembleStore with an LRU cache of hot ensembles
+ * Drop-in replacement for the HashMap in MEMS, so commands keep using MEMS.getEnsembles() as before
+ *
+ * - get() loads a roster from disk the first time it is needed
+ * - the cache is bounded by weight (1 + roster size per ensemble), least recently used goes first
+ * - an evicted ensemble is written back only if its version changed since it was loaded or saved
+ * - a sorted in-memory index of ensemble IDs answers existence, ordered listing and range queries
+ *   without reading any file (IDs are small, rosters are not)
+ * - the musician index (MusicianIndex) knows the owner of every stored musician, so finding a musician
+ *   never reads a roster; a Bloom filter in front of it turns most unknown IDs away straight away
+ *
+ * Rosters of resident ensembles are kept in the global musicians map, and removed again on eviction,
+ * so heap grows with the working set and not with the archive (the index holds two short IDs per musician).
+ *
+ * The filter and the index are saved next to the ensemble files on flush(). The first write-back after
+ * that leaves a dirty marker file, removed again by the next flush(); a start that finds the marker (the
+ * last run did not shut down cleanly) does not trust the saved copies and rebuilds both from the rosters.
+ *
+ * While a command runs (pin / unpin, called by HistoryManager) every ensemble it gets or adds is pinned:
+ * a command holds on to the Ensemble objects it fetched, so they must not be written back and dropped
+ * under it (e.g. a transfer loading its target would otherwise evict its source). The cache may go over
+ * budget for the length of one command; the last unpin evicts down to it again.
+ */
+public class LazyEnsembleRegistry extends AbstractMap<String, Ensemble>
+{
+	private static final String MUSICIAN_FILTER_FILE = "musicians.bloom";
+	private static final String MUSICIAN_INDEX_FILE = "musicians.idx";
+	private static final String DIRTY_MARKER_FILE = "musicians.dirty";
+	
+	private EnsembleStore store;                     // Backing storage (files, log, or memory)
+	private Map<String, Musician> musicians;         // Global musicians map (MEMS) kept in step with the cache
+	private LinkedHashMap<String, Resident> cache;   // Hot ensembles in access order (eldest = least recently used)
+	private long maxWeight;                          // Cache budget in musicians (+1 per ensemble)
+	private long currentWeight;                      // Weight of everything in the cache
+	private ConcurrentSkipListSet<String> ensembleIds; // Sorted index of all stored and new ensemble IDs
+	private BloomFilter musicianIds;                 // Every musician ID that was ever stored
+	private MusicianIndex musicianIndex;             // Owner of every musician (MEMS's index, filled in here)
+	private boolean markedDirty;                     // Dirty marker written since the last flush
+	private int pinDepth;                            // > 0 while a command runs (pin calls may nest)
+	private Set<String> pinned;                      // Ensembles the running command has touched - never evicted
+	
+	// One cached ensemble with the bookkeeping needed for write-back
+	private static class Resident
+	{
+		Ensemble ensemble;
+		long savedVersion;   // Version on disk (-1 = never written)
+		int weight;          // Weight counted in currentWeight
+		
+		Resident(Ensemble ensemble, long savedVersion)
+		{
+			this.ensemble = ensemble;
+			this.savedVersion = savedVersion;
+			this.weight = 1 + ensemble.getSize();
+		}
+	}
+	
+	// Constructor - builds the ID index from the directory listing and loads the saved musician filter and index
+	public LazyEnsembleRegistry(EnsembleStore store, Map<String, Musician> musicians, MusicianIndex musicianIndex, long maxWeight)
+	{
+		this.store = store;
+		this.musicians = musicians;
+		this.musicianIndex = musicianIndex;
+		this.maxWeight = Math.max(maxWeight, 1);
+		this.cache = new LinkedHashMap<>(16, 0.75f, true);
+		this.currentWeight = 0;
+		this.pinned = new HashSet<>();
+		
+		this.ensembleIds = new ConcurrentSkipListSet<>(store.listIds());
+		loadMusicianLookup();
+	}
+	
+	// Get an ensemble, loading it from disk on first access
+	@Override
+	public synchronized Ensemble get(Object key)
+	{
+		if (!(key instanceof String))
+		{
+			return null;
+		}
+		String id = (String) key;
+		if (pinDepth > 0)
+		{
+			pinned.add(id);
+		}
+		Resident resident = cache.get(id);
+		if (resident != null)
+		{
+			reweigh(resident);
+			return resident.ensemble;
+		}
+		if (!ensembleIds.contains(id))
+		{
+			return null;   // Unknown ID - no disk read needed
+		}
+		Ensemble ensemble = store.load(id);
+		if (ensemble == null)
+		{
+			return null;   // File removed behind our back
+		}
+		admit(new Resident(ensemble, ensemble.getVersion()));
+		return ensemble;
+	}
+	
+	// Answered from the ID index, never from disk
+	@Override
+	public synchronized boolean containsKey(Object key)
+	{
+		if (!(key instanceof String))
+		{
+			return false;
+		}
+		String id = (String) key;
+		return ensembleIds.contains(id);
+	}
+	
+	// Add a new ensemble - it stays dirty in the cache until evicted or flushed
+	@Override
+	public synchronized Ensemble put(String id, Ensemble ensemble)
+	{
+		Ensemble previous = remove(id);
+		ensembleIds.add(id);
+		if (pinDepth > 0)
+		{
+			pinned.add(id);
+		}
+		admit(new Resident(ensemble, -1));
+		return previous;
+	}
+	
+	// Remove an ensemble from the cache and from disk
+	@Override
+	public synchronized Ensemble remove(Object key)
+	{
+		if (!(key instanceof String))
+		{
+			return null;
+		}
+		String id = (String) key;
+		Resident resident = cache.remove(id);
+		Ensemble previous = null;
+		if (resident != null)
+		{
+			currentWeight -= resident.weight;
+			previous = resident.ensemble;
+		}
+		else if (ensembleIds.contains(id))
+		{
+			previous = store.load(id);
+		}
+		store.delete(id);
+		ensembleIds.remove(id);
+		markDirty();
+		return previous;
+	}
+	
+	// Number of ensembles = stored ones plus new ones that are not written yet
+	@Override
+	public int size()
+	{
+		return ensembleIds.size();
+	}
+	
+	// All ensemble IDs in ID order - a read-only view of the index, no roster is loaded
+	public NavigableSet<String> ids()
+	{
+		return Collections.unmodifiableNavigableSet(ensembleIds);
+	}
+	
+	// Ensembles with IDs from 'from' to 'to' (both inclusive) in ID order - O(log n + k) index walk,
+	// only the matching rosters are loaded
+	public List<Ensemble> range(String from, String to)
+	{
+		List<Ensemble> result = new ArrayList<>();
+		for (String id : ensembleIds.subSet(from, true, to, true))
+		{
+			Ensemble e = get(id);
+			if (e != null)
+			{
+				result.add(e);
+			}
+		}
+		return result;
+	}
+	
+	// Iterates in ID order and loads each ensemble on demand (older ones get evicted as we go)
+	@Override
+	public Set<Map.Entry<String, Ensemble>> entrySet()
+	{
+		return new AbstractSet<Map.Entry<String, Ensemble>>()
+		{
+			public int size()
+			{
+				return LazyEnsembleRegistry.this.size();
+			}
+			
+			public Iterator<Map.Entry<String, Ensemble>> iterator()
+			{
+				final Iterator<String> ids = ensembleIds.iterator();
+				return new Iterator<Map.Entry<String, Ensemble>>()
+				{
+					private Map.Entry<String, Ensemble> next = advance();
+					
+					private Map.Entry<String, Ensemble> advance()
+					{
+						while (ids.hasNext())
+						{
+							String id = ids.next();
+							Ensemble e = get(id);
+							if (e != null)
+							{
+								return new AbstractMap.SimpleImmutableEntry<>(id, e);
+							}
+						}
+						return null;
+					}
+					
+					public boolean hasNext()
+					{
+						return next != null;
+					}
+					
+					public Map.Entry<String, Ensemble> next()
+					{
+						if (next == null)
+						{
+							throw new NoSuchElementException();
+						}
+						Map.Entry<String, Ensemble> current = next;
+						next = advance();
+						return current;
+					}
+				};
+			}
+		};
+	}
+	
+	// Is this musician ID used by any ensemble, resident or not?
+	// Resident musicians are in the global map; for the rest the Bloom filter usually says "no" straight away,
+	// and the musician index settles a "maybe" without reading any roster
+	public synchronized boolean containsMusician(String musicianId)
+	{
+		if (musicians.containsKey(musicianId))
+		{
+			return true;
+		}
+		return musicianIds.mightContain(musicianId) && musicianIndex.ownerOf(musicianId) != null;
+	}
+	
+	// Write every dirty ensemble, then the musician filter and index, and clear the dirty marker (called on exit)
+	// An overloaded filter is rebuilt here, from the index - never on the write-back path
+	public synchronized void flush()
+	{
+		for (Resident resident : cache.values())
+		{
+			writeBack(resident);
+		}
+		store.flush();
+		if (musicianIds.isOverloaded())
+		{
+			musicianIds = filterOf(musicianIndex.musicianIds());
+		}
+		saveMusicianLookup();
+	}
+	
+	public synchronized int getResidentCount() { return cache.size(); }
+	
+	// A command starts: keep everything it touches loaded until the matching unpin()
+	public synchronized void pin()
+	{
+		pinDepth++;
+	}
+	
+	// A command has finished: release its ensembles and evict down to the budget again
+	public synchronized void unpin()
+	{
+		if (pinDepth > 0 && --pinDepth == 0)
+		{
+			pinned.clear();
+			evictIfNeeded();
+		}
+	}
+	
+	// Put an ensemble into the cache, register its musicians, then evict down to the budget
+	private void admit(Resident resident)
+	{
+		cache.put(resident.ensemble.getEnsembleID(), resident);
+		currentWeight += resident.weight;
+		Iterator<Musician> it = resident.ensemble.getMusicians();
+		while (it.hasNext())
+		{
+			Musician m = it.next();
+			musicians.put(m.getMID(), m);
+		}
+		evictIfNeeded();
+	}
+	
+	// Evict least recently used ensembles until we are within budget (always keeps the newest one,
+	// and the ones pinned by a running command)
+	private void evictIfNeeded()
+	{
+		Iterator<Resident> it = cache.values().iterator();
+		while (currentWeight > maxWeight && cache.size() > 1 && it.hasNext())
+		{
+			Resident eldest = it.next();
+			if (pinned.contains(eldest.ensemble.getEnsembleID()))
+			{
+				continue;
+			}
+			writeBack(eldest);
+			it.remove();
+			currentWeight -= eldest.weight;
+			Iterator<Musician> roster = eldest.ensemble.getMusicians();
+			while (roster.hasNext())
+			{
+				Musician m = roster.next();
+				if (musicians.get(m.getMID()) == m)
+				{
+					musicians.remove(m.getMID());
+				}
+			}
+		}
+	}
+	
+	// Roster sizes change while an ensemble is cached, so refresh its weight on access
+	private void reweigh(Resident resident)
+	{
+		int weight = 1 + resident.ensemble.getSize();
+		if (weight != resident.weight)
+		{
+			currentWeight += weight - resident.weight;
+			resident.weight = weight;
+			evictIfNeeded();
+		}
+	}
+	
+	// Save an ensemble if it changed since it was last written
+	// Its musicians go into the filter; an overloaded filter only gives more "maybe" answers (each settled by
+	// the index) until flush() rebuilds it
+	private void writeBack(Resident resident)
+	{
+		if (resident.ensemble.getVersion() == resident.savedVersion)
+		{
+			return;
+		}
+		markDirty();
+		store.save(resident.ensemble);
+		resident.savedVersion = resident.ensemble.getVersion();
+		Iterator<Musician> it = resident.ensemble.getMusicians();
+		while (it.hasNext())
+		{
+			musicianIds.add(it.next().getMID());
+		}
+	}
+	
+	// Load the saved musician filter and index, or rebuild both with one read of every stored roster
+	// The saved copies are only used if the last run flushed them (no dirty marker)
+	private void loadMusicianLookup()
+	{
+		File directory = store.getDirectory();
+		if (directory != null && !new File(directory, DIRTY_MARKER_FILE).exists())
+		{
+			File filterFile = new File(directory, MUSICIAN_FILTER_FILE);
+			File indexFile = new File(directory, MUSICIAN_INDEX_FILE);
+			if (filterFile.isFile() && indexFile.isFile())
+			{
+				try (DataInputStream filterIn = new DataInputStream(new BufferedInputStream(new FileInputStream(filterFile)));
+				     DataInputStream indexIn = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile))))
+				{
+					musicianIds = BloomFilter.readFrom(filterIn);
+					musicianIndex.readFrom(indexIn);
+					return;
+				}
+				catch (IOException e)
+				{
+					// Corrupt or old files - fall through and rebuild
+				}
+			}
+		}
+		rebuildMusicianLookup();
+	}
+	
+	// Read every stored roster once: its musicians go into the index, then the filter is sized and filled from it
+	private void rebuildMusicianLookup()
+	{
+		for (String id : store.listIds())
+		{
+			Ensemble e = store.load(id);
+			if (e == null)
+			{
+				continue;
+			}
+			Iterator<Musician> it = e.getMusicians();
+			while (it.hasNext())
+			{
+				musicianIndex.remember(it.next().getMID(), id);
+			}
+		}
+		musicianIds = filterOf(musicianIndex.musicianIds());
+	}
+	
+	// A filter with room for twice the given IDs, holding them
+	private static BloomFilter filterOf(Set<String> ids)
+	{
+		BloomFilter filter = new BloomFilter(ids.size() * 2);
+		for (String id : ids)
+		{
+			filter.add(id);
+		}
+		return filter;
+	}
+	
+	// The files are about to change: leave the marker that makes the next start rebuild, unless flush() clears it
+	private void markDirty()
+	{
+		if (markedDirty || store.getDirectory() == null)
+		{
+			return;
+		}
+		File marker = new File(store.getDirectory(), DIRTY_MARKER_FILE);
+		try
+		{
+			marker.createNewFile();
+		}
+		catch (IOException e)
+		{
+			throw new UncheckedIOException("Cannot write " + marker, e);
+		}
+		markedDirty = true;
+	}
+	
+	// Save the musician filter and index next to the ensemble files, then drop the dirty marker
+	// (nothing to do for a store without a directory)
+	private void saveMusicianLookup()
+	{
+		File directory = store.getDirectory();
+		if (directory == null)
+		{
+			return;
+		}
+		File filterFile = new File(directory, MUSICIAN_FILTER_FILE);
+		File indexFile = new File(directory, MUSICIAN_INDEX_FILE);
+		try (DataOutputStream filterOut = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(filterFile)));
+		     DataOutputStream indexOut = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(indexFile))))
+		{
+			musicianIds.writeTo(filterOut);
+			musicianIndex.writeTo(indexOut);
+		}
+		catch (IOException e)
+		{
+			throw new UncheckedIOException("Cannot write " + filterFile + " / " + indexFile, e);
+		}
+		new File(directory, DIRTY_MARKER_FILE).delete();
+		markedDirty = false;
+	}
+}
@@ -0,0 +1,333 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * LogStructuredEnsembleStore - EnsembleStore that appends every save to a single log file
+ *
+ * - an in-memory index (ensemble ID -> offset and length of its latest record) means a load is
+ *   exactly one positional read, whatever the number of ensembles
+ * - saves are collected in a write buffer and appended in one batch when it is full or on flush()
+ *   (one write and one fsync per batch instead of a temp file and a rename per ensemble)
+ * - a delete appends a small tombstone
+ * - when more than half of the log is old versions, it is compacted into a fresh file
+ *
+ * Record: int body length, int CRC-32 of the body, then the body: kind (PUT or DELETE), ensemble ID,
+ * and for PUT the EnsembleStore.writeEnsemble record.
+ * On open, the log is scanned once to rebuild the index; a torn record at the end (crash while
+ * appending) fails its length or CRC check and is cut off.
+ */
+public class LogStructuredEnsembleStore implements EnsembleStore
+{
+	private static final String LOG_FILE = "ensembles.log";
+	private static final byte PUT = 1;
+	private static final byte DELETE = 2;
+	private static final int HEADER = 8;                     // Body length + CRC
+	private static final int BATCH_BYTES = 256 * 1024;       // Write buffer size before an automatic flush
+	private static final long COMPACT_OVER = 4L * 1024 * 1024;  // Smallest log worth compacting
+	
+	private File directory;                  // Where the log lives
+	private File logFile;
+	private FactoryRegistry factoryRegistry; // Rebuilds the right Ensemble subclass on load
+	private FileChannel channel;             // Open log, positional reads and appends
+	private long durableLength;              // Bytes of the log on disk
+	private ByteArrayOutputStream batch;     // Records appended since the last flush (logically after durableLength)
+	private Map<String, Location> index;     // Latest PUT record of every stored ensemble
+	private long liveBytes;                  // Bytes of the records in the index
+	
+	// Where an ensemble's latest record is (offset counts the unflushed batch as part of the log)
+	private static class Location
+	{
+		long offset;
+		int length;
+		
+		Location(long offset, int length)
+		{
+			this.offset = offset;
+			this.length = length;
+		}
+	}
+	
+	// Constructor - opens (or creates) the log and rebuilds the index from it
+	public LogStructuredEnsembleStore(File directory, FactoryRegistry factoryRegistry)
+	{
+		if (!directory.isDirectory() && !directory.mkdirs())
+		{
+			throw new IllegalArgumentException("Cannot create ensemble store directory: " + directory);
+		}
+		this.directory = directory;
+		this.logFile = new File(directory, LOG_FILE);
+		this.factoryRegistry = factoryRegistry;
+		this.batch = new ByteArrayOutputStream();
+		try
+		{
+			this.channel = FileChannel.open(logFile.toPath(),
+				StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+			rebuildIndex();
+		}
+		catch (IOException e)
+		{
+			throw new UncheckedIOException("Cannot open ensemble log " + logFile, e);
+		}
+	}
+	
+	public File getDirectory() { return directory; }
+	
+	public List<String> listIds()
+	{
+		return new ArrayList<>(index.keySet());
+	}
+	
+	public boolean exists(String ensembleId)
+	{
+		return index.containsKey(ensembleId);
+	}
+	
+	// One positional read (or none, if the record is still in the write buffer)
+	public Ensemble load(String ensembleId)
+	{
+		Location location = index.get(ensembleId);
+		if (location == null)
+		{
+			return null;
+		}
+		try
+		{
+			DataInputStream body = new DataInputStream(new ByteArrayInputStream(readBody(location)));
+			body.readByte();   // PUT
+			body.readUTF();    // ID
+			return EnsembleStore.readEnsemble(body, factoryRegistry);
+		}
+		catch (IOException e)
+		{
+			throw new UncheckedIOException("Cannot read ensemble " + ensembleId, e);
+		}
+	}
+	
+	public void save(Ensemble ensemble)
+	{
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try
+		{
+			DataOutputStream body = new DataOutputStream(bytes);
+			body.writeByte(PUT);
+			body.writeUTF(ensemble.getEnsembleID());
+			EnsembleStore.writeEnsemble(body, ensemble);
+		}
+		catch (IOException e)
+		{
+			throw new UncheckedIOException("Cannot write ensemble " + ensemble.getEnsembleID(), e);
+		}
+		long offset = append(bytes.toByteArray());
+		forget(ensemble.getEnsembleID());
+		Location location = new Location(offset, HEADER + bytes.size());
+		index.put(ensemble.getEnsembleID(), location);
+		liveBytes += location.length;
+		flushIfFull();
+	}
+	
+	public void delete(String ensembleId)
+	{
+		if (!index.containsKey(ensembleId))
+		{
+			return;
+		}
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try
+		{
+			DataOutputStream body = new DataOutputStream(bytes);
+			body.writeByte(DELETE);
+			body.writeUTF(ensembleId);
+		}
+		catch (IOException e)
+		{
+			throw new UncheckedIOException("Cannot delete ensemble " + ensembleId, e);
+		}
+		append(bytes.toByteArray());
+		forget(ensembleId);
+		flushIfFull();
+	}
+	
+	// Append the write buffer in one write, make it durable, and compact if the log is mostly garbage
+	public void flush()
+	{
+		if (batch.size() > 0)
+		{
+			try
+			{
+				ByteBuffer data = ByteBuffer.wrap(batch.toByteArray());
+				while (data.hasRemaining())
+				{
+					channel.write(data, durableLength + data.position());
+				}
+				channel.force(false);
+			}
+			catch (IOException e)
+			{
+				throw new UncheckedIOException("Cannot write ensemble log " + logFile, e);
+			}
+			durableLength += batch.size();
+			batch.reset();
+		}
+		if (durableLength > COMPACT_OVER && liveBytes * 2 < durableLength)
+		{
+			compact();
+		}
+	}
+	
+	public long getLogLength() { return durableLength + batch.size(); }
+	public long getLiveBytes() { return liveBytes; }
+	
+	// Add a record to the write buffer - returns its offset in the log
+	private long append(byte[] body)
+	{
+		long offset = durableLength + batch.size();
+		CRC32 crc = new CRC32();
+		crc.update(body);
+		DataOutputStream out = new DataOutputStream(batch);
+		try
+		{
+			out.writeInt(body.length);
+			out.writeInt((int) crc.getValue());
+			out.write(body);
+		}
+		catch (IOException e)
+		{
+			throw new UncheckedIOException(e);   // Not thrown by a ByteArrayOutputStream
+		}
+		return offset;
+	}
+	
+	// The old record of an ensemble no longer counts as live
+	private void forget(String ensembleId)
+	{
+		Location old = index.remove(ensembleId);
+		if (old != null)
+		{
+			liveBytes -= old.length;
+		}
+	}
+	
+	private void flushIfFull()
+	{
+		if (batch.size() >= BATCH_BYTES)
+		{
+			flush();
+		}
+	}
+	
+	// Body bytes of a record, from the file or from the write buffer
+	private byte[] readBody(Location location) throws IOException
+	{
+		int bodyLength = location.length - HEADER;
+		if (location.offset >= durableLength)
+		{
+			byte[] body = new byte[bodyLength];
+			System.arraycopy(batch.toByteArray(), (int) (location.offset - durableLength) + HEADER, body, 0, bodyLength);
+			return body;
+		}
+		ByteBuffer buffer = ByteBuffer.allocate(bodyLength);
+		while (buffer.hasRemaining())
+		{
+			if (channel.read(buffer, location.offset + HEADER + buffer.position()) < 0)
+			{
+				throw new IOException("Ensemble log ends inside a record at " + location.offset);
+			}
+		}
+		return buffer.array();
+	}
+	
+	// Scan the whole log once: the last record of each ID wins, a torn tail is cut off
+	private void rebuildIndex() throws IOException
+	{
+		index = new HashMap<>();
+		liveBytes = 0;
+		long size = channel.size();
+		long offset = 0;
+		ByteBuffer header = ByteBuffer.allocate(HEADER);
+		while (offset + HEADER <= size)
+		{
+			header.clear();
+			channel.read(header, offset);
+			int bodyLength = header.getInt(0);
+			int expectedCrc = header.getInt(4);
+			if (bodyLength <= 0 || offset + HEADER + bodyLength > size)
+			{
+				break;
+			}
+			ByteBuffer body = ByteBuffer.allocate(bodyLength);
+			while (body.hasRemaining())
+			{
+				channel.read(body, offset + HEADER + body.position());
+			}
+			CRC32 crc = new CRC32();
+			crc.update(body.array());
+			if ((int) crc.getValue() != expectedCrc)
+			{
+				break;
+			}
+			DataInputStream in = new DataInputStream(new ByteArrayInputStream(body.array()));
+			byte kind = in.readByte();
+			String id = in.readUTF();
+			forget(id);
+			if (kind == PUT)
+			{
+				index.put(id, new Location(offset, HEADER + bodyLength));
+				liveBytes += HEADER + bodyLength;
+			}
+			offset += HEADER + bodyLength;
+		}
+		if (offset < size)
+		{
+			channel.truncate(offset);   // Torn or damaged tail
+		}
+		durableLength = offset;
+	}
+	
+	// Copy the live records into a fresh log, then swap it in
+	private void compact()
+	{
+		File compacted = new File(directory, LOG_FILE + ".compact");
+		Map<String, Location> newIndex = new HashMap<>();
+		try (FileChannel out = FileChannel.open(compacted.toPath(), StandardOpenOption.CREATE,
+			StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE))
+		{
+			long position = 0;
+			for (Map.Entry<String, Location> entry : index.entrySet())
+			{
+				Location location = entry.getValue();
+				long copied = 0;
+				while (copied < location.length)
+				{
+					copied += channel.transferTo(location.offset + copied, location.length - copied, out);
+				}
+				newIndex.put(entry.getKey(), new Location(position, location.length));
+				position += location.length;
+			}
+			out.force(false);
+			channel.close();
+			Files.move(compacted.toPath(), logFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			channel = FileChannel.open(logFile.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+			index = newIndex;
+			durableLength = position;
+		}
+		catch (IOException e)
+		{
+			throw new UncheckedIOException("Cannot compact ensemble log " + logFile, e);
+		}
+	}
+}
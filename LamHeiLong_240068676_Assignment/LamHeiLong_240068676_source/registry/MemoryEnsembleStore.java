@@ -0,0 +1,78 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * MemoryEnsembleStore - EnsembleStore that keeps serialized ensembles in memory
+ * Nothing survives a restart. Useful to run the cache-bounded registry without a disk,
+ * and as the simplest example of the storage SPI.
+ *
+ * Ensembles are kept as bytes (EnsembleStore.writeEnsemble), so an evicted roster costs
+ * a byte array instead of its Musician objects.
+ */
+public class MemoryEnsembleStore implements EnsembleStore
+{
+	private Map<String, byte[]> records = new TreeMap<>();   // Ensemble ID -> serialized ensemble
+	private FactoryRegistry factoryRegistry;                 // Rebuilds the right Ensemble subclass on load
+	
+	public MemoryEnsembleStore(FactoryRegistry factoryRegistry)
+	{
+		this.factoryRegistry = factoryRegistry;
+	}
+	
+	public File getDirectory() { return null; }
+	
+	public List<String> listIds()
+	{
+		return new ArrayList<>(records.keySet());
+	}
+	
+	public boolean exists(String ensembleId)
+	{
+		return records.containsKey(ensembleId);
+	}
+	
+	public Ensemble load(String ensembleId)
+	{
+		byte[] record = records.get(ensembleId);
+		if (record == null)
+		{
+			return null;
+		}
+		try
+		{
+			return EnsembleStore.readEnsemble(new DataInputStream(new ByteArrayInputStream(record)), factoryRegistry);
+		}
+		catch (IOException e)
+		{
+			throw new UncheckedIOException("Cannot read ensemble " + ensembleId, e);
+		}
+	}
+	
+	public void save(Ensemble ensemble)
+	{
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try
+		{
+			EnsembleStore.writeEnsemble(new DataOutputStream(bytes), ensemble);
+		}
+		catch (IOException e)
+		{
+			throw new UncheckedIOException("Cannot write ensemble " + ensemble.getEnsembleID(), e);
+		}
+		records.put(ensemble.getEnsembleID(), bytes.toByteArray());
+	}
+	
+	public void delete(String ensembleId)
+	{
+		records.remove(ensembleId);
+	}
+}
@@ -0,0 +1,82 @@
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * MusicianIndex - which ensemble each musician is in, so a musician can be found without scanning rosters
+ * Kept up to date as a ChangeListener, so every add, delete, transfer, undo and redo moves the entry with it.
+ * A follower feeds it from the replication log instead.
+ *
+ * With a file store, musicians of ensembles that were only loaded (never changed) are not reported
+ * by any event; LazyEnsembleRegistry fills those in at startup, from its saved copy of the index or from
+ * one pass over the stored rosters, so the index always covers every musician.
+ */
+public class MusicianIndex implements ChangeListener
+{
+	private Map<String, String> owners = new HashMap<>();   // Musician ID -> ensemble ID
+	
+	public void musicianAdded(Ensemble e, Musician m)
+	{
+		owners.put(m.getMID(), e.getEnsembleID());
+	}
+	
+	// Only if the musician is still listed under this ensemble (a transfer may have moved the entry already)
+	public void musicianRemoved(Ensemble e, Musician m)
+	{
+		owners.remove(m.getMID(), e.getEnsembleID());
+	}
+	
+	// Ensemble that holds the musician, or null if not known here
+	public String ownerOf(String musicianId)
+	{
+		return owners.get(musicianId);
+	}
+	
+	// Record an owner found some other way (e.g. in the file store)
+	public void remember(String musicianId, String ensembleId)
+	{
+		owners.put(musicianId, ensembleId);
+	}
+	
+	// Every musician ID in the index
+	public Set<String> musicianIds()
+	{
+		return Collections.unmodifiableSet(owners.keySet());
+	}
+	
+	// Save the index so the next start does not have to read every roster
+	public void writeTo(DataOutputStream out) throws IOException
+	{
+		out.writeInt(owners.size());
+		for (Map.Entry<String, String> entry : owners.entrySet())
+		{
+			out.writeUTF(entry.getKey());
+			out.writeUTF(entry.getValue());
+		}
+	}
+	
+	// Add the entries saved by writeTo()
+	public void readFrom(DataInputStream in) throws IOException
+	{
+		int count = in.readInt();
+		for (int i = 0; i < count; i++)
+		{
+			String musicianId = in.readUTF();
+			owners.put(musicianId, in.readUTF());
+		}
+	}
+	
+	public void clear()
+	{
+		owners.clear();
+	}
+	
+	public int size()
+	{
+		return owners.size();
+	}
+}
@@ -0,0 +1,197 @@
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * RenderCache - keeps the rendered output of recently viewed ensembles, as text or JSON
+ *
+ * Entries are keyed by (ensemble object, version, format). Every change to an ensemble - commands,
+ * undo/redo restores, replication - takes a new version, so a stale entry is simply never asked
+ * for again and ages out; nothing has to invalidate it. Versions are counted per ensemble object,
+ * so the key holds the object itself (compared by identity): a removed and re-created ensemble, or
+ * one reloaded from a file store, is a different object and never matches an old rendering.
+ *
+ * The cache is bounded by the total number of characters held, least recently used goes first.
+ * A rendering larger than a quarter of the budget is returned but not kept.
+ *
+ * renderAll() formats a long list of ensembles on the fork/join pool: each task renders a slice
+ * into its own buffer, and the buffers are joined in list order, so the caller can print
+ * everything with one write. Only lookups and inserts hold the lock, never the formatting itself.
+ */
+public class RenderCache
+{
+	public enum Format { TEXT, JSON }
+	
+	public static final long DEFAULT_MAX_CHARS = 4L * 1024 * 1024;
+	private static final int PARALLEL_OVER = 32;   // Fewer ensembles than this are rendered on the caller thread
+	private static final int SLICE = 16;           // Ensembles rendered by one fork/join task
+	
+	private FactoryRegistry factoryRegistry;      // Role names for JSON (resolved here, so pool threads need no MEMS)
+	private LinkedHashMap<Key, String> entries;   // Renderings in access order (eldest = least recently used)
+	private long maxChars;                        // Budget in characters
+	private long currentChars;                    // Characters of everything cached
+	private long hits;
+	private long misses;
+	
+	// (ensemble object, version, format) of one rendering
+	private static class Key
+	{
+		final Ensemble ensemble;
+		final long version;
+		final Format format;
+		
+		Key(Ensemble ensemble, long version, Format format)
+		{
+			this.ensemble = ensemble;
+			this.version = version;
+			this.format = format;
+		}
+		
+		public boolean equals(Object o)
+		{
+			if (!(o instanceof Key))
+			{
+				return false;
+			}
+			Key k = (Key) o;
+			return version == k.version && format == k.format && ensemble == k.ensemble;
+		}
+		
+		public int hashCode()
+		{
+			return (System.identityHashCode(ensemble) * 31 + Long.hashCode(version)) * 31 + format.ordinal();
+		}
+	}
+	
+	public RenderCache(FactoryRegistry factoryRegistry)
+	{
+		this(factoryRegistry, DEFAULT_MAX_CHARS);
+	}
+	
+	public RenderCache(FactoryRegistry factoryRegistry, long maxChars)
+	{
+		this.factoryRegistry = factoryRegistry;
+		this.entries = new LinkedHashMap<>(64, 0.75f, true);
+		this.maxChars = Math.max(maxChars, 0);
+	}
+	
+	// Rendering of the ensemble as it is now - from the cache if its version was rendered before
+	public String render(Ensemble ensemble, Format format)
+	{
+		Key key = new Key(ensemble, ensemble.getVersion(), format);
+		String cached = lookup(key);
+		if (cached != null)
+		{
+			return cached;
+		}
+		
+		StringBuilder out = new StringBuilder(64 + 32 * ensemble.getSize());
+		if (format == Format.JSON)
+		{
+			ensemble.renderJson(out, factoryRegistry.getMusicianFactory(ensemble.getFactoryType()));
+		}
+		else
+		{
+			ensemble.renderText(out);
+		}
+		String rendered = out.toString();
+		store(key, rendered);
+		return rendered;
+	}
+	
+	// All renderings in list order, each followed by 'separator' - in parallel for long lists
+	public String renderAll(List<Ensemble> ensembles, Format format, String separator)
+	{
+		if (ensembles.size() < PARALLEL_OVER)
+		{
+			return new RenderTask(ensembles, 0, ensembles.size(), format, separator).compute().toString();
+		}
+		return ForkJoinPool.commonPool().invoke(new RenderTask(ensembles, 0, ensembles.size(), format, separator)).toString();
+	}
+	
+	// Renders ensembles [from, to) of the list into one buffer, splitting in halves down to SLICE ensembles
+	private class RenderTask extends RecursiveTask<StringBuilder>
+	{
+		private static final long serialVersionUID = 1L;
+		
+		private List<Ensemble> ensembles;
+		private int from;
+		private int to;
+		private Format format;
+		private String separator;
+		
+		RenderTask(List<Ensemble> ensembles, int from, int to, Format format, String separator)
+		{
+			this.ensembles = ensembles;
+			this.from = from;
+			this.to = to;
+			this.format = format;
+			this.separator = separator;
+		}
+		
+		protected StringBuilder compute()
+		{
+			if (to - from > SLICE)
+			{
+				int middle = (from + to) >>> 1;
+				RenderTask right = new RenderTask(ensembles, middle, to, format, separator);
+				right.fork();
+				StringBuilder left = new RenderTask(ensembles, from, middle, format, separator).compute();
+				return left.append(right.join());
+			}
+			StringBuilder out = new StringBuilder();
+			for (int i = from; i < to; i++)
+			{
+				out.append(render(ensembles.get(i), format)).append(separator);
+			}
+			return out;
+		}
+	}
+	
+	public synchronized void clear()
+	{
+		entries.clear();
+		currentChars = 0;
+	}
+	
+	public synchronized int size() { return entries.size(); }
+	public synchronized long getHits() { return hits; }
+	public synchronized long getMisses() { return misses; }
+	
+	private synchronized String lookup(Key key)
+	{
+		String cached = entries.get(key);
+		if (cached != null)
+		{
+			hits++;
+		}
+		else
+		{
+			misses++;
+		}
+		return cached;
+	}
+	
+	private synchronized void store(Key key, String rendered)
+	{
+		if (rendered.length() <= maxChars / 4 && !entries.containsKey(key))
+		{
+			entries.put(key, rendered);
+			currentChars += rendered.length();
+			evictIfNeeded();
+		}
+	}
+	
+	private void evictIfNeeded()
+	{
+		Iterator<Map.Entry<Key, String>> it = entries.entrySet().iterator();
+		while (currentChars > maxChars && it.hasNext())
+		{
+			currentChars -= it.next().getValue().length();
+			it.remove();
+		}
+	}
+}
@@ -0,0 +1,309 @@
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ReplicaFollower - keeps a read-only copy of the primary's ensembles by tailing its ReplicationLog
+ * Runs on a background thread; the console only allows read commands while following
+ * 
+ * Records are applied to this process's own ensembles, musicians and history (the history holds
+ * ReplicatedCommand placeholders, so 'l' shows the same lists as on the primary).
+ * The log is read in whole lines only; a line the primary is still writing waits for the next poll.
+ * 
+ * Console commands and record application both lock on this object, so a view never sees half a command.
+ */
+public class ReplicaFollower implements Runnable
+{
+	private static final long POLL_MILLIS = 20;
+	
+	private File logFile;                        // The primary's replication log
+	private Map<String, Ensemble> ensembles;     // Follower's own ensembles
+	private Map<String, Musician> musicians;     // Follower's own musicians
+	private HistoryManager historyManager;       // Follower's own history (placeholders only)
+	private FactoryRegistry factoryRegistry;     // Builds ensembles of the right type
+	private MusicianIndex musicianIndex;         // Follower's own musician -> ensemble index
+	private PrintStream out;                     // Follower's MEMS output, for replication errors
+	
+	private long position;                       // Bytes of the log already applied
+	private byte[] header;                       // First line of the log, to spot a restarted primary
+	private ByteArrayOutputStream partial;       // Bytes of a line that is not finished yet
+	private volatile long lastSequence;          // Sequence number of the last applied record
+	private volatile long lastRecordTime;        // Primary's timestamp of the last applied record or heartbeat
+	private volatile long lastPollTime;          // When we last looked at the log
+	private volatile long bytesBehind;           // Log bytes not applied yet at the last poll
+	private volatile boolean running;
+	
+	// Constructor - the maps, history and output belong to the follower's MEMS
+	// (passed in, so applying a record does not depend on which MEMS the thread is bound to)
+	public ReplicaFollower(File logFile, Map<String, Ensemble> ensembles, Map<String, Musician> musicians,
+	                       HistoryManager historyManager, FactoryRegistry factoryRegistry, MusicianIndex musicianIndex,
+	                       PrintStream out)
+	{
+		this.logFile = logFile;
+		this.ensembles = ensembles;
+		this.musicians = musicians;
+		this.historyManager = historyManager;
+		this.factoryRegistry = factoryRegistry;
+		this.musicianIndex = musicianIndex;
+		this.out = out;
+		this.partial = new ByteArrayOutputStream();
+	}
+	
+	// Start tailing on a daemon thread bound to the follower's MEMS
+	// (undo and redo of the history placeholders go through the MEMS bound to the thread, e.g. its EnsembleCaretaker)
+	public void start(MEMS system)
+	{
+		running = true;
+		Thread thread = new Thread(() -> system.runBound(this), "replica-follower");
+		thread.setDaemon(true);
+		thread.start();
+	}
+	
+	public void stop() { running = false; }
+	
+	// Poll loop - apply whatever is new, then sleep a little
+	public void run()
+	{
+		while (running)
+		{
+			try
+			{
+				poll();
+			}
+			catch (IOException | RuntimeException e)
+			{
+				out.println("Replication error: " + e.getMessage());
+				out.flush();
+			}
+			try
+			{
+				Thread.sleep(POLL_MILLIS);
+			}
+			catch (InterruptedException e)
+			{
+				return;
+			}
+		}
+	}
+	
+	// Report how far behind the primary we are
+	// The lag is measured against the primary's clock: everything it wrote up to the time of the last record
+	// (or heartbeat) we applied is here. The primary beats every ReplicationLog.HEARTBEAT_MILLIS, so a follower
+	// that is caught up shows less than that, and one that stalls - or whose primary stopped - keeps growing.
+	public String getLagReport()
+	{
+		long now = System.currentTimeMillis();
+		String lag = (lastRecordTime == 0) ? "unknown (nothing applied yet)" : (now - lastRecordTime) + " ms";
+		return "Replication: applied up to record " + lastSequence
+				+ ", " + bytesBehind + " byte(s) behind, lag " + lag
+				+ " (heartbeat every " + ReplicationLog.HEARTBEAT_MILLIS + " ms; last poll "
+				+ (lastPollTime == 0 ? "never" : (now - lastPollTime) + " ms ago") + ")";
+	}
+	
+	// Read new complete lines from the log and apply them
+	private void poll() throws IOException
+	{
+		lastPollTime = System.currentTimeMillis();
+		if (!logFile.isFile())
+		{
+			return;
+		}
+		try (RandomAccessFile file = new RandomAccessFile(logFile, "r"))
+		{
+			long length = file.length();
+			if (length < position || (header != null && !Arrays.equals(header, readHeader(file))))
+			{
+				resetState();   // Primary restarted with a new log
+			}
+			file.seek(position);
+			byte[] buffer = new byte[64 * 1024];
+			int read;
+			while ((read = file.read(buffer)) > 0)
+			{
+				int lineStart = 0;
+				for (int i = 0; i < read; i++)
+				{
+					if (buffer[i] == '\n')
+					{
+						partial.write(buffer, lineStart, i - lineStart);
+						byte[] line = partial.toByteArray();
+						partial.reset();
+						if (header == null)
+						{
+							header = line;
+						}
+						apply(new String(line, StandardCharsets.UTF_8));
+						position += line.length + 1;
+						lineStart = i + 1;
+					}
+				}
+				partial.write(buffer, lineStart, read - lineStart);
+			}
+			partial.reset();   // Re-read the unfinished line next time from 'position'
+			bytesBehind = file.length() - position;
+		}
+	}
+	
+	// First line of the log, used to recognise a new log that replaced the old one
+	private byte[] readHeader(RandomAccessFile file) throws IOException
+	{
+		byte[] line = new byte[header.length];
+		file.seek(0);
+		file.readFully(line);
+		return line;
+	}
+	
+	// Forget everything and start again from the beginning of the log
+	private synchronized void resetState()
+	{
+		position = 0;
+		header = null;
+		partial.reset();
+		ensembles.clear();
+		musicians.clear();
+		musicianIndex.clear();
+		historyManager.clear();
+		lastSequence = 0;
+		lastRecordTime = 0;
+	}
+	
+	// Apply one record
+	private synchronized void apply(String line)
+	{
+		String[] f = line.split("\t", -1);
+		for (int i = 3; i < f.length; i++)
+		{
+			f[i] = ReplicationLog.unescape(f[i]);
+		}
+		lastSequence = Long.parseLong(f[0]);
+		lastRecordTime = Long.parseLong(f[1]);
+		String type = f[2];
+		
+		switch (type)
+		{
+			case "START":
+				ensembles.clear();
+				musicians.clear();
+				musicianIndex.clear();
+				historyManager.clear();
+				break;
+			case "CREATE":
+			{
+				Ensemble e = factoryRegistry.getEnsembleFactory(f[3]).createEnsemble(f[4]);
+				e.setName(f[5]);
+				ensembles.put(f[4], e);
+				break;
+			}
+			case "DROP":
+			{
+				// Its musicians leave the musician map and index with it
+				Ensemble e = ensembles.get(f[3]);
+				if (e != null) dropRoster(e);
+				ensembles.remove(f[3]);
+				break;
+			}
+			case "RENAME":
+			{
+				Ensemble e = ensembles.get(f[3]);
+				if (e != null) e.setName(f[4]);
+				break;
+			}
+			case "ADD":
+			{
+				Ensemble e = ensembles.get(f[3]);
+				if (e == null || e.findMusician(f[4]) != null) break;   // Already in a BASE copy
+				Musician m = new Musician(f[4]);
+				m.setRole(Integer.parseInt(f[5]));
+				m.setName(f[6]);
+				e.addMusician(m);
+				musicians.put(m.getMID(), m);
+				musicianIndex.musicianAdded(e, m);
+				break;
+			}
+			case "REMOVE":
+			{
+				Ensemble e = ensembles.get(f[3]);
+				Musician m = (e == null) ? null : e.findMusician(f[4]);
+				if (m == null) break;
+				e.dropMusician(m);
+				musicians.remove(m.getMID());
+				musicianIndex.musicianRemoved(e, m);
+				break;
+			}
+			case "ROLE":
+			{
+				Ensemble e = ensembles.get(f[3]);
+				Musician m = (e == null) ? null : e.findMusician(f[4]);
+				if (m != null) e.changeMusicianRole(m, Integer.parseInt(f[5]));
+				break;
+			}
+			case "BASE":
+			{
+				Ensemble e = factoryRegistry.getEnsembleFactory(f[3]).createEnsemble(f[4]);
+				ensembles.put(f[4], e);
+				replaceRoster(e, f, 5);
+				break;
+			}
+			case "EXEC":
+				historyManager.executeCommand(new ReplicatedCommand(f[3]));
+				break;
+			case "UNDO":
+				historyManager.undo();
+				break;
+			case "REDO":
+				historyManager.redo();
+				break;
+			case "COALESCE":
+				historyManager.replaceLatest(Integer.parseInt(f[3]), (f.length > 4) ? new ReplicatedCommand(f[4]) : null);
+				break;
+			case "BEAT":
+				break;   // Only its time matters (lastRecordTime)
+			default:
+				// Unknown record type from a newer primary - skip it
+				break;
+		}
+	}
+	
+	// Replace name and roster of an ensemble from fields: name, count, then (mid, role, name) triples
+	private void replaceRoster(Ensemble e, String[] f, int start)
+	{
+		dropRoster(e);
+		e.setName(f[start]);
+		int count = Integer.parseInt(f[start + 1]);
+		int pos = start + 2;
+		for (int i = 0; i < count; i++, pos += 3)
+		{
+			Musician m = new Musician(f[pos]);
+			m.setRole(Integer.parseInt(f[pos + 1]));
+			m.setName(f[pos + 2]);
+			e.addMusician(m);
+			musicians.put(m.getMID(), m);
+			musicianIndex.musicianAdded(e, m);
+		}
+	}
+	
+	// Take every musician out of an ensemble, the musician map and the index
+	private void dropRoster(Ensemble e)
+	{
+		List<Musician> old = new ArrayList<>();
+		Iterator<Musician> it = e.getMusicians();
+		while (it.hasNext())
+		{
+			old.add(it.next());
+		}
+		for (Musician m : old)
+		{
+			e.dropMusician(m);
+			musicians.remove(m.getMID());
+			musicianIndex.musicianRemoved(e, m);
+		}
+	}
+}
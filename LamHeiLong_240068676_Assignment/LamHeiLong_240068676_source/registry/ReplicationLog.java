@@ -0,0 +1,290 @@
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+
+/**
+ * ReplicationLog - writes every change made on the primary to a shared file for ReplicaFollower to tail
+ * Registered as a ChangeListener, so it sees exactly what the commands and undo/redo change
+ * 
+ * One record per line, fields separated by tabs: sequence, time (ms), record type, then the fields.
+ *   START                             new log - followers clear their state
+ *   BASE   type id name n (mid role name)*   full ensemble (first time an existing ensemble is touched)
+ *   CREATE type id name               DROP id                RENAME id name
+ *   ADD    eid mid role name          REMOVE eid mid         ROLE eid mid role
+ *   EXEC description                  UNDO                   REDO
+ *   COALESCE n [description]          newest n history entries became one (none if no description)
+ *   BEAT                              heartbeat: the primary was alive and had written everything before it
+ * 
+ * The file is flushed at the end of every command, so followers see whole commands only.
+ * A heartbeat is written every HEARTBEAT_MILLIS while no command is half written, so a follower can
+ * measure its lag against the primary's clock even when nothing changes (see ReplicaFollower.getLagReport).
+ */
+public class ReplicationLog implements ChangeListener
+{
+	public static final long HEARTBEAT_MILLIS = 1000;
+	
+	private Writer out;                          // Buffered writer on the log file
+	private long sequence;                       // Number of the last record written
+	private Set<String> knownEnsembles;          // Ensembles the followers already have in full
+	private boolean unflushed;                   // Records written since the last flush (a command is under way)
+	
+	// Constructor - starts a new log (the file is truncated, followers reset when they see START)
+	public ReplicationLog(File file)
+	{
+		try
+		{
+			this.out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, false), StandardCharsets.UTF_8), 1 << 16);
+		}
+		catch (IOException e)
+		{
+			throw new UncheckedIOException("Cannot open replication log " + file, e);
+		}
+		this.sequence = 0;
+		this.knownEnsembles = new HashSet<>();
+		write("START");
+		flush();
+	}
+	
+	public void ensembleCreated(Ensemble e)
+	{
+		knownEnsembles.add(e.getEnsembleID());
+		write("CREATE", e.getFactoryType(), e.getEnsembleID(), e.getName());
+	}
+	
+	public void ensembleRemoved(String ensembleId)
+	{
+		knownEnsembles.remove(ensembleId);
+		write("DROP", ensembleId);
+	}
+	
+	public void ensembleRenamed(Ensemble e, String oldName)
+	{
+		if (sendBaseIfUnknown(e)) return;
+		write("RENAME", e.getEnsembleID(), e.getName());
+	}
+	
+	public void musicianAdded(Ensemble e, Musician m)
+	{
+		if (sendBaseIfUnknown(e)) return;
+		write("ADD", e.getEnsembleID(), m.getMID(), Integer.toString(m.getRole()), m.getName());
+	}
+	
+	public void musicianRemoved(Ensemble e, Musician m)
+	{
+		if (sendBaseIfUnknown(e)) return;
+		write("REMOVE", e.getEnsembleID(), m.getMID());
+	}
+	
+	public void roleChanged(Ensemble e, Musician m, int oldRole)
+	{
+		if (sendBaseIfUnknown(e)) return;
+		write("ROLE", e.getEnsembleID(), m.getMID(), Integer.toString(m.getRole()));
+	}
+	
+	public void commandExecuted(Command command)
+	{
+		write("EXEC", command.getDescription());
+		flush();
+	}
+	
+	public void commandUndone(Command command)
+	{
+		write("UNDO");
+		flush();
+	}
+	
+	public void commandRedone(Command command)
+	{
+		write("REDO");
+		flush();
+	}
+	
+	public void historyCoalesced(int entries, Command merged)
+	{
+		if (merged == null)
+		{
+			write("COALESCE", String.valueOf(entries));
+		}
+		else
+		{
+			write("COALESCE", String.valueOf(entries), merged.getDescription());
+		}
+		flush();
+	}
+	
+	public long getSequence() { return sequence; }
+	
+	// Write heartbeats on a daemon thread from now on
+	public void startHeartbeat()
+	{
+		Thread thread = new Thread(() -> {
+			while (true)
+			{
+				try
+				{
+					Thread.sleep(HEARTBEAT_MILLIS);
+				}
+				catch (InterruptedException e)
+				{
+					return;
+				}
+				beat();
+			}
+		}, "replication-heartbeat");
+		thread.setDaemon(true);
+		thread.start();
+	}
+	
+	// One heartbeat, unless a command has records buffered - flushing now would show followers half of it
+	// (the command's own flush follows soon, and its records carry the time just as well)
+	private synchronized void beat()
+	{
+		if (!unflushed)
+		{
+			write("BEAT");
+			flush();
+		}
+	}
+	
+	// Escape tabs, newlines and backslashes so every record stays on one line
+	public static String escape(String value)
+	{
+		StringBuilder sb = new StringBuilder(value.length());
+		for (int i = 0; i < value.length(); i++)
+		{
+			char c = value.charAt(i);
+			switch (c)
+			{
+				case '\\': sb.append("\\\\"); break;
+				case '\t': sb.append("\\t"); break;
+				case '\n': sb.append("\\n"); break;
+				case '\r': sb.append("\\r"); break;
+				default: sb.append(c);
+			}
+		}
+		return sb.toString();
+	}
+	
+	// Reverse of escape()
+	public static String unescape(String value)
+	{
+		if (value.indexOf('\\') < 0)
+		{
+			return value;
+		}
+		StringBuilder sb = new StringBuilder(value.length());
+		for (int i = 0; i < value.length(); i++)
+		{
+			char c = value.charAt(i);
+			if (c == '\\' && i + 1 < value.length())
+			{
+				char next = value.charAt(++i);
+				switch (next)
+				{
+					case 't': sb.append('\t'); break;
+					case 'n': sb.append('\n'); break;
+					case 'r': sb.append('\r'); break;
+					default: sb.append(next);
+				}
+			}
+			else
+			{
+				sb.append(c);
+			}
+		}
+		return sb.toString();
+	}
+	
+	// An ensemble that existed before this log started (e.g. loaded from a file store) is sent in full
+	// the first time it changes; the full copy already includes the change, so the change itself is skipped
+	private boolean sendBaseIfUnknown(Ensemble e)
+	{
+		if (knownEnsembles.contains(e.getEnsembleID()))
+		{
+			return false;
+		}
+		knownEnsembles.add(e.getEnsembleID());
+		writeBase(e);
+		return true;
+	}
+	
+	// Write a record holding an ensemble's type, name and complete roster
+	private void writeBase(Ensemble e)
+	{
+		StringBuilder sb = new StringBuilder();
+		sb.append(escape(e.getFactoryType())).append('\t')
+		  .append(escape(e.getEnsembleID())).append('\t')
+		  .append(escape(e.getName())).append('\t')
+		  .append(e.getSize());
+		Iterator<Musician> it = e.getMusicians();
+		while (it.hasNext())
+		{
+			Musician m = it.next();
+			sb.append('\t').append(escape(m.getMID()))
+			  .append('\t').append(m.getRole())
+			  .append('\t').append(escape(m.getName()));
+		}
+		writeLine("BASE", sb.toString());
+	}
+	
+	// Write one record made of plain fields
+	private void write(String type, String... fields)
+	{
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < fields.length; i++)
+		{
+			if (i > 0)
+			{
+				sb.append('\t');
+			}
+			sb.append(escape(fields[i]));
+		}
+		writeLine(type, sb.toString());
+	}
+	
+	// Write the record header and body as one line
+	private synchronized void writeLine(String type, String body)
+	{
+		try
+		{
+			out.write(Long.toString(++sequence));
+			out.write('\t');
+			out.write(Long.toString(System.currentTimeMillis()));
+			out.write('\t');
+			out.write(type);
+			if (!body.isEmpty())
+			{
+				out.write('\t');
+				out.write(body);
+			}
+			out.write('\n');
+			unflushed = true;
+		}
+		catch (IOException e)
+		{
+			throw new UncheckedIOException("Cannot write replication log", e);
+		}
+	}
+	
+	// Push buffered records to the file
+	private synchronized void flush()
+	{
+		try
+		{
+			out.flush();
+			unflushed = false;
+		}
+		catch (IOException e)
+		{
+			throw new UncheckedIOException("Cannot write replication log", e);
+		}
+	}
+}
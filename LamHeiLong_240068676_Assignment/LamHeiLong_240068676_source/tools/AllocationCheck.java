@@ -0,0 +1,143 @@
+import com.sun.management.ThreadMXBean;
+import java.lang.management.ManagementFactory;
+
+/**
+ * AllocationCheck - allocation regression check for the mutating commands (a, d, m, cn)
+ * Runs each command many times through HistoryManager, the way the console does, and measures the bytes
+ * allocated per command on this thread. Exits with status 1 if any of them goes over its fixed limit,
+ * or if it allocates more in a big ensemble than in a small one, so it can run as a build step
+ * (see allocheck.bat). Undo data must stay O(1): no command may copy the roster.
+ *
+ * Coalescing is switched off, so every command keeps its own history entry (the most a command can cost).
+ * The history journal is off, as it is by default. What a command may allocate: the command object and its
+ * memento, which together are its history entry (so they cannot be pooled or shared - the undo list holds
+ * on to them), the undo list's node, and for an add the new Musician.
+ *
+ * Usage: java AllocationCheck [--commands N]
+ */
+public class AllocationCheck
+{
+	// Limits in bytes per command - about 1.5x what was measured
+	private static final long MAX_ADD = 500;
+	private static final long MAX_DELETE = 200;
+	private static final long MAX_MODIFY = 250;
+	private static final long MAX_RENAME = 200;
+	
+	// Roster sizes measured - the big one must not cost more per command than the small one, give or take
+	// a quarter for JIT noise (copying a 5000-musician roster would cost tens of KB per command)
+	private static final int SMALL_ROSTER = 20;
+	private static final int BIG_ROSTER = 5000;
+	
+	private static final String[] COMMANDS = { "add", "delete", "modify", "rename" };
+	private static final long[] LIMITS = { MAX_ADD, MAX_DELETE, MAX_MODIFY, MAX_RENAME };
+	
+	private ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+	private HistoryManager history;
+	private int commands = 20000;
+	
+	public static void main(String[] args)
+	{
+		AllocationCheck check = new AllocationCheck();
+		for (int i = 0; i < args.length; i++)
+		{
+			if (args[i].equals("--commands") && i + 1 < args.length)
+			{
+				check.commands = Integer.parseInt(args[++i]);
+			}
+			else
+			{
+				System.out.println("Usage: java AllocationCheck [--commands N]");
+				System.exit(2);
+			}
+		}
+		System.exit(check.run() ? 0 : 1);
+	}
+	
+	private boolean run()
+	{
+		if (!threads.isThreadAllocatedMemorySupported())
+		{
+			System.out.println("This JVM cannot measure allocation per thread - check skipped");
+			return true;
+		}
+		// Command arguments are made up front, so only the commands themselves are measured
+		String[] ids = new String[commands];
+		for (int i = 0; i < commands; i++)
+		{
+			ids[i] = "T" + i;
+		}
+		
+		long[] small = measure(SMALL_ROSTER, ids);
+		long[] big = measure(BIG_ROSTER, ids);
+		
+		boolean ok = true;
+		System.out.println(String.format("%-8s %9s %9s", "", SMALL_ROSTER + " mus.", BIG_ROSTER + " mus."));
+		for (int i = 0; i < COMMANDS.length; i++)
+		{
+			ok &= report(COMMANDS[i], small[i], big[i], LIMITS[i]);
+		}
+		System.out.println(ok ? "PASS" : "FAIL");
+		return ok;
+	}
+	
+	// Bytes per command of add, delete, modify and rename on an ensemble of 'rosterSize' musicians
+	// (a fresh engine each time, so one run's history does not weigh on the other)
+	private long[] measure(int rosterSize, String[] ids)
+	{
+		MemsEngine engine = new MemsEngine();   // Command messages are discarded
+		engine.getSystem().bindToCurrentThread();
+		engine.getSystem().setCoalescing("none");
+		engine.createEnsemble("o", "E1", "Check ensemble");
+		for (int i = 0; i < rosterSize; i++)
+		{
+			engine.addMusician("E1", "M" + i, "Musician " + i, 1 + (i % 2));
+		}
+		history = MEMS.getHistoryManager();
+		
+		measure(ids);   // Warm-up, so the JIT has compiled the path
+		return measure(ids);
+	}
+	
+	// Run every command type 'commands' times - returns bytes per command of add, delete, modify and rename
+	private long[] measure(String[] ids)
+	{
+		long[] bytes = new long[4];
+		for (int i = 0; i < ids.length; i++)
+		{
+			long before = threads.getCurrentThreadAllocatedBytes();
+			history.executeCommand(new AddMusicianCommand("E1", ids[i], "Temp", 1));
+			long afterAdd = threads.getCurrentThreadAllocatedBytes();
+			history.executeCommand(new DeleteMusicianCommand("E1", ids[i]));
+			long afterDelete = threads.getCurrentThreadAllocatedBytes();
+			history.executeCommand(new ModifyMusicianInstrumentCommand("E1", "M0", 1 + (i % 2)));
+			long afterModify = threads.getCurrentThreadAllocatedBytes();
+			history.executeCommand(new ChangeEnsembleNameCommand("E1", (i % 2 == 0) ? "Even name" : "Odd name"));
+			long afterRename = threads.getCurrentThreadAllocatedBytes();
+			
+			bytes[0] += afterAdd - before;
+			bytes[1] += afterDelete - afterAdd;
+			bytes[2] += afterModify - afterDelete;
+			bytes[3] += afterRename - afterModify;
+		}
+		for (int i = 0; i < bytes.length; i++)
+		{
+			bytes[i] /= ids.length;
+		}
+		return bytes;
+	}
+	
+	private static boolean report(String command, long small, long big, long max)
+	{
+		String problem = "";
+		if (Math.max(small, big) > max)
+		{
+			problem = "  <- over the limit";
+		}
+		else if (big > small + small / 4)
+		{
+			problem = "  <- grows with the roster";
+		}
+		System.out.println(String.format("%-8s %9d %9d B/command (max %d)%s", command, small, big, max, problem));
+		return problem.isEmpty();
+	}
+}
@@ -0,0 +1,93 @@
+/**
+ * LatencyHistogram - fixed-size histogram of latencies in nanoseconds
+ * Used by LoadGenerator so recording a sample never allocates (it would distort heap numbers)
+ * 
+ * Buckets are log-linear: 16 buckets per power of two, so any percentile is within about 6%.
+ */
+public class LatencyHistogram
+{
+	private static final int SUB_BUCKETS = 16;        // Buckets per power of two
+	private static final int SUB_BITS = 4;            // log2(SUB_BUCKETS)
+	
+	private long[] counts = new long[64 * SUB_BUCKETS];
+	private long total;
+	private long max;
+	private long sum;
+	
+	// Record one latency
+	public void record(long nanos)
+	{
+		if (nanos < 0)
+		{
+			nanos = 0;
+		}
+		counts[bucketOf(nanos)]++;
+		total++;
+		sum += nanos;
+		if (nanos > max)
+		{
+			max = nanos;
+		}
+	}
+	
+	public long getCount() { return total; }
+	public long getMax() { return max; }
+	public double getMean() { return total == 0 ? 0 : (double) sum / total; }
+	
+	// Latency at a percentile (0-100), reported as the upper edge of its bucket
+	public long getPercentile(double percentile)
+	{
+		if (total == 0)
+		{
+			return 0;
+		}
+		long rank = (long) Math.ceil(total * percentile / 100.0);
+		long seen = 0;
+		for (int i = 0; i < counts.length; i++)
+		{
+			seen += counts[i];
+			if (seen >= rank)
+			{
+				return Math.min(upperEdge(i), max);
+			}
+		}
+		return max;
+	}
+	
+	// Add another histogram's samples into this one
+	public void add(LatencyHistogram other)
+	{
+		for (int i = 0; i < counts.length; i++)
+		{
+			counts[i] += other.counts[i];
+		}
+		total += other.total;
+		sum += other.sum;
+		max = Math.max(max, other.max);
+	}
+	
+	// Bucket index: exponent * 16 + the next 4 bits below the top bit
+	private static int bucketOf(long value)
+	{
+		if (value < SUB_BUCKETS)
+		{
+			return (int) value;
+		}
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		int mantissa = (int) ((value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1));
+		return (exponent - SUB_BITS + 1) * SUB_BUCKETS + mantissa;
+	}
+	
+	// Largest value that falls into a bucket
+	private static long upperEdge(int bucket)
+	{
+		if (bucket < SUB_BUCKETS)
+		{
+			return bucket;
+		}
+		int exponent = bucket / SUB_BUCKETS + SUB_BITS - 1;
+		long mantissa = bucket % SUB_BUCKETS;
+		long base = (1L << exponent) | (mantissa << (exponent - SUB_BITS));
+		return base + (1L << (exponent - SUB_BITS)) - 1;
+	}
+}
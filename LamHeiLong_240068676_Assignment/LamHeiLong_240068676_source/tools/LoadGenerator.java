@@ -0,0 +1,374 @@
+import com.sun.management.ThreadMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * LoadGenerator - synthetic workload driver for capacity planning
+ * Seeds a dataset, then drives MemsEngine (the same Command classes and HistoryManager as the console)
+ * for a fixed time and reports throughput, latency percentiles, bytes allocated per operation and heap growth.
+ * 
+ * Usage: java LoadGenerator [--ensembles N] [--musicians M] [--seconds S] [--warmup S]
+ *                           [--mix read|write|undo|mixed] [--zipf s] [--seed n] [--max-alloc B]
+ * 
+ * Mixes:
+ * read  = mostly se/sm, a few sa and edits
+ * write = mostly add/delete/modify, some renames
+ * undo  = edits interleaved with undo storms (a burst of undos) and redo storms
+ * mixed = a bit of everything
+ * 
+ * --zipf s picks ensembles with Zipf(s) popularity (0 = uniform, 1 = classic "few hot ensembles").
+ * --max-alloc B is an allocation regression check: the run exits with status 1 if add, modify, delete
+ * or rename allocates more than B bytes per operation on average (measured on the calling thread,
+ * including the generator's own argument strings).
+ */
+public class LoadGenerator
+{
+	// Operations the generator can run
+	private enum Op { SHOW, LIST, SUMMARY, ADD, MODIFY, DELETE, RENAME, UNDO_STORM, REDO_STORM }
+	
+	private static final int STORM_SIZE = 20;    // Undos (or redos) per storm
+	
+	private int ensembleCount = 1000;
+	private int musiciansPerEnsemble = 20;
+	private int seconds = 10;
+	private int warmupSeconds = 2;
+	private String mix = "mixed";
+	private double zipf = 1.0;
+	private long seed = 42;
+	private long maxAlloc = -1;                  // Bytes per mutating operation allowed (-1 = no check)
+	
+	private List<String> ensembleIds = new ArrayList<>();
+	private double[] popularity;                 // Cumulative pick probability per ensemble
+	private Op[] ops;                            // Op per weight slot (weights of 100)
+	private Random random;
+	private long nextMusician = 0;
+	private MemsEngine engine;
+	private LatencyHistogram[] histograms = new LatencyHistogram[Op.values().length];
+	private long[] errors = new long[Op.values().length];
+	private long[] allocated = new long[Op.values().length];   // Bytes allocated per op type
+	private ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+	
+	public static void main(String[] args)
+	{
+		LoadGenerator generator = new LoadGenerator();
+		generator.parseArgs(args);
+		generator.run();
+	}
+	
+	// Read command line options
+	private void parseArgs(String[] args)
+	{
+		for (int i = 0; i + 1 < args.length; i += 2)
+		{
+			String value = args[i + 1];
+			switch (args[i])
+			{
+				case "--ensembles": ensembleCount = Integer.parseInt(value); break;
+				case "--musicians": musiciansPerEnsemble = Integer.parseInt(value); break;
+				case "--seconds": seconds = Integer.parseInt(value); break;
+				case "--warmup": warmupSeconds = Integer.parseInt(value); break;
+				case "--mix": mix = value; break;
+				case "--zipf": zipf = Double.parseDouble(value); break;
+				case "--seed": seed = Long.parseLong(value); break;
+				case "--max-alloc": maxAlloc = Long.parseLong(value); break;
+				default: throw new IllegalArgumentException("Unknown option: " + args[i]);
+			}
+		}
+		ops = buildMix(mix);
+	}
+	
+	// Seed, warm up, measure, report
+	private void run()
+	{
+		MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+		
+		engine = new MemsEngine();   // Command messages are discarded
+		engine.getSystem().bindToCurrentThread();   // seed() and anyMusician() reach the engine's data directly
+		random = new Random(seed);
+		seed();
+		buildPopularity();
+		
+		System.out.println("Seeded " + ensembleCount + " ensembles x " + musiciansPerEnsemble + " musicians, mix=" + mix + ", zipf=" + zipf);
+		
+		runFor(warmupSeconds * 1000L);
+		for (int i = 0; i < histograms.length; i++)
+		{
+			histograms[i] = new LatencyHistogram();
+			errors[i] = 0;
+			allocated[i] = 0;
+		}
+		
+		System.gc();
+		long heapBefore = memory.getHeapMemoryUsage().getUsed();
+		long start = System.nanoTime();
+		long count = runFor(seconds * 1000L);
+		long elapsed = System.nanoTime() - start;
+		System.gc();
+		long heapAfter = memory.getHeapMemoryUsage().getUsed();
+		
+		report(count, elapsed, heapBefore, heapAfter);
+		if (maxAlloc >= 0 && !checkAllocation())
+		{
+			System.exit(1);
+		}
+	}
+	
+	// Run operations until the time is up; returns how many ran
+	private long runFor(long millis)
+	{
+		long end = System.nanoTime() + millis * 1_000_000L;
+		long count = 0;
+		while (System.nanoTime() < end)
+		{
+			Op op = ops[random.nextInt(ops.length)];
+			count += runOp(op);
+		}
+		return count;
+	}
+	
+	// Run one operation (a storm counts as several); latency is recorded per command
+	private int runOp(Op op)
+	{
+		String ensembleId = pickEnsemble();
+		int repeat = (op == Op.UNDO_STORM || op == Op.REDO_STORM) ? STORM_SIZE : 1;
+		for (int i = 0; i < repeat; i++)
+		{
+			long bytesBefore = threads.getCurrentThreadAllocatedBytes();
+			long start = System.nanoTime();
+			try
+			{
+				execute(op, ensembleId);
+			}
+			catch (RuntimeException e)
+			{
+				errors[op.ordinal()]++;
+			}
+			record(op, System.nanoTime() - start);
+			allocated[op.ordinal()] += threads.getCurrentThreadAllocatedBytes() - bytesBefore;
+		}
+		return repeat;
+	}
+	
+	// Run the engine call behind an operation
+	private void execute(Op op, String ensembleId)
+	{
+		switch (op)
+		{
+			case SHOW:
+				engine.getEnsemble(ensembleId);
+				break;
+			case LIST:
+				engine.listEnsembles();
+				break;
+			case SUMMARY:
+				engine.getSummary(ensembleId);
+				break;
+			case ADD:
+			{
+				long n = nextMusician++;
+				engine.addMusician(ensembleId, "L" + n, "Load Musician " + n, 1);
+				break;
+			}
+			case MODIFY:
+				// Roles 1 and 2 are valid for both orchestras and jazz bands
+				engine.modifyInstrument(ensembleId, anyMusician(ensembleId), 1 + random.nextInt(2));
+				break;
+			case DELETE:
+				engine.deleteMusician(ensembleId, anyMusician(ensembleId));
+				break;
+			case RENAME:
+				engine.renameEnsemble(ensembleId, "Renamed " + random.nextInt(1000));
+				break;
+			case UNDO_STORM:
+				engine.undo();
+				break;
+			case REDO_STORM:
+				engine.redo();
+				break;
+		}
+	}
+	
+	// The longest-serving musician of an ensemble (cheap to find, and spreads deletes over the seed data)
+	private String anyMusician(String ensembleId)
+	{
+		Iterator<Musician> it = MEMS.getEnsembles().get(ensembleId).getMusicians();
+		if (!it.hasNext())
+		{
+			throw new IllegalStateException("Ensemble is empty");
+		}
+		return it.next().getMID();
+	}
+	
+	private void record(Op op, long nanos)
+	{
+		if (histograms[op.ordinal()] == null)
+		{
+			histograms[op.ordinal()] = new LatencyHistogram();
+		}
+		histograms[op.ordinal()].record(nanos);
+	}
+	
+	// Create the dataset directly (not through history, so it can't be undone)
+	private void seed()
+	{
+		Map<String, Ensemble> ensembles = MEMS.getEnsembles();
+		Map<String, Musician> musicians = MEMS.getMusicians();
+		for (int i = 0; i < ensembleCount; i++)
+		{
+			String id = String.format("E%06d", i);
+			Ensemble e = (i % 2 == 0) ? new OrchestraEnsemble(id) : new JazzBandEnsemble(id);
+			e.setName("Seed ensemble " + i);
+			for (int j = 0; j < musiciansPerEnsemble; j++)
+			{
+				Musician m = new Musician("S" + i + "-" + j);
+				m.setName("Seed musician " + j);
+				m.setRole(1 + (j % 2));
+				e.addMusician(m);
+				musicians.put(m.getMID(), m);
+			}
+			ensembles.put(id, e);
+			ensembleIds.add(id);
+		}
+	}
+	
+	// Cumulative Zipf(s) distribution over the ensembles (rank 1 = first ensemble)
+	private void buildPopularity()
+	{
+		popularity = new double[ensembleIds.size()];
+		double total = 0;
+		for (int i = 0; i < popularity.length; i++)
+		{
+			total += 1.0 / Math.pow(i + 1, zipf);
+			popularity[i] = total;
+		}
+		for (int i = 0; i < popularity.length; i++)
+		{
+			popularity[i] /= total;
+		}
+	}
+	
+	// Pick an ensemble by popularity (binary search on the cumulative distribution)
+	private String pickEnsemble()
+	{
+		double r = random.nextDouble();
+		int low = 0;
+		int high = popularity.length - 1;
+		while (low < high)
+		{
+			int mid = (low + high) >>> 1;
+			if (popularity[mid] < r)
+			{
+				low = mid + 1;
+			}
+			else
+			{
+				high = mid;
+			}
+		}
+		return ensembleIds.get(low);
+	}
+	
+	// Operation weights per mix, out of 100
+	private static Op[] buildMix(String mix)
+	{
+		List<Op> slots = new ArrayList<>();
+		switch (mix)
+		{
+			case "read":
+				add(slots, Op.SHOW, 85); add(slots, Op.SUMMARY, 10); add(slots, Op.LIST, 1);
+				add(slots, Op.ADD, 2); add(slots, Op.DELETE, 2);
+				break;
+			case "write":
+				add(slots, Op.ADD, 35); add(slots, Op.DELETE, 30); add(slots, Op.MODIFY, 20); add(slots, Op.RENAME, 10); add(slots, Op.SHOW, 5);
+				break;
+			case "undo":
+				add(slots, Op.ADD, 30); add(slots, Op.DELETE, 20); add(slots, Op.MODIFY, 10); add(slots, Op.RENAME, 10);
+				add(slots, Op.UNDO_STORM, 15); add(slots, Op.REDO_STORM, 15);
+				break;
+			case "mixed":
+				add(slots, Op.SHOW, 45); add(slots, Op.SUMMARY, 10); add(slots, Op.ADD, 15); add(slots, Op.DELETE, 10);
+				add(slots, Op.MODIFY, 5); add(slots, Op.RENAME, 5); add(slots, Op.UNDO_STORM, 5); add(slots, Op.REDO_STORM, 5);
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown mix: " + mix + " (use read, write, undo or mixed)");
+		}
+		return slots.toArray(new Op[0]);
+	}
+	
+	private static void add(List<Op> slots, Op op, int weight)
+	{
+		for (int i = 0; i < weight; i++)
+		{
+			slots.add(op);
+		}
+	}
+	
+	// Print the results table
+	private void report(long count, long elapsedNanos, long heapBefore, long heapAfter)
+	{
+		double secondsRun = elapsedNanos / 1e9;
+		System.out.println(String.format("Ran %d operations in %.1f s = %.0f ops/sec", count, secondsRun, count / secondsRun));
+		System.out.println(String.format("%-10s %10s %8s %10s %10s %10s %10s %10s %10s",
+				"op", "count", "errors", "p50 us", "p90 us", "p99 us", "p99.9 us", "max us", "B/op"));
+		LatencyHistogram all = new LatencyHistogram();
+		for (Op op : Op.values())
+		{
+			LatencyHistogram h = histograms[op.ordinal()];
+			if (h == null || h.getCount() == 0)
+			{
+				continue;
+			}
+			all.add(h);
+			printRow(op.name().toLowerCase(), h, errors[op.ordinal()], allocated[op.ordinal()]);
+		}
+		long totalErrors = 0;
+		long totalAllocated = 0;
+		for (int i = 0; i < errors.length; i++)
+		{
+			totalErrors += errors[i];
+			totalAllocated += allocated[i];
+		}
+		printRow("all", all, totalErrors, totalAllocated);
+		System.out.println(String.format("Heap used after GC: %.1f MB -> %.1f MB (%+.1f MB), history: %d undo / %d redo",
+				heapBefore / 1e6, heapAfter / 1e6, (heapAfter - heapBefore) / 1e6,
+				engine.getUndoHistory().size(), engine.getRedoHistory().size()));
+	}
+	
+	private static void printRow(String name, LatencyHistogram h, long errors, long bytes)
+	{
+		System.out.println(String.format("%-10s %10d %8d %10.1f %10.1f %10.1f %10.1f %10.1f %10d",
+				name, h.getCount(), errors,
+				h.getPercentile(50) / 1e3, h.getPercentile(90) / 1e3, h.getPercentile(99) / 1e3,
+				h.getPercentile(99.9) / 1e3, h.getMax() / 1e3, bytes / h.getCount()));
+	}
+	
+	// Compare the mutating operations' bytes per operation with --max-alloc; false if any is over
+	private boolean checkAllocation()
+	{
+		boolean ok = true;
+		for (Op op : new Op[] { Op.ADD, Op.MODIFY, Op.DELETE, Op.RENAME })
+		{
+			LatencyHistogram h = histograms[op.ordinal()];
+			if (h == null || h.getCount() == 0)
+			{
+				continue;
+			}
+			long perOp = allocated[op.ordinal()] / h.getCount();
+			if (perOp > maxAlloc)
+			{
+				System.out.println("FAIL: " + op.name().toLowerCase() + " allocates " + perOp + " B/op (max " + maxAlloc + ")");
+				ok = false;
+			}
+		}
+		if (ok)
+		{
+			System.out.println("Allocation check passed (max " + maxAlloc + " B/op)");
+		}
+		return ok;
+	}
+}